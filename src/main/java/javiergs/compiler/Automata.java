@@ -1,52 +1,115 @@
 package javiergs.compiler;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
 import java.util.*;
 import javiergs.compiler.*;
 
 /**
  * Automata.java
  * ---------------
- * Implements a Deterministic Finite Automaton (DFA) using a HashMap-based transition table.
- * This class provides the core functionality for defining and executing a DFA, which is used
- * for lexical analysis and pattern recognition in the compiler's front-end.
+ * Implements a Deterministic Finite Automaton (DFA) used for lexical analysis and pattern
+ * recognition in the compiler's front-end.
  *
- * The DFA implementation supports:
+ * States and transitions are declared with a string-based builder API and then compiled
+ * into a dense integer table, so that the scanner can run without hashing or allocating
+ * on every character:
  * - Adding transitions between states
  * - Defining accept states
- * - Checking if a state is an accept state
- * - Retrieving the next state based on current state and input
+ * - Compressing the input alphabet into character classes
+ * - Compiling the DFA into an int[state][charClass] transition table
+ * - Minimizing the compiled table with Hopcroft's partition refinement
+ * - Retrieving the next state and the accept kind through integer state ids
+ *
+ * Two characters belong to the same class when every state sends them to the same
+ * next state. Characters outside 7-bit ASCII are mapped to one of three Unicode input
+ * symbols, by their Character properties, and only then to a class, so ASCII input
+ * never leaves the table. State 0 of the compiled table is the absorbing dead state.
+ *
+ * A frozen automaton rejects any further change, so once it is compiled it can be read by
+ * several threads at the same time.
+ *
+ * The compiled table can be written to a compact binary form and read back without
+ * declaring the states again. An automaton read this way has no transitions in builder
+ * form, only its named states and their accept names.
  *
  * @author javiergs
  * @author eduardomv
  * @author santiarr
  * @author yawham
- * @version 2.0
+ * @version 2.5
  */
 public class Automata {
 
-    private final HashMap<String, String> table = new HashMap<>();
+    /** Id of the absorbing dead state, reached when there is no transition for the input symbol. */
+    public static final int DEAD = 0;
+
+    /** Value of the accept-kind array for states that do not accept. */
+    public static final int NO_KIND = -1;
+
+    /** Number of ASCII characters, which are input symbols of their own (7-bit ASCII). */
+    public static final int ALPHABET_SIZE = 128;
+
+    /** Input symbol of the characters outside ASCII that can start a Unicode identifier. */
+    public static final char UNICODE_IDENTIFIER_START = ALPHABET_SIZE;
+
+    /** Input symbol of the characters outside ASCII that can be part of a Unicode identifier, but not start it. */
+    public static final char UNICODE_IDENTIFIER_PART = ALPHABET_SIZE + 1;
+
+    /** Input symbol of every other character outside ASCII. */
+    public static final char UNICODE_OTHER = ALPHABET_SIZE + 2;
+
+    /** Number of input symbols mapped by the character class array: ASCII, then the Unicode symbols. */
+    public static final int SYMBOL_COUNT = ALPHABET_SIZE + 3;
+
+    /** Largest number of states of a compiled table that can be written in binary form. */
+    public static final int MAX_WRITABLE_STATES = 1 << 16;
+
+    // Builder form: state name -> (input symbol -> next state name)
+    private final LinkedHashMap<String, LinkedHashMap<Character, String>> table = new LinkedHashMap<>();
     private final HashMap<String, String> acceptStates = new HashMap<>();
 
+    // Compiled form
+    private final LinkedHashMap<String, Integer> stateIds = new LinkedHashMap<>();
+    // Classes are unsigned bytes: there are at most SYMBOL_COUNT + 1 of them
+    private final byte[] charClass = new byte[SYMBOL_COUNT];
+    private int classCount;
+    private int[][] next;
+    private int[] acceptKind;
+    private String[] kindNames;
+    private boolean compiled = false;
+    private String minimizationReport = "DFA not minimized";
+    private boolean frozen = false;
+
     /**
      * Adds a transition to the DFA's transition table.
      *
      * @param currentState The starting state for this transition
-     * @param inputSymbol The input symbol that triggers this transition
+     * @param inputSymbol The input symbol that triggers this transition (a single ASCII character,
+     *                    or one of the Unicode input symbols)
      * @param nextState The state to transition to
      */
     public void addTransition(String currentState, String inputSymbol, String nextState) {
-        table.put(currentState + "/" + inputSymbol, nextState);
+        if (inputSymbol.length() != 1 || inputSymbol.charAt(0) >= SYMBOL_COUNT) {
+            throw new IllegalArgumentException("Input symbol must be a single ASCII character or Unicode symbol: " + inputSymbol);
+        }
+        checkNotFrozen();
+        table.computeIfAbsent(currentState, k -> new LinkedHashMap<>()).put(inputSymbol.charAt(0), nextState);
+        compiled = false;
     }
 
     /**
      * Determines the next state based on the current state and input symbol.
+     * This lookup works on the builder form; the scanner should use {@link #nextState(int, char)}.
      *
      * @param currentState The current state of the DFA
      * @param inputSymbol The input symbol being processed
-     * @return The next state according to the transition table
+     * @return The next state according to the transition table, or null if there is none
      */
     public String getNextState(String currentState, char inputSymbol) {
-        return table.get(currentState + "/" + inputSymbol);
+        Map<Character, String> row = table.get(currentState);
+        return row == null ? null : row.get(inputSymbol);
     }
 
     /**
@@ -56,7 +119,9 @@ public class Automata {
      * @param name The token type name associated with this accept state
      */
     public void addAcceptState(String state, String name) {
+        checkNotFrozen();
         acceptStates.put(state, name);
+        compiled = false;
     }
 
     /**
@@ -79,6 +144,504 @@ public class Automata {
         return acceptStates.get(state);
     }
 
+    /**
+     * Compiles the transitions and accept states declared so far into a dense table.
+     * State ids are assigned in order of first appearance starting at 1, accept kinds in
+     * order of first use of each token type name, and the input symbols are partitioned
+     * into character classes. Must be called again after further changes.
+     */
+    public void compile() {
+        checkNotFrozen();
+        stateIds.clear();
+        for (Map.Entry<String, LinkedHashMap<Character, String>> entry : table.entrySet()) {
+            idOf(entry.getKey());
+            for (String target : entry.getValue().values()) {
+                idOf(target);
+            }
+        }
+        for (String state : acceptStates.keySet()) {
+            idOf(state);
+        }
+
+        // Uncompressed table, one column per input symbol
+        int states = stateIds.size() + 1;
+        int[][] columns = new int[SYMBOL_COUNT][states];
+        for (Map.Entry<String, LinkedHashMap<Character, String>> entry : table.entrySet()) {
+            int from = stateIds.get(entry.getKey());
+            for (Map.Entry<Character, String> transition : entry.getValue().entrySet()) {
+                columns[transition.getKey()][from] = stateIds.get(transition.getValue());
+            }
+        }
+
+        // Symbols with identical columns share a class; class 0 is the all-dead column
+        List<int[]> classes = new ArrayList<>();
+        classes.add(new int[states]);
+        for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+            int cls = 0;
+            while (cls < classes.size() && !Arrays.equals(classes.get(cls), columns[symbol])) {
+                cls++;
+            }
+            if (cls == classes.size()) {
+                classes.add(columns[symbol]);
+            }
+            charClass[symbol] = (byte) cls;
+        }
+        classCount = classes.size();
+        next = new int[states][classCount];
+        for (int cls = 0; cls < classCount; cls++) {
+            int[] column = classes.get(cls);
+            for (int state = 0; state < states; state++) {
+                next[state][cls] = column[state];
+            }
+        }
+
+        LinkedHashMap<String, Integer> kinds = new LinkedHashMap<>();
+        acceptKind = new int[states];
+        Arrays.fill(acceptKind, NO_KIND);
+        for (Map.Entry<String, Integer> entry : stateIds.entrySet()) {
+            String name = acceptStates.get(entry.getKey());
+            if (name != null) {
+                Integer kind = kinds.get(name);
+                if (kind == null) {
+                    kind = kinds.size();
+                    kinds.put(name, kind);
+                }
+                acceptKind[entry.getValue()] = kind;
+            }
+        }
+        kindNames = kinds.keySet().toArray(new String[0]);
+        compiled = true;
+        minimizationReport = "DFA not minimized";
+    }
+
+    private int idOf(String state) {
+        Integer id = stateIds.get(state);
+        if (id == null) {
+            id = stateIds.size() + 1;
+            stateIds.put(state, id);
+        }
+        return id;
+    }
+
+    private void checkNotFrozen() {
+        if (frozen) {
+            throw new IllegalStateException("Automata is frozen and cannot be modified");
+        }
+    }
+
+    private void checkCompiled() {
+        if (!compiled) {
+            throw new IllegalStateException("Automata must be compiled before using integer state ids");
+        }
+    }
+
+    /**
+     * Gets the integer id of a named state in the compiled table.
+     *
+     * @param state The state name used with the builder API
+     * @return The state id, or DEAD if the state is unknown
+     */
+    public int getStateId(String state) {
+        checkCompiled();
+        Integer id = stateIds.get(state);
+        return id == null ? DEAD : id;
+    }
+
+    /**
+     * Gets the input symbol of a code point: the code point itself in ASCII, otherwise
+     * {@link #UNICODE_IDENTIFIER_START}, {@link #UNICODE_IDENTIFIER_PART} or
+     * {@link #UNICODE_OTHER} according to {@link Character#isUnicodeIdentifierStart(int)}
+     * and {@link Character#isUnicodeIdentifierPart(int)}. Ignorable characters, such as
+     * controls and format characters, are never part of an identifier.
+     *
+     * @param codePoint The code point
+     * @return The input symbol
+     */
+    public static char symbolOf(int codePoint) {
+        if (codePoint < ALPHABET_SIZE) {
+            return (char) codePoint;
+        }
+        if (Character.isUnicodeIdentifierStart(codePoint)) {
+            return UNICODE_IDENTIFIER_START;
+        }
+        if (Character.isUnicodeIdentifierPart(codePoint) && !Character.isIdentifierIgnorable(codePoint)) {
+            return UNICODE_IDENTIFIER_PART;
+        }
+        return UNICODE_OTHER;
+    }
+
+    /**
+     * Gets the character class of a character.
+     *
+     * @param inputSymbol The character
+     * @return The class index used as column of the compiled table
+     */
+    public int getCharClass(char inputSymbol) {
+        return (inputSymbol < ALPHABET_SIZE ? charClass[inputSymbol] : charClass[symbolOf(inputSymbol)]) & 0xFF;
+    }
+
+    /**
+     * Determines the next state on the compiled table. The dead state is absorbing.
+     * Characters outside ASCII are looked up by their Unicode symbol; a surrogate
+     * is {@link #UNICODE_OTHER}, so supplementary characters should go through
+     * {@link #nextCodePoint(int, int)} instead.
+     *
+     * @param state The current state id
+     * @param inputSymbol The input symbol being processed
+     * @return The next state id, or DEAD if there is no transition
+     */
+    public int nextState(int state, char inputSymbol) {
+        return next[state][(inputSymbol < ALPHABET_SIZE ? charClass[inputSymbol] : charClass[symbolOf(inputSymbol)]) & 0xFF];
+    }
+
+    /**
+     * Determines the next state on the compiled table for an input symbol, which may be
+     * one of the Unicode input symbols.
+     *
+     * @param state The current state id
+     * @param symbol The input symbol, below {@link #SYMBOL_COUNT}
+     * @return The next state id, or DEAD if there is no transition
+     */
+    public int nextSymbol(int state, int symbol) {
+        return next[state][charClass[symbol] & 0xFF];
+    }
+
+    /**
+     * Determines the next state on the compiled table for a code point.
+     *
+     * @param state The current state id
+     * @param codePoint The code point being processed
+     * @return The next state id, or DEAD if there is no transition
+     */
+    public int nextCodePoint(int state, int codePoint) {
+        return next[state][charClass[symbolOf(codePoint)] & 0xFF];
+    }
+
+    /**
+     * Checks if a compiled state is an accept state.
+     *
+     * @param state The state id
+     * @return true if the state is an accept state, false otherwise
+     */
+    public boolean isAcceptState(int state) {
+        return acceptKind[state] != NO_KIND;
+    }
+
+    /**
+     * Gets the accept kind of a compiled state.
+     *
+     * @param state The state id
+     * @return The accept kind, or NO_KIND if the state does not accept
+     */
+    public int getAcceptKind(int state) {
+        return acceptKind[state];
+    }
+
+    /**
+     * Gets the token type name associated with a compiled accept state.
+     *
+     * @param state The state id
+     * @return The token type name, or null if the state does not accept
+     */
+    public String getAcceptStateName(int state) {
+        int kind = getAcceptKind(state);
+        return kind == NO_KIND ? null : kindNames[kind];
+    }
+
+    /**
+     * Gets the token type name of an accept kind.
+     *
+     * @param kind The accept kind
+     * @return The token type name
+     */
+    public String getKindName(int kind) {
+        checkCompiled();
+        return kindNames[kind];
+    }
+
+    /**
+     * @return The number of states in the compiled table, including the dead state
+     */
+    public int getStateCount() {
+        checkCompiled();
+        return next.length;
+    }
+
+    /**
+     * @return The number of character classes (columns) in the compiled table
+     */
+    public int getClassCount() {
+        checkCompiled();
+        return classCount;
+    }
+
+    /**
+     * Counts the transitions of the compiled table, one per (state, input symbol) pair
+     * that does not lead to the dead state.
+     *
+     * @return The number of live transitions
+     */
+    public int getTransitionCount() {
+        checkCompiled();
+        int[] classSize = new int[classCount];
+        for (int symbol = 0; symbol < SYMBOL_COUNT; symbol++) {
+            classSize[charClass[symbol] & 0xFF]++;
+        }
+        int count = 0;
+        for (int state = 1; state < next.length; state++) {
+            for (int cls = 0; cls < classCount; cls++) {
+                if (next[state][cls] != DEAD) {
+                    count += classSize[cls];
+                }
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Minimizes the compiled table using Hopcroft's partition refinement algorithm.
+     * States start partitioned by accept kind, so token types are never merged, and
+     * every distinguished state is kept in a block of its own so that callers can keep
+     * referring to it by name. Named states are remapped to the id of their block.
+     *
+     * @param distinguished Names of states that must not be merged with any other state
+     */
+    public void minimize(String... distinguished) {
+        checkCompiled();
+        checkNotFrozen();
+        int states = next.length;
+        int statesBefore = states - 1;
+        int transitionsBefore = getTransitionCount();
+
+        // Initial partition: dead state's block, one block per accept kind, one per distinguished state
+        int[] blockOf = new int[states];
+        HashMap<String, Integer> initial = new HashMap<>();
+        HashSet<Integer> pinned = new HashSet<>();
+        for (String name : distinguished) {
+            pinned.add(getStateId(name));
+        }
+        for (int state = 0; state < states; state++) {
+            String key = pinned.contains(state) ? "#" + state : String.valueOf(acceptKind[state]);
+            Integer block = initial.get(key);
+            if (block == null) {
+                block = initial.size();
+                initial.put(key, block);
+            }
+            blockOf[state] = block;
+        }
+        List<List<Integer>> blocks = new ArrayList<>();
+        for (int i = 0; i < initial.size(); i++) {
+            blocks.add(new ArrayList<>());
+        }
+        for (int state = 0; state < states; state++) {
+            blocks.get(blockOf[state]).add(state);
+        }
+
+        // Inverse transitions: for each class and target, the states that reach it
+        List<List<List<Integer>>> inverse = new ArrayList<>();
+        for (int cls = 0; cls < classCount; cls++) {
+            List<List<Integer>> byTarget = new ArrayList<>();
+            for (int state = 0; state < states; state++) {
+                byTarget.add(new ArrayList<>());
+            }
+            for (int state = 0; state < states; state++) {
+                byTarget.get(next[state][cls]).add(state);
+            }
+            inverse.add(byTarget);
+        }
+
+        // Worklist of (block, class) splitters
+        ArrayDeque<int[]> worklist = new ArrayDeque<>();
+        HashSet<Long> pending = new HashSet<>();
+        for (int block = 0; block < blocks.size(); block++) {
+            for (int cls = 0; cls < classCount; cls++) {
+                worklist.add(new int[]{block, cls});
+                pending.add(((long) block << 32) | cls);
+            }
+        }
+        while (!worklist.isEmpty()) {
+            int[] splitter = worklist.poll();
+            pending.remove(((long) splitter[0] << 32) | splitter[1]);
+
+            // States whose transition on this class lands in the splitter block
+            HashSet<Integer> preimage = new HashSet<>();
+            for (int target : blocks.get(splitter[0])) {
+                preimage.addAll(inverse.get(splitter[1]).get(target));
+            }
+            HashSet<Integer> touched = new HashSet<>();
+            for (int state : preimage) {
+                touched.add(blockOf[state]);
+            }
+            for (int block : touched) {
+                List<Integer> inside = new ArrayList<>();
+                List<Integer> outside = new ArrayList<>();
+                for (int state : blocks.get(block)) {
+                    (preimage.contains(state) ? inside : outside).add(state);
+                }
+                if (outside.isEmpty()) {
+                    continue;
+                }
+                int created = blocks.size();
+                blocks.set(block, inside);
+                blocks.add(outside);
+                for (int state : outside) {
+                    blockOf[state] = created;
+                }
+                for (int cls = 0; cls < classCount; cls++) {
+                    int smaller = inside.size() <= outside.size() ? block : created;
+                    int chosen = pending.contains(((long) block << 32) | cls) ? created : smaller;
+                    worklist.add(new int[]{chosen, cls});
+                    pending.add(((long) chosen << 32) | cls);
+                }
+            }
+        }
+
+        // Renumber blocks: the dead state's block stays 0, others by their lowest state
+        int[] newId = new int[blocks.size()];
+        Arrays.fill(newId, -1);
+        newId[blockOf[DEAD]] = DEAD;
+        int count = 1;
+        for (int state = 0; state < states; state++) {
+            if (newId[blockOf[state]] == -1) {
+                newId[blockOf[state]] = count++;
+            }
+        }
+        int[][] minimized = new int[count][];
+        int[] minimizedKind = new int[count];
+        for (int state = 0; state < states; state++) {
+            int id = newId[blockOf[state]];
+            if (minimized[id] == null) {
+                minimized[id] = new int[classCount];
+                for (int cls = 0; cls < classCount; cls++) {
+                    minimized[id][cls] = newId[blockOf[next[state][cls]]];
+                }
+                minimizedKind[id] = acceptKind[state];
+            }
+        }
+        next = minimized;
+        acceptKind = minimizedKind;
+        for (Map.Entry<String, Integer> entry : stateIds.entrySet()) {
+            entry.setValue(newId[blockOf[entry.getValue()]]);
+        }
+
+        minimizationReport = "DFA minimized: " + statesBefore + " -> " + (count - 1) + " states, "
+                + transitionsBefore + " -> " + getTransitionCount() + " transitions, "
+                + classCount + " character classes";
+    }
+
+    /**
+     * Makes the automaton immutable. It must be compiled first; from then on every method
+     * that would change it throws an IllegalStateException.
+     */
+    public void freeze() {
+        checkCompiled();
+        frozen = true;
+    }
+
+    /**
+     * @return true if the automaton has been frozen
+     */
+    public boolean isFrozen() {
+        return frozen;
+    }
+
+    /**
+     * @return A summary of the state and transition counts before and after the last minimization
+     */
+    public String getMinimizationReport() {
+        return minimizationReport;
+    }
+
+    /**
+     * Writes the compiled table in binary form: the character classes, the transitions,
+     * the accept kinds and their names, the ids of the named states and the minimization
+     * report. State ids are written as unsigned 16-bit values.
+     *
+     * @param out The output
+     * @throws IOException If the output cannot be written
+     * @throws IllegalStateException If the table is not compiled or has too many states
+     */
+    public void write(DataOutput out) throws IOException {
+        checkCompiled();
+        if (next.length > MAX_WRITABLE_STATES) {
+            throw new IllegalStateException("Too many states to write: " + next.length);
+        }
+        out.writeShort(classCount);
+        out.write(charClass);
+        out.writeInt(next.length);
+        for (int[] row : next) {
+            for (int target : row) {
+                out.writeShort(target);
+            }
+        }
+        out.writeShort(kindNames.length);
+        for (String name : kindNames) {
+            out.writeUTF(name);
+        }
+        for (int kind : acceptKind) {
+            out.writeShort(kind + 1);
+        }
+        out.writeShort(stateIds.size());
+        for (Map.Entry<String, Integer> entry : stateIds.entrySet()) {
+            out.writeUTF(entry.getKey());
+            out.writeShort(entry.getValue());
+        }
+        out.writeUTF(minimizationReport);
+    }
+
+    /**
+     * Reads a compiled table written by {@link #write(DataOutput)}. Every state id, class
+     * and accept kind is checked against the sizes read, so a damaged input fails here
+     * instead of while scanning.
+     *
+     * @param in The input
+     * @return A compiled automaton, equivalent to the one written
+     * @throws IOException If the input cannot be read or is not a valid table
+     */
+    public static Automata read(DataInput in) throws IOException {
+        Automata dfa = new Automata();
+        dfa.classCount = in.readUnsignedShort();
+        in.readFully(dfa.charClass);
+        for (byte cls : dfa.charClass) {
+            checkRange(cls & 0xFF, dfa.classCount, "character class");
+        }
+        int states = in.readInt();
+        checkRange(states - 1, MAX_WRITABLE_STATES, "state count");
+        dfa.next = new int[states][dfa.classCount];
+        for (int[] row : dfa.next) {
+            for (int cls = 0; cls < dfa.classCount; cls++) {
+                row[cls] = checkRange(in.readUnsignedShort(), states, "state");
+            }
+        }
+        dfa.kindNames = new String[in.readUnsignedShort()];
+        for (int kind = 0; kind < dfa.kindNames.length; kind++) {
+            dfa.kindNames[kind] = in.readUTF();
+        }
+        dfa.acceptKind = new int[states];
+        for (int state = 0; state < states; state++) {
+            dfa.acceptKind[state] = checkRange(in.readUnsignedShort(), dfa.kindNames.length + 1, "accept kind") - 1;
+        }
+        int named = in.readUnsignedShort();
+        for (int i = 0; i < named; i++) {
+            String name = in.readUTF();
+            int id = checkRange(in.readUnsignedShort(), states, "state");
+            dfa.stateIds.put(name, id);
+            if (dfa.acceptKind[id] != NO_KIND) {
+                dfa.acceptStates.put(name, dfa.kindNames[dfa.acceptKind[id]]);
+            }
+        }
+        dfa.minimizationReport = in.readUTF();
+        dfa.compiled = true;
+        return dfa;
+    }
+
+    private static int checkRange(int value, int limit, String what) throws IOException {
+        if (value < 0 || value >= limit) {
+            throw new IOException("Invalid " + what + " in DFA table: " + value);
+        }
+        return value;
+    }
+
     /**
      * Prints the DFA's transition table in a GraphViz-compatible format.
      * Each line represents a transition in the format:
@@ -86,11 +649,11 @@ public class Automata {
      */
     public void printTable() {
         System.out.println("DFA Transition Table:");
-        for (String state : table.keySet()) {
-            String[] parts = state.split("/");
-            System.out.println(parts[0] + " -> " + table.get(state) + " [label=\"" + parts[1] + "\"];");
+        for (Map.Entry<String, LinkedHashMap<Character, String>> entry : table.entrySet()) {
+            for (Map.Entry<Character, String> transition : entry.getValue().entrySet()) {
+                System.out.println(entry.getKey() + " -> " + transition.getValue() + " [label=\"" + transition.getKey() + "\"];");
+            }
         }
     }
 
 }
-
@@ -4,8 +4,12 @@ import javiergs.vm.Interpreter;
 
 import javax.swing.*;
 import javax.swing.border.TitledBorder;
+import javax.swing.event.DocumentEvent;
+import javax.swing.event.DocumentListener;
 import javax.swing.filechooser.FileNameExtensionFilter;
 import javax.swing.table.DefaultTableModel;
+import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import java.awt.*;
 import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
@@ -14,6 +18,7 @@ import java.io.BufferedReader;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.Hashtable;
 import java.util.Vector;
@@ -29,6 +34,10 @@ public class CompilerUI extends JFrame implements ActionListener {
 
 	private JTextArea console, codeArea;
 	private JTextArea editor;
+	// Tokens of the editor, updated on every edit
+	private IncrementalLexer editorLexer = new IncrementalLexer("");
+	// Most lexical errors listed in the console; the rest are counted
+	private static final int MAX_DIAGNOSTICS = 20;
 	private JTable tokensTable;
 	private JTable semanticTable;
 	private JMenuItem menuOpen = new JMenuItem("Open ...");
@@ -132,12 +141,30 @@ public class CompilerUI extends JFrame implements ActionListener {
 		}
 	}
 
-	public void writeParseTree(Vector<String> parseTree) {
+	public void writeParseTree(SyntaxTree tree) {
 		StringBuilder treeText = new StringBuilder();
 		treeText.append("Parse Tree:\n");
 		treeText.append("===========\n\n");
-		for (String rule : parseTree) {
-			treeText.append(rule).append("\n");
+		// Recorrido en preorden sin recursión, con la profundidad como sangría
+		int depth = 0;
+		int node = tree.getFirstChild(SyntaxTree.ROOT);
+		while (node != SyntaxTree.NONE) {
+			String label = tree.getLabel(node);
+			if (label != null) {
+				treeText.append("  ".repeat(depth)).append(label).append("\n");
+			}
+			if (tree.getFirstChild(node) != SyntaxTree.NONE) {
+				node = tree.getFirstChild(node);
+				depth++;
+				continue;
+			}
+			while (node != SyntaxTree.NONE && tree.getNextSibling(node) == SyntaxTree.NONE) {
+				node = tree.getParent(node);
+				depth--;
+			}
+			if (node != SyntaxTree.NONE) {
+				node = tree.getNextSibling(node);
+			}
 		}
 		parseTreeArea.setText(treeText.toString());
 	}
@@ -217,69 +244,92 @@ public class CompilerUI extends JFrame implements ActionListener {
 				return;
 			}
 
-			try {
-				// Cargar datos de input antes de ejecutar
-				if (inputArea != null) {
-					setInputData(inputArea.getText());
+			// Cargar datos de input antes de ejecutar
+			if (inputArea != null) {
+				setInputData(inputArea.getText());
+			}
+			// Tokens del editor, ya analizados por el lexer incremental
+			TokenBuffer buffer = editorLexer.getTokenBuffer();
+
+			Vector<TheToken> tokens = buffer.toVector();
+
+			// show token in a table
+			writeTokenTable(tokens);
+
+			// fail fast on lexical errors
+			int errors = buffer.getErrorCount();
+			if (errors > 0) {
+				Diagnostics diagnostics = buffer.getDiagnostics(MAX_DIAGNOSTICS);
+				for (int i = 0; i < diagnostics.size(); i++) {
+					writeConsole(diagnostics.getMessage(i));
 				}
-				// Crear el lexer con el texto del editor
-				TheLexer lex = new TheLexer(editor.getText());
-				lex.run();
-				Vector<TheToken> tokens = lex.getTokens();
-
-				// show token in a table
-				writeTokenTable(tokens);
-
-				// counting errors
-				int errors = 0;
-				for (TheToken token : tokens) {
-					if (token.getType().equals("ERROR")) {
-						errors++;
-					}
+				if (errors > diagnostics.size()) {
+					writeConsole("...");
 				}
-
-				// show stats on console
-				writeConsole(tokens.size() + " strings found in " + tokens.get(tokens.size() - 1).getLineNumber() + " lines,");
 				writeConsole(errors + " strings do not match any rule");
+				writeConsole("Compilation failed due to lexical errors.");
+				return;
+			}
 
-				if (errors > 0) {
-					writeConsole("Compilation failed due to lexical errors.");
-					return;
-				}
+			// show stats on console
+			writeConsole(tokens.size() + " strings found in " + tokens.get(tokens.size() - 1).getLineNumber() + " lines,");
+			writeConsole(errors + " strings do not match any rule");
 
-				// Análisis sintáctico
-				TheParser parser = new TheParser(tokens);
-				parser.run();
-
-				//Mostrar parse tree
-				writeParseTree(parser.getParseTreeLog());
-
-				// Análisis semántico
-				TheSemantic semantic = parser.getSemantic();
-				if (semantic != null) {
-					writeSymbolTable(semantic.getSymbolTable());
-
-					// NO FALLAR POR ERRORES SEMÁNTICOS - solo mostrarlos
-					if (semantic.hasErrors()) {
-						writeConsole("Semantic warnings found:");
-						for (String error : semantic.getSemanticErrors()) {
-							writeConsole("WARNING: " + error);
-						}
-						// Continuar con la generación de código
-					} else {
-						writeConsole("No semantic errors found.");
+			// Análisis sintáctico
+			TheParser parser = new TheParser(buffer);
+			parser.run();
+
+			//Mostrar parse tree
+			writeParseTree(parser.getSyntaxTree());
+
+			// Análisis semántico
+			TheSemantic semantic = parser.getSemantic();
+			if (semantic != null) {
+				writeSymbolTable(semantic.getSymbolTable());
+
+				// NO FALLAR POR ERRORES SEMÁNTICOS - solo mostrarlos
+				if (semantic.hasErrors()) {
+					writeConsole("Semantic warnings found:");
+					for (String error : semantic.getSemanticErrors()) {
+						writeConsole("WARNING: " + error);
 					}
+					// Continuar con la generación de código
+				} else {
+					writeConsole("No semantic errors found.");
 				}
+			}
 
-				//Generación de código intermedio (SIEMPRE se ejecuta)
-				Vector<String> intermediateCode = parser.getIntermediateCode();
-				writeIntermediateCode(intermediateCode); // Esto ejecuta automáticamente
-				writeConsole("Compilation and execution completed!");
+			//Generación de código intermedio (SIEMPRE se ejecuta)
+			Vector<String> intermediateCode = parser.getIntermediateCode();
+			writeIntermediateCode(intermediateCode); // Esto ejecuta automáticamente
+			writeConsole("Compilation and execution completed!");
+		}
+	}
 
-			} catch (IOException ex) {
-				writeConsole("Error during compilation: " + ex.getMessage());
+	/**
+	 * Passes an edit of the editor to the incremental lexer. The lines around the edit
+	 * replace the lines that were there before it: an insertion turns one line into
+	 * several, and a removal turns several lines into one.
+	 *
+	 * @param e The insertion or removal
+	 */
+	private void relexEditor(DocumentEvent e) {
+		Element root = editor.getDocument().getDefaultRootElement();
+		int firstLine = root.getElementIndex(e.getOffset());
+		int added = root.getElementCount() - editorLexer.getLineCount();
+		int newCount = 1 + Math.max(added, 0);
+		ArrayList<String> newLines = new ArrayList<>(newCount);
+		try {
+			for (int i = firstLine; i < firstLine + newCount; i++) {
+				Element line = root.getElement(i);
+				String text = editor.getDocument().getText(line.getStartOffset(), line.getEndOffset() - line.getStartOffset());
+				newLines.add(text.endsWith("\n") ? text.substring(0, text.length() - 1) : text);
 			}
+		} catch (BadLocationException ex) {
+			editorLexer = new IncrementalLexer(editor.getText());
+			return;
 		}
+		editorLexer.update(firstLine, newCount - added, newLines);
 	}
 
 	private boolean loadFile(String file) throws IOException {
@@ -370,6 +420,21 @@ public class CompilerUI extends JFrame implements ActionListener {
 		screenPanel.setBorder(panelTitle);
 		editor = new JTextArea();
 		editor.setEditable(true);
+		editor.getDocument().addDocumentListener(new DocumentListener() {
+			@Override
+			public void insertUpdate(DocumentEvent e) {
+				relexEditor(e);
+			}
+
+			@Override
+			public void removeUpdate(DocumentEvent e) {
+				relexEditor(e);
+			}
+
+			@Override
+			public void changedUpdate(DocumentEvent e) {
+			}
+		});
 		JScrollPane scrollScreen = new JScrollPane(editor);
 		screenPanel.add(scrollScreen);
 
@@ -0,0 +1,141 @@
+package javiergs.compiler;
+
+import java.util.Arrays;
+
+/**
+ * Diagnostics.java
+ * ---------------
+ * Compact list of lexical errors. Each error is a kind, a line, a column and the span of
+ * the offending text in the source, held in parallel primitive arrays like the tokens of
+ * {@link TokenBuffer}, so listing the errors of a garbage input costs no more than a few
+ * arrays. Columns start at 1 and count chars, or bytes for a memory-mapped source.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class Diagnostics {
+
+	/**
+	 * The kinds of lexical error, told apart by how the offending text starts.
+	 */
+	public enum Kind {
+		INVALID_TOKEN("does not match any rule"),
+		UNTERMINATED_STRING("unterminated string literal"),
+		INVALID_CHAR("invalid char literal");
+
+		private final String message;
+
+		Kind(String message) {
+			this.message = message;
+		}
+
+		/**
+		 * @return The description of the error
+		 */
+		public String getMessage() {
+			return message;
+		}
+	}
+
+	private static final Kind[] KINDS = Kind.values();
+	private static final int INITIAL_CAPACITY = 16;
+
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	private int[] lines = new int[INITIAL_CAPACITY];
+	private int[] columns = new int[INITIAL_CAPACITY];
+	private int[] starts = new int[INITIAL_CAPACITY];
+	private int[] lengths = new int[INITIAL_CAPACITY];
+	private int size = 0;
+
+	/**
+	 * Appends an error.
+	 */
+	void add(Kind kind, int line, int column, int start, int length) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+			starts = Arrays.copyOf(starts, capacity);
+			lengths = Arrays.copyOf(lengths, capacity);
+		}
+		kinds[size] = (byte) kind.ordinal();
+		lines[size] = line;
+		columns[size] = column;
+		starts[size] = start;
+		lengths[size] = length;
+		size++;
+	}
+
+	/**
+	 * @return The number of errors
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param index The error index
+	 * @return The kind of the error
+	 */
+	public Kind getKind(int index) {
+		checkIndex(index);
+		return KINDS[kinds[index]];
+	}
+
+	/**
+	 * @param index The error index
+	 * @return The line number of the error
+	 */
+	public int getLine(int index) {
+		checkIndex(index);
+		return lines[index];
+	}
+
+	/**
+	 * @param index The error index
+	 * @return The column of the first character of the offending text, from 1
+	 */
+	public int getColumn(int index) {
+		checkIndex(index);
+		return columns[index];
+	}
+
+	/**
+	 * @param index The error index
+	 * @return The offset of the offending text in the source
+	 */
+	public int getStart(int index) {
+		checkIndex(index);
+		return starts[index];
+	}
+
+	/**
+	 * @param index The error index
+	 * @return The length of the offending text in the source
+	 */
+	public int getLength(int index) {
+		checkIndex(index);
+		return lengths[index];
+	}
+
+	/**
+	 * Describes an error for the user.
+	 *
+	 * @param index The error index
+	 * @return The description, such as "line 3, column 7: unterminated string literal"
+	 */
+	public String getMessage(int index) {
+		return "line " + getLine(index) + ", column " + getColumn(index) + ": " + getKind(index).getMessage();
+	}
+
+	private void checkIndex(int index) {
+		if (index >= size) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+	}
+
+}
@@ -0,0 +1,411 @@
+package javiergs.compiler;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * GrammarSpec.java
+ * ---------------
+ * Declarative grammar of a language, compiled into the {@link ParseTable} of a predictive
+ * parser. Every line of the grammar is one of:
+ * - NAME -> alternatives: the rule of a nonterminal, whose alternatives are separated by
+ *   '|'. A line that starts with '|' adds alternatives to the rule above it. The first
+ *   rule is the start symbol.
+ * - @expect count: the number of conflicts the grammar is known to have, as the dangling
+ *   else. A conflict is resolved for the alternative written first.
+ * - Blank lines and lines starting with '#' are ignored.
+ *
+ * The symbols of an alternative are separated by spaces. A symbol in quotes, such as
+ * 'while' or '&&', is the token kind with that text; a word is the nonterminal of that
+ * name, or else the token kind of that type, such as IDENTIFIER or INTEGER. @empty stands
+ * for an empty alternative. Rules whose names start with a lowercase letter are helpers:
+ * their symbols belong to the node of the rule that uses them in the syntax tree.
+ *
+ * The grammar is compiled by computing the nullable nonterminals and the FIRST and FOLLOW
+ * sets by fixed-point iteration, and then the table, where every pair of nonterminal and
+ * terminal has at most one production. The table is cached by the hash of the grammar
+ * text, so the same grammar is only compiled once.
+ *
+ * Usage: GrammarSpec, to print the sets and the table of the grammar of {@link TheTableParser}
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class GrammarSpec {
+
+	private static final Map<String, ParseTable> cache = new ConcurrentHashMap<>();
+
+	private static final String EMPTY = "@empty";
+	private static final int WORDS = ParseTable.SET_WORDS;
+
+	private final String text;
+	private final List<String> names = new ArrayList<>();
+	private final Map<String, Integer> nonterminals = new HashMap<>();
+	private int expectedConflicts = 0;
+
+	// Productions, with the symbols of each as in ParseTable
+	private final List<Integer> productionNonterminals = new ArrayList<>();
+	private final List<int[]> productions = new ArrayList<>();
+
+	// Alternatives as written, resolved once every rule is known
+	private final List<String[]> alternatives = new ArrayList<>();
+	private final List<Integer> alternativeLines = new ArrayList<>();
+
+	// Sets of the last compilation
+	private boolean[] nullable;
+	private long[] firstSets;
+	private long[] followSets;
+
+	private int lineNumber;
+
+	/**
+	 * Parses a grammar.
+	 *
+	 * @param text The grammar, one rule per line
+	 * @throws IllegalArgumentException If a line is not a valid rule or uses an unknown symbol
+	 */
+	public GrammarSpec(String text) {
+		this.text = text;
+		String[] lines = text.split("\n", -1);
+		for (lineNumber = 1; lineNumber <= lines.length; lineNumber++) {
+			String line = lines[lineNumber - 1].strip();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			if (line.startsWith("@expect")) {
+				try {
+					expectedConflicts = Integer.parseInt(line.substring("@expect".length()).strip());
+				} catch (NumberFormatException e) {
+					throw error("invalid conflict count");
+				}
+			} else if (line.startsWith("|")) {
+				if (names.isEmpty()) {
+					throw error("alternatives without a rule");
+				}
+				addAlternatives(names.size() - 1, line.substring(1));
+			} else {
+				int arrow = line.indexOf("->");
+				if (arrow < 0) {
+					throw error("expected NAME -> alternatives");
+				}
+				String name = line.substring(0, arrow).strip();
+				if (!name.matches("[A-Za-z_][A-Za-z_0-9]*")) {
+					throw error("invalid rule name " + name);
+				}
+				if (nonterminals.putIfAbsent(name, names.size()) != null) {
+					throw error("rule " + name + " is already defined");
+				}
+				names.add(name);
+				addAlternatives(names.size() - 1, line.substring(arrow + 2));
+			}
+		}
+		if (names.isEmpty()) {
+			throw error("no rules");
+		}
+		for (int i = 0; i < alternatives.size(); i++) {
+			lineNumber = alternativeLines.get(i);
+			productions.add(resolve(alternatives.get(i)));
+		}
+		lineNumber = 0;
+	}
+
+	/**
+	 * @return The hash of this grammar
+	 */
+	public String getHash() {
+		return TokenSpec.hash(text);
+	}
+
+	/**
+	 * Compiles the grammar, or returns the table compiled before for the same grammar text.
+	 *
+	 * @return The parse table
+	 * @throws IllegalArgumentException If the grammar is not LL(1): its conflicts are not the
+	 * number it expects
+	 */
+	public ParseTable compile() {
+		return cache.computeIfAbsent(getHash(), hash -> build());
+	}
+
+	private void addAlternatives(int nonterminal, String line) {
+		List<String> symbols = new ArrayList<>();
+		for (String symbol : line.strip().split("\\s+")) {
+			if (symbol.equals("|")) {
+				addAlternative(nonterminal, symbols);
+				symbols.clear();
+			} else if (!symbol.isEmpty()) {
+				symbols.add(symbol);
+			}
+		}
+		addAlternative(nonterminal, symbols);
+	}
+
+	private void addAlternative(int nonterminal, List<String> symbols) {
+		if (symbols.isEmpty()) {
+			throw error("empty alternative, write " + EMPTY);
+		}
+		if (symbols.contains(EMPTY) && symbols.size() > 1) {
+			throw error(EMPTY + " must be alone in its alternative");
+		}
+		productionNonterminals.add(nonterminal);
+		alternatives.add(symbols.get(0).equals(EMPTY) ? new String[0] : symbols.toArray(new String[0]));
+		alternativeLines.add(lineNumber);
+	}
+
+	/**
+	 * Resolves the symbols of an alternative into terminals and complemented nonterminals.
+	 */
+	private int[] resolve(String[] alternative) {
+		int[] symbols = new int[alternative.length];
+		for (int i = 0; i < alternative.length; i++) {
+			String symbol = alternative[i];
+			Integer nonterminal = nonterminals.get(symbol);
+			if (nonterminal != null) {
+				symbols[i] = ~nonterminal;
+				continue;
+			}
+			boolean quoted = symbol.length() > 2 && symbol.startsWith("'") && symbol.endsWith("'");
+			String word = quoted ? symbol.substring(1, symbol.length() - 1) : symbol;
+			symbols[i] = -1;
+			for (TokenKind kind : TokenKind.values()) {
+				if (quoted ? word.equals(kind.getText()) : kind.getText() == null && word.equals(kind.getType())) {
+					symbols[i] = kind.ordinal();
+					break;
+				}
+			}
+			if (symbols[i] < 0) {
+				throw error("unknown symbol " + symbol);
+			}
+		}
+		return symbols;
+	}
+
+	private ParseTable build() {
+		int count = names.size();
+		computeFirstSets(count);
+		computeFollowSets(count);
+
+		// Tabla completa: una fila por no terminal y una columna por terminal
+		int[] cells = new int[count * ParseTable.TERMINAL_COUNT];
+		Arrays.fill(cells, -1);
+		List<String> conflicts = new ArrayList<>();
+		long[] predict = new long[WORDS];
+		for (int production = 0; production < productions.size(); production++) {
+			int nonterminal = productionNonterminals.get(production);
+			Arrays.fill(predict, 0);
+			if (firstOf(productions.get(production), predict)) {
+				or(predict, 0, followSets, nonterminal * WORDS);
+			}
+			for (int terminal = 0; terminal < ParseTable.TERMINAL_COUNT; terminal++) {
+				if ((predict[terminal >>> 6] & (1L << terminal)) == 0) {
+					continue;
+				}
+				int cell = nonterminal * ParseTable.TERMINAL_COUNT + terminal;
+				if (cells[cell] < 0) {
+					cells[cell] = production;
+				} else {
+					conflicts.add(names.get(nonterminal) + " on " + ParseTable.terminalName(terminal) + ": "
+							+ describe(cells[cell]) + " | " + describe(production));
+				}
+			}
+		}
+		if (conflicts.size() != expectedConflicts) {
+			throw new IllegalArgumentException("Grammar is not LL(1), " + conflicts.size() + " conflicts where "
+					+ expectedConflicts + " are expected: " + String.join("; ", conflicts));
+		}
+
+		// Los terminales con la misma columna la comparten
+		int[] columns = new int[ParseTable.TERMINAL_COUNT];
+		List<int[]> distinct = new ArrayList<>();
+		for (int terminal = 0; terminal < ParseTable.TERMINAL_COUNT; terminal++) {
+			int[] column = new int[count];
+			for (int nonterminal = 0; nonterminal < count; nonterminal++) {
+				column[nonterminal] = cells[nonterminal * ParseTable.TERMINAL_COUNT + terminal];
+			}
+			int match = 0;
+			while (match < distinct.size() && !Arrays.equals(distinct.get(match), column)) {
+				match++;
+			}
+			if (match == distinct.size()) {
+				distinct.add(column);
+			}
+			columns[terminal] = match;
+		}
+		short[] actions = new short[count * distinct.size()];
+		for (int nonterminal = 0; nonterminal < count; nonterminal++) {
+			for (int column = 0; column < distinct.size(); column++) {
+				actions[nonterminal * distinct.size() + column] = (short) distinct.get(column)[nonterminal];
+			}
+		}
+
+		// Producciones en un solo arreglo
+		int[] starts = new int[productions.size() + 1];
+		for (int production = 0; production < productions.size(); production++) {
+			starts[production + 1] = starts[production] + productions.get(production).length;
+		}
+		int[] symbols = new int[starts[productions.size()]];
+		for (int production = 0; production < productions.size(); production++) {
+			int[] right = productions.get(production);
+			System.arraycopy(right, 0, symbols, starts[production], right.length);
+		}
+		boolean[] visible = new boolean[count];
+		for (int nonterminal = 0; nonterminal < count; nonterminal++) {
+			visible[nonterminal] = !Character.isLowerCase(names.get(nonterminal).charAt(0));
+		}
+		return new ParseTable(names.toArray(new String[0]), visible,
+				productionNonterminals.stream().mapToInt(Integer::intValue).toArray(), starts, symbols,
+				columns, distinct.size(), actions, followSets.clone(), conflicts);
+	}
+
+	/**
+	 * Computes the nullable nonterminals and their FIRST sets.
+	 */
+	private void computeFirstSets(int count) {
+		nullable = new boolean[count];
+		firstSets = new long[count * WORDS];
+		long[] first = new long[WORDS];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int production = 0; production < productions.size(); production++) {
+				int nonterminal = productionNonterminals.get(production);
+				Arrays.fill(first, 0);
+				boolean empty = firstOf(productions.get(production), first);
+				changed |= or(firstSets, nonterminal * WORDS, first, 0);
+				if (empty && !nullable[nonterminal]) {
+					nullable[nonterminal] = true;
+					changed = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Computes the FOLLOW sets of the nonterminals. END follows the start symbol.
+	 */
+	private void computeFollowSets(int count) {
+		followSets = new long[count * WORDS];
+		followSets[ParseTable.END >>> 6] |= 1L << ParseTable.END;
+		long[] trailer = new long[WORDS];
+		boolean changed = true;
+		while (changed) {
+			changed = false;
+			for (int production = 0; production < productions.size(); production++) {
+				// Lo que sigue a cada símbolo, recorriendo la producción de atrás hacia adelante
+				int nonterminal = productionNonterminals.get(production);
+				System.arraycopy(followSets, nonterminal * WORDS, trailer, 0, WORDS);
+				int[] right = productions.get(production);
+				for (int i = right.length - 1; i >= 0; i--) {
+					if (right[i] >= 0) {
+						Arrays.fill(trailer, 0);
+						trailer[right[i] >>> 6] = 1L << right[i];
+						continue;
+					}
+					int symbol = ~right[i];
+					changed |= or(followSets, symbol * WORDS, trailer, 0);
+					if (!nullable[symbol]) {
+						Arrays.fill(trailer, 0);
+					}
+					or(trailer, 0, firstSets, symbol * WORDS);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Adds FIRST of a sequence of symbols to a set.
+	 *
+	 * @return true if the sequence is nullable
+	 */
+	private boolean firstOf(int[] symbols, long[] set) {
+		for (int symbol : symbols) {
+			if (symbol >= 0) {
+				set[symbol >>> 6] |= 1L << symbol;
+				return false;
+			}
+			or(set, 0, firstSets, ~symbol * WORDS);
+			if (!nullable[~symbol]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds a set to another.
+	 *
+	 * @return true if the target changed
+	 */
+	private static boolean or(long[] target, int targetOffset, long[] source, int sourceOffset) {
+		boolean changed = false;
+		for (int i = 0; i < WORDS; i++) {
+			long merged = target[targetOffset + i] | source[sourceOffset + i];
+			if (merged != target[targetOffset + i]) {
+				target[targetOffset + i] = merged;
+				changed = true;
+			}
+		}
+		return changed;
+	}
+
+	private String describe(int production) {
+		StringBuilder text = new StringBuilder(names.get(productionNonterminals.get(production))).append(" ->");
+		for (String symbol : alternatives.get(production)) {
+			text.append(' ').append(symbol);
+		}
+		return alternatives.get(production).length == 0 ? text.append(' ').append(EMPTY).toString() : text.toString();
+	}
+
+	private String describeSet(long[] sets, int nonterminal) {
+		StringBuilder text = new StringBuilder();
+		for (int terminal = 0; terminal < ParseTable.TERMINAL_COUNT; terminal++) {
+			if ((sets[nonterminal * WORDS + (terminal >>> 6)] & (1L << terminal)) != 0) {
+				text.append(text.length() == 0 ? "" : " ").append(ParseTable.terminalName(terminal));
+			}
+		}
+		return text.toString();
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException("Grammar line " + lineNumber + ": " + message);
+	}
+
+	/**
+	 * Prints the FIRST and FOLLOW sets of the grammar of {@link TheTableParser}, its
+	 * conflicts and its table, a row per nonterminal with the production of each terminal.
+	 */
+	public static void main(String[] args) {
+		GrammarSpec grammar = new GrammarSpec(TheTableParser.GRAMMAR);
+		ParseTable table = grammar.build();
+		for (int nonterminal = 0; nonterminal < grammar.names.size(); nonterminal++) {
+			System.out.println(grammar.names.get(nonterminal) + (grammar.nullable[nonterminal] ? " (nullable)" : ""));
+			System.out.println("  FIRST:  " + grammar.describeSet(grammar.firstSets, nonterminal));
+			System.out.println("  FOLLOW: " + grammar.describeSet(grammar.followSets, nonterminal));
+		}
+		System.out.println();
+		for (String conflict : table.getConflicts()) {
+			System.out.println("Conflict " + conflict);
+		}
+		System.out.println();
+		for (int nonterminal = 0; nonterminal < table.getNonterminalCount(); nonterminal++) {
+			System.out.println(table.getName(nonterminal));
+			for (int terminal = 0; terminal < ParseTable.TERMINAL_COUNT; terminal++) {
+				int production = table.predict(nonterminal, terminal);
+				if (production >= 0) {
+					System.out.println("  " + ParseTable.terminalName(terminal) + "  " + table.describe(production));
+				}
+			}
+		}
+		System.out.printf("%n%d nonterminals, %d productions, %d columns for %d terminals, %d bytes of table%n",
+				table.getNonterminalCount(), table.getProductionCount(), table.getColumnCount(),
+				ParseTable.TERMINAL_COUNT, table.getNonterminalCount() * table.getColumnCount() * 2);
+	}
+
+}
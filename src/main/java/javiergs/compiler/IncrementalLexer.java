@@ -0,0 +1,127 @@
+package javiergs.compiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * IncrementalLexer.java
+ * ---------------
+ * Lexer for a document that is edited line by line, such as the editor of {@link CompilerUI}.
+ * It keeps the tokens of every line and the lexer state at the end of every line. An edit
+ * replaces a range of lines; only the new lines are lexed, and then the lines after them
+ * until the state at the end of a line is the same as before the edit, since from there
+ * on nothing can have changed.
+ *
+ * Lines are separated by '\n', as in {@link TheLexer#TheLexer(String)}, and produce the
+ * same tokens.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class IncrementalLexer {
+
+	private final TheLexer lexer = new TheLexer((File) null);
+	private final ArrayList<String> lines = new ArrayList<>();
+	private final ArrayList<TokenBuffer> lineTokens = new ArrayList<>();
+	private int[] endStates = new int[16];
+	private int relexedLines = 0;
+
+	/**
+	 * Constructs an incremental lexer and lexes the whole text.
+	 *
+	 * @param text The initial document
+	 */
+	public IncrementalLexer(String text) {
+		update(0, 0, Arrays.asList(text.split("\n", -1)));
+	}
+
+	/**
+	 * Replaces a range of lines and re-lexes what the edit may have changed.
+	 *
+	 * @param firstLine The index of the first line replaced, from 0
+	 * @param removedLines The number of lines replaced
+	 * @param newLines The lines that replace them, without line terminators
+	 */
+	public void update(int firstLine, int removedLines, List<String> newLines) {
+		if (firstLine < 0 || removedLines < 0 || firstLine + removedLines > lines.size()) {
+			throw new IndexOutOfBoundsException("Lines " + firstLine + " to " + (firstLine + removedLines)
+					+ " of " + lines.size());
+		}
+		int oldSize = lines.size();
+		int lastReplaced = firstLine + removedLines - 1;
+		int oldEntryState = lastReplaced >= 0 ? endStates[lastReplaced] : TheLexer.LINE_CODE;
+
+		// Shift the lines after the edit
+		int newSize = oldSize - removedLines + newLines.size();
+		if (newSize > endStates.length) {
+			endStates = Arrays.copyOf(endStates, Math.max(newSize, endStates.length * 2));
+		}
+		System.arraycopy(endStates, firstLine + removedLines, endStates, firstLine + newLines.size(),
+				oldSize - firstLine - removedLines);
+		lines.subList(firstLine, firstLine + removedLines).clear();
+		lineTokens.subList(firstLine, firstLine + removedLines).clear();
+		lines.addAll(firstLine, newLines);
+		lineTokens.addAll(firstLine, Collections.nCopies(newLines.size(), (TokenBuffer) null));
+
+		// Lex the new lines, then go on until the state entering a line is what it was before
+		relexedLines = 0;
+		int line = firstLine;
+		for (; line < firstLine + newLines.size(); line++) {
+			relex(line);
+		}
+		int entryState = line > 0 ? endStates[line - 1] : TheLexer.LINE_CODE;
+		while (line < lines.size() && entryState != oldEntryState) {
+			oldEntryState = endStates[line];
+			relex(line);
+			entryState = endStates[line];
+			line++;
+		}
+	}
+
+	private void relex(int line) {
+		int entryState = line > 0 ? endStates[line - 1] : TheLexer.LINE_CODE;
+		lineTokens.set(line, lexer.scanLine(lines.get(line), 1, entryState));
+		endStates[line] = lexer.getEndState();
+		relexedLines++;
+	}
+
+	/**
+	 * @return The number of lines of the document
+	 */
+	public int getLineCount() {
+		return lines.size();
+	}
+
+	/**
+	 * @return The number of lines lexed by the last update
+	 */
+	public int getRelexedLines() {
+		return relexedLines;
+	}
+
+	/**
+	 * Collects the tokens of all the lines into a single buffer over the whole document.
+	 *
+	 * @return The tokens of the document, with their line numbers
+	 */
+	public TokenBuffer getTokenBuffer() {
+		StringBuilder text = new StringBuilder();
+		int count = 0;
+		for (int i = 0; i < lines.size(); i++) {
+			count += lineTokens.get(i).size();
+		}
+		TokenBuffer tokens = new TokenBuffer(text, Math.max(1, count));
+		for (int i = 0; i < lines.size(); i++) {
+			tokens.append(lineTokens.get(i), text.length(), i);
+			text.append(lines.get(i)).append('\n');
+		}
+		return tokens;
+	}
+
+}
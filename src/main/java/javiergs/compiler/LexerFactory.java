@@ -0,0 +1,102 @@
+package javiergs.compiler;
+
+import java.io.File;
+
+/**
+ * LexerFactory.java
+ * ---------------
+ * Creates lexers for concurrent compiles. All lexers share the DFA that {@link TheLexer}
+ * builds once and freezes, so creating one costs no more than its token buffer, and a
+ * factory can be used by any number of threads at the same time. Each lexer must still be
+ * used by one thread only.
+ *
+ * A factory may carry a scanner produced by {@link TheScannerGenerator}, which is set on
+ * every lexer it creates. Generated scanners keep no state, so they are shared as well.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class LexerFactory {
+
+	private static final LexerFactory DEFAULT = new LexerFactory();
+
+	private final TheScanner scanner;
+	private final int errorBudget;
+
+	/**
+	 * Constructs a factory of lexers that run the interpreted DFA.
+	 */
+	public LexerFactory() {
+		this(null);
+	}
+
+	/**
+	 * Constructs a factory of lexers that run a generated scanner.
+	 *
+	 * @param scanner The generated scanner, or null to use the interpreted DFA
+	 */
+	public LexerFactory(TheScanner scanner) {
+		this(scanner, Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Constructs a factory of lexers that stop at an error budget, as set by
+	 * {@link TheLexer#setErrorBudget(int)}.
+	 *
+	 * @param scanner The generated scanner, or null to use the interpreted DFA
+	 * @param errorBudget The number of ERROR tokens at which lexing stops, at least 1
+	 */
+	public LexerFactory(TheScanner scanner, int errorBudget) {
+		if (errorBudget < 1) {
+			throw new IllegalArgumentException("Error budget must be at least 1: " + errorBudget);
+		}
+		this.scanner = scanner;
+		this.errorBudget = errorBudget;
+	}
+
+	/**
+	 * @return A factory of lexers that run the interpreted DFA
+	 */
+	public static LexerFactory getDefault() {
+		return DEFAULT;
+	}
+
+	/**
+	 * Creates a lexer for a text. The text is lexed right away, as with
+	 * {@link TheLexer#TheLexer(String)}.
+	 *
+	 * @param text The text to analyze
+	 * @return The lexer, with the tokens of the text
+	 */
+	public TheLexer newLexer(String text) {
+		return new TheLexer(text, scanner, errorBudget);
+	}
+
+	/**
+	 * Creates a lexer for a file. The file is lexed by {@link TheLexer#run()} or one of
+	 * its variants.
+	 *
+	 * @param file The input file to analyze
+	 * @return The lexer
+	 */
+	public TheLexer newLexer(File file) {
+		TheLexer lexer = new TheLexer(file);
+		lexer.setScanner(scanner);
+		lexer.setErrorBudget(errorBudget);
+		return lexer;
+	}
+
+	/**
+	 * Lexes a text.
+	 *
+	 * @param text The text to analyze
+	 * @return The tokens of the text
+	 */
+	public TokenBuffer lex(String text) {
+		return newLexer(text).getTokenBuffer();
+	}
+
+}
@@ -0,0 +1,113 @@
+package javiergs.compiler;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * MappedSource.java
+ * ---------------
+ * Character view of a memory-mapped source file, used by {@link TheLexer#runMapped()}.
+ * Scanning reads one byte per character, which is exact for ASCII; every other byte
+ * reads as a character above 127, and the scan loop then decodes the code point that
+ * starts there with {@link #codePointAt(int)}. Slices are decoded as UTF-8, so the text
+ * of a token is the same as when the file is read as characters.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+final class MappedSource implements CharSequence {
+
+	private final ByteBuffer bytes;
+
+	/**
+	 * @param bytes The mapped file contents, from position 0 to the limit
+	 */
+	MappedSource(ByteBuffer bytes) {
+		this.bytes = bytes;
+	}
+
+	/**
+	 * @return A view of the mapped bytes, from position 0 to the limit
+	 */
+	ByteBuffer getBytes() {
+		return bytes.duplicate();
+	}
+
+	@Override
+	public int length() {
+		return bytes.limit();
+	}
+
+	@Override
+	public char charAt(int index) {
+		return (char) (bytes.get(index) & 0xff);
+	}
+
+	/**
+	 * Decodes the UTF-8 sequence that starts at an offset.
+	 *
+	 * @param index The offset of the first byte
+	 * @return The code point, or U+FFFD if the bytes are not a well-formed sequence
+	 */
+	int codePointAt(int index) {
+		int count = byteCount(index);
+		int lead = bytes.get(index) & 0xff;
+		if (count == 1) {
+			return lead < 0x80 ? lead : 0xFFFD;
+		}
+		int codePoint = lead & (0x7f >> count);
+		for (int i = 1; i < count; i++) {
+			codePoint = (codePoint << 6) | (bytes.get(index + i) & 0x3f);
+		}
+		return codePoint;
+	}
+
+	/**
+	 * Gets the length of the UTF-8 sequence that starts at an offset.
+	 *
+	 * @param index The offset of the first byte
+	 * @return The number of bytes of the sequence, or 1 if it is not well formed
+	 */
+	int byteCount(int index) {
+		int lead = bytes.get(index) & 0xff;
+		int count = lead < 0xC2 ? 1 : lead < 0xE0 ? 2 : lead < 0xF0 ? 3 : lead < 0xF5 ? 4 : 1;
+		if (count == 1 || index + count > bytes.limit()) {
+			return 1;
+		}
+		for (int i = 1; i < count; i++) {
+			if ((bytes.get(index + i) & 0xc0) != 0x80) {
+				return 1;
+			}
+		}
+		int second = bytes.get(index + 1) & 0xff;
+		if ((lead == 0xE0 && second < 0xA0) || (lead == 0xED && second >= 0xA0)
+				|| (lead == 0xF0 && second < 0x90) || (lead == 0xF4 && second >= 0x90)) {
+			// Overlong, surrogate or beyond U+10FFFF
+			return 1;
+		}
+		return count;
+	}
+
+	/**
+	 * Decodes a range of the file.
+	 *
+	 * @param start The offset of the first byte
+	 * @param end The offset after the last byte
+	 * @return The decoded text
+	 */
+	@Override
+	public String subSequence(int start, int end) {
+		byte[] slice = new byte[end - start];
+		bytes.get(start, slice);
+		return new String(slice, StandardCharsets.UTF_8);
+	}
+
+	@Override
+	public String toString() {
+		return subSequence(0, length());
+	}
+
+}
@@ -0,0 +1,203 @@
+package javiergs.compiler;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * ParseTable.java
+ * ---------------
+ * Predictive parse table of an LL(1) grammar, compiled by {@link GrammarSpec} and read by
+ * {@link TheTableParser}. Terminals are the ordinals of {@link TokenKind}, plus
+ * {@link #END} for the end of the input; nonterminals are numbered from 0 in the order of
+ * their rules. The symbols of the productions are kept in one array, terminals as they
+ * are and nonterminals as their bitwise complement, so a symbol is a terminal if and only
+ * if it is not negative.
+ *
+ * Terminals whose columns are the same in every row share a column, so the table has one
+ * short per nonterminal and class of terminals: the production to expand, or -1.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public final class ParseTable {
+
+	private static final TokenKind[] KINDS = TokenKind.values();
+
+	/**
+	 * The terminal at the end of the input.
+	 */
+	public static final int END = KINDS.length;
+
+	/**
+	 * The number of terminals, including END.
+	 */
+	public static final int TERMINAL_COUNT = END + 1;
+
+	// Terminal sets are bit sets over the terminals
+	static final int SET_WORDS = (TERMINAL_COUNT + 63) / 64;
+
+	private final String[] names;
+	private final boolean[] visible;
+	private final int[] productionNonterminals;
+	private final int[] productionStarts;
+	private final int[] symbols;
+	private final int[] columns;
+	private final int columnCount;
+	private final short[] actions;
+	private final long[] followSets;
+	private final List<String> conflicts;
+
+	ParseTable(String[] names, boolean[] visible, int[] productionNonterminals, int[] productionStarts,
+			int[] symbols, int[] columns, int columnCount, short[] actions, long[] followSets,
+			List<String> conflicts) {
+		this.names = names;
+		this.visible = visible;
+		this.productionNonterminals = productionNonterminals;
+		this.productionStarts = productionStarts;
+		this.symbols = symbols;
+		this.columns = columns;
+		this.columnCount = columnCount;
+		this.actions = actions;
+		this.followSets = followSets;
+		this.conflicts = Collections.unmodifiableList(conflicts);
+	}
+
+	/**
+	 * @return The start symbol, nonterminal 0
+	 */
+	public int getStart() {
+		return 0;
+	}
+
+	/**
+	 * Looks up the production to expand.
+	 *
+	 * @param nonterminal The nonterminal on top of the stack
+	 * @param terminal The next terminal of the input
+	 * @return The production, or -1 if the terminal cannot follow the nonterminal here
+	 */
+	public int predict(int nonterminal, int terminal) {
+		return actions[nonterminal * columnCount + columns[terminal]];
+	}
+
+	/**
+	 * @param nonterminal The nonterminal
+	 * @param terminal The terminal
+	 * @return true if the terminal is in FOLLOW of the nonterminal
+	 */
+	public boolean follows(int nonterminal, int terminal) {
+		return (followSets[nonterminal * SET_WORDS + (terminal >>> 6)] & (1L << terminal)) != 0;
+	}
+
+	/**
+	 * @param production The production
+	 * @return The index in {@link #getSymbol(int)} of the first symbol of its right side
+	 */
+	public int getProductionStart(int production) {
+		return productionStarts[production];
+	}
+
+	/**
+	 * @param production The production
+	 * @return The index in {@link #getSymbol(int)} after the last symbol of its right side
+	 */
+	public int getProductionEnd(int production) {
+		return productionStarts[production + 1];
+	}
+
+	/**
+	 * @param production The production
+	 * @return The nonterminal on its left side
+	 */
+	public int getProductionNonterminal(int production) {
+		return productionNonterminals[production];
+	}
+
+	/**
+	 * @param index The index of a symbol of a production
+	 * @return The symbol: a terminal, or the complement of a nonterminal
+	 */
+	public int getSymbol(int index) {
+		return symbols[index];
+	}
+
+	/**
+	 * @param nonterminal The nonterminal
+	 * @return true if the nonterminal has a node of its own in the syntax tree
+	 */
+	public boolean isVisible(int nonterminal) {
+		return visible[nonterminal];
+	}
+
+	/**
+	 * @param nonterminal The nonterminal
+	 * @return The name of its rule
+	 */
+	public String getName(int nonterminal) {
+		return names[nonterminal];
+	}
+
+	/**
+	 * @return The number of nonterminals
+	 */
+	public int getNonterminalCount() {
+		return names.length;
+	}
+
+	/**
+	 * @return The number of productions
+	 */
+	public int getProductionCount() {
+		return productionNonterminals.length;
+	}
+
+	/**
+	 * @return The number of columns, the classes of terminals told apart by the table
+	 */
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * @return The conflicts allowed by the grammar, each resolved for the alternative
+	 * written first
+	 */
+	public List<String> getConflicts() {
+		return conflicts;
+	}
+
+	/**
+	 * Describes a terminal as it is written in a grammar.
+	 *
+	 * @param terminal The terminal
+	 * @return Its text in quotes, such as 'while', its type, such as IDENTIFIER, or END
+	 */
+	public static String terminalName(int terminal) {
+		if (terminal == END) {
+			return "END";
+		}
+		TokenKind kind = KINDS[terminal];
+		return kind.getText() != null ? "'" + kind.getText() + "'" : kind.getType();
+	}
+
+	/**
+	 * Describes a production as it is written in a grammar.
+	 *
+	 * @param production The production
+	 * @return The description, such as "WHILE -> 'while' '(' EXPRESSION ')' STATEMENT"
+	 */
+	public String describe(int production) {
+		StringBuilder text = new StringBuilder(names[productionNonterminals[production]]).append(" ->");
+		if (getProductionStart(production) == getProductionEnd(production)) {
+			text.append(" @empty");
+		}
+		for (int i = getProductionStart(production); i < getProductionEnd(production); i++) {
+			text.append(' ').append(symbols[i] >= 0 ? terminalName(symbols[i]) : names[~symbols[i]]);
+		}
+		return text.toString();
+	}
+
+}
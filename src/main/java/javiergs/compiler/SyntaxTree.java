@@ -0,0 +1,304 @@
+package javiergs.compiler;
+
+import java.util.Arrays;
+
+/**
+ * SyntaxTree.java
+ * ---------------
+ * Tree built by {@link TheParser}, kept in an arena: a node is an index into parallel
+ * arrays holding its kind, its links to its parent, first child and next sibling, the
+ * span of tokens it covers, and the kind, line and text of its first token. Nodes are
+ * appended in the order they are parsed and never removed, so a tree of any size is a
+ * handful of arrays. The parser gives the parent of every node it adds, and ends the span
+ * of a rule when it leaves the rule.
+ *
+ * Statements are kept as the parser matched them: a node for each rule with the tokens it
+ * matched as children. Expressions are kept as operators over their operands. Node 0 is
+ * the root, with no text, that holds the top-level nodes.
+ *
+ * Only the expressions are read back: {@link TheParser} checks their types and generates
+ * their code from this tree. Declarations, assignments, calls, conditions and jumps are
+ * still checked and generated from the tokens while the statements are parsed.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class SyntaxTree {
+
+	/**
+	 * The kinds of node.
+	 */
+	public enum Kind {
+		// The root of the tree
+		ROOT,
+		// A rule of the grammar
+		RULE,
+		// A token matched by a rule
+		TOKEN,
+		// An expression, whose only child is its operator or operand
+		EXPRESSION,
+		// An operator with its left and right operands as children
+		BINARY,
+		// A prefix operator with its operand as child
+		UNARY,
+		// A variable used as operand
+		VARIABLE,
+		// A literal used as operand
+		LITERAL,
+		// A missing operand, after a syntax error
+		ERROR
+	}
+
+	public static final int ROOT = 0;
+	public static final int NONE = -1;
+
+	private static final Kind[] KINDS = Kind.values();
+	private static final TokenKind[] TOKEN_KINDS = TokenKind.values();
+	private static final int INITIAL_CAPACITY = 256;
+
+	private byte[] kinds = new byte[INITIAL_CAPACITY];
+	private int[] parents = new int[INITIAL_CAPACITY];
+	private int[] firstChildren = new int[INITIAL_CAPACITY];
+	private int[] lastChildren = new int[INITIAL_CAPACITY];
+	private int[] nextSiblings = new int[INITIAL_CAPACITY];
+	private int[] firstTokens = new int[INITIAL_CAPACITY];
+	private int[] endTokens = new int[INITIAL_CAPACITY];
+	private byte[] tokenKinds = new byte[INITIAL_CAPACITY];
+	private int[] lines = new int[INITIAL_CAPACITY];
+	private String[] texts = new String[INITIAL_CAPACITY];
+	private int size = 0;
+
+	SyntaxTree() {
+		int root = newNode(Kind.ROOT, null, 0, null, 0);
+		parents[root] = NONE;
+	}
+
+	/**
+	 * Adds a node as the last child of a node. Its span is empty until {@link #end(int, int)}.
+	 *
+	 * @param parent The parent of the new node
+	 * @param kind The kind of node
+	 * @param text The text of the node: the rule name, token value or operator
+	 * @param token The index of its first token
+	 * @param tokenKind The kind of its first token, or null if there is none
+	 * @param line The line of its first token
+	 * @return The new node
+	 */
+	int add(int parent, Kind kind, String text, int token, TokenKind tokenKind, int line) {
+		checkIndex(parent);
+		int node = newNode(kind, text, token, tokenKind, line);
+		appendChild(parent, node);
+		return node;
+	}
+
+	/**
+	 * Puts a new node in the place of a node, and the node as the new node's first child,
+	 * as when the operator that follows an operand is found. The new node's span starts at
+	 * the node's.
+	 *
+	 * @param node The last child of its parent
+	 * @param kind The kind of the new node
+	 * @param text The text of the new node
+	 * @param token The index of the token of the new node
+	 * @param tokenKind The kind of the token of the new node
+	 * @param line The line of the token of the new node
+	 * @return The new node
+	 */
+	int wrap(int node, Kind kind, String text, int token, TokenKind tokenKind, int line) {
+		int parent = getParent(node);
+		int wrapper = newNode(kind, text, firstTokens[node], tokenKind, line);
+		// Desenlazar el nodo, que es el último hijo de su padre
+		if (firstChildren[parent] == node) {
+			firstChildren[parent] = NONE;
+			lastChildren[parent] = NONE;
+		} else {
+			int previous = firstChildren[parent];
+			while (nextSiblings[previous] != node) {
+				previous = nextSiblings[previous];
+			}
+			nextSiblings[previous] = NONE;
+			lastChildren[parent] = previous;
+		}
+		appendChild(parent, wrapper);
+		appendChild(wrapper, node);
+		return wrapper;
+	}
+
+	/**
+	 * Changes the kind of a node.
+	 */
+	void setKind(int node, Kind kind) {
+		checkIndex(node);
+		kinds[node] = (byte) kind.ordinal();
+	}
+
+	/**
+	 * Ends the span of a node at a token, unless it already ends after it.
+	 *
+	 * @param node The node
+	 * @param token The index of the token after its last token
+	 */
+	void end(int node, int token) {
+		checkIndex(node);
+		endTokens[node] = Math.max(endTokens[node], token);
+	}
+
+	/**
+	 * @return The number of nodes, including the root
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @param node The node
+	 * @return The kind of the node
+	 */
+	public Kind getKind(int node) {
+		checkIndex(node);
+		return KINDS[kinds[node]];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The parent of the node, or NONE for the root
+	 */
+	public int getParent(int node) {
+		checkIndex(node);
+		return parents[node];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The first child of the node, or NONE if it has none
+	 */
+	public int getFirstChild(int node) {
+		checkIndex(node);
+		return firstChildren[node];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The next child of the node's parent, or NONE if it is the last one
+	 */
+	public int getNextSibling(int node) {
+		checkIndex(node);
+		return nextSiblings[node];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The index of the first token of the node
+	 */
+	public int getFirstToken(int node) {
+		checkIndex(node);
+		return firstTokens[node];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The index of the token after the last token of the node
+	 */
+	public int getEndToken(int node) {
+		checkIndex(node);
+		return endTokens[node];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The kind of the token of the node: its first token, or its operator for an
+	 * operator; null if it has no tokens
+	 */
+	public TokenKind getTokenKind(int node) {
+		checkIndex(node);
+		return tokenKinds[node] < 0 ? null : TOKEN_KINDS[tokenKinds[node]];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The line of the first token of the node
+	 */
+	public int getLine(int node) {
+		checkIndex(node);
+		return lines[node];
+	}
+
+	/**
+	 * @param node The node
+	 * @return The text of the node: the rule name or token for a rule, the name of a
+	 * variable, the value of a literal, or the operator
+	 */
+	public String getText(int node) {
+		checkIndex(node);
+		return texts[node];
+	}
+
+	/**
+	 * Describes a node for a listing of the tree.
+	 *
+	 * @param node The node
+	 * @return The description, or null for the nodes that are not listed: the root and
+	 * the missing operands
+	 */
+	public String getLabel(int node) {
+		switch (getKind(node)) {
+			case ROOT:
+			case ERROR:
+				return null;
+			case TOKEN:
+				return getTokenKind(node) == TokenKind.IDENTIFIER ? "IDENTIFIER: " + texts[node] : texts[node];
+			case VARIABLE:
+				return "IDENTIFIER: " + texts[node];
+			case LITERAL:
+				return "LITERAL: " + texts[node];
+			default:
+				return texts[node];
+		}
+	}
+
+	private int newNode(Kind kind, String text, int token, TokenKind tokenKind, int line) {
+		if (size == kinds.length) {
+			int capacity = size * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			firstChildren = Arrays.copyOf(firstChildren, capacity);
+			lastChildren = Arrays.copyOf(lastChildren, capacity);
+			nextSiblings = Arrays.copyOf(nextSiblings, capacity);
+			firstTokens = Arrays.copyOf(firstTokens, capacity);
+			endTokens = Arrays.copyOf(endTokens, capacity);
+			tokenKinds = Arrays.copyOf(tokenKinds, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			texts = Arrays.copyOf(texts, capacity);
+		}
+		kinds[size] = (byte) kind.ordinal();
+		firstChildren[size] = NONE;
+		lastChildren[size] = NONE;
+		nextSiblings[size] = NONE;
+		firstTokens[size] = token;
+		endTokens[size] = token;
+		tokenKinds[size] = (byte) (tokenKind == null ? -1 : tokenKind.ordinal());
+		lines[size] = line;
+		texts[size] = text;
+		return size++;
+	}
+
+	private void appendChild(int parent, int child) {
+		parents[child] = parent;
+		if (lastChildren[parent] == NONE) {
+			firstChildren[parent] = child;
+		} else {
+			nextSiblings[lastChildren[parent]] = child;
+		}
+		lastChildren[parent] = child;
+	}
+
+	private void checkIndex(int node) {
+		if (node < 0 || node >= size) {
+			throw new ArrayIndexOutOfBoundsException(node);
+		}
+	}
+
+}
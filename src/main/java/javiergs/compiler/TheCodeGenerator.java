@@ -205,6 +205,15 @@ public class TheCodeGenerator {
             case "<":
                 intermediateCode.add("opr 12, 0"); // Less than
                 break;
+            case ">=":
+                // La VM no tiene >= ni <=: a >= b se evalúa como !(a < b)
+                intermediateCode.add("opr 12, 0");
+                intermediateCode.add("opr 10, 0");
+                break;
+            case "<=":
+                intermediateCode.add("opr 11, 0");
+                intermediateCode.add("opr 10, 0");
+                break;
             case "==":
                 intermediateCode.add("opr 15, 0"); // Equal
                 break;
@@ -335,6 +344,30 @@ public class TheCodeGenerator {
         intermediateCode.add("opr 22, 0"); // Input operation
     }
 
+    /**
+     * Marks the end of the code generated so far
+     */
+    public int mark() {
+        return intermediateCode.size();
+    }
+
+    /**
+     * Removes the code generated since a mark, to be appended later in the program
+     */
+    public List<String> cut(int mark) {
+        List<String> tail = intermediateCode.subList(mark, intermediateCode.size());
+        List<String> code = new ArrayList<>(tail);
+        tail.clear();
+        return code;
+    }
+
+    /**
+     * Appends code removed with cut
+     */
+    public void append(List<String> code) {
+        intermediateCode.addAll(code);
+    }
+
     /**
      * Metodo específico para do-while loops
      */
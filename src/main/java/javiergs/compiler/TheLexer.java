@@ -1,7 +1,16 @@
 package javiergs.compiler;
 
 import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
 import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.zip.CRC32;
 import javiergs.compiler.*;
 
 
@@ -34,22 +43,132 @@ public class TheLexer {
 
     private File file;
     private Automata dfa;
-    private Vector<TheToken> tokens;
+    private StringBuilder text;
+    private TokenBuffer tokens;
+    private TheScanner scanner;
+
+    // Compiled DFA state ids referenced by the scan loop
+    private int startState;
+    private int zeroState;
+    private int decimalState;
+    private int stringBodyState;
+    private int stringEndState;
+    private int octalState;
+    private int intExponentState;
+    private int floatExponentState;
+    private int charOpenState;
+    private int charBodyState;
+    private int charEndState;
+
+    // Token kind of every DFA state, ERROR for states that do not accept
+    private TokenKind[] stateKinds;
+
+    // State of the lexer at the end of the last line scanned, where the next line starts
+    private int endState = LINE_CODE;
+
+    // Whether comment bodies are skipped with a bulk search for their end
+    private boolean skipCommentBodies = true;
+
+    // Number of ERROR tokens at which lexing stops
+    private int errorBudget = Integer.MAX_VALUE;
+
+    // States of the lexer at the end of a line
+    static final int LINE_CODE = 0;
+    static final int LINE_BLOCK_COMMENT = 1;
+
+    // Names of the DFA states the scan loop refers to
+    static final String START_STATE = "s0";
+    static final String ZERO_STATE = "s1";
+    static final String DECIMAL_STATE = "s4";
+    static final String STRING_BODY_STATE = "s6";
+    static final String STRING_END_STATE = "s7";
+    static final String OCTAL_STATE = "s10";
+    static final String INT_EXPONENT_STATE = "s13";
+    static final String FLOAT_EXPONENT_STATE = "s16";
+    static final String CHAR_OPEN_STATE = "s20";
+    static final String CHAR_BODY_STATE = "s21";
+    static final String CHAR_END_STATE = "s22";
+
+    // Parallel lexing: chunks are at least MIN_CHUNK_SIZE bytes, a few per pool thread
+    private static final int MIN_CHUNK_SIZE = 1 << 20;
+    private static final int CHUNKS_PER_THREAD = 4;
+
+    // Initial token capacity of a single line
+    private static final int LINE_CAPACITY = 16;
+
+    // Serialized shared DFA, written at build time by main() next to this class
+    static final String DFA_SNAPSHOT = "TheLexer.dfa";
+    private static final int SNAPSHOT_MAGIC = 0x44464132;
+
+    /**
+     * Token kinds recognized by the DFA, in the format of {@link TokenSpec}. The named
+     * states are the ones the scan loop refers to. Operators, delimiters, comments and
+     * keywords are handled by the scan loop itself.
+     */
+    static final String TOKEN_SPEC = """
+            # KIND       priority  regex
+            BINARY       1  0[bB][01]+
+            INTEGER      1  0|[1-9][0-9]*|0[0-7]*[89][0-9]*
+            INTEGER      1  ([1-9][0-9]*|0[0-7]*[89][0-9]*)[eE]-?[1-9][0-9]*
+            OCTAL        1  0[0-7]+
+            HEXADECIMAL  1  0[xX][0-9a-fA-F]+
+            FLOAT        1  [0-9]+[.][0-9]*[fF]?
+            FLOAT        1  [0-9]+[.][0-9]+[eE]-?[1-9][0-9]*[fF]?
+            FLOAT        1  (0|[1-9][0-9]*|0[0-7]*[89][0-9]*)[fF]
+            IDENTIFIER   1  [a-zA-Z_$[:unicode-id-start:]][a-zA-Z0-9_$[:unicode-id-part:]]*
+            STRING       1  "[ !#-~[:unicode:]]*"
+            CHAR         1  '[ -&(-~[:unicode:]]'
+
+            # States of the scan loop, by the input that reaches them
+            @state s0
+            @state s1   0
+            @state s4   1
+            @state s6   "
+            @state s7   ""
+            @state s10  01
+            @state s13  1e
+            @state s16  0.0e
+            @state s20  '
+            @state s21  'a
+            @state s22  'a'
+            """;
+
     private static final Set<String> keywords = new HashSet<>(Arrays.asList(
             "int", "end", "if", "else", "while", "do", "for", "break", "continue", "class", "float", "true", "false", "string", "char", "void", "boolean", "return", "switch", "case", "default", "println", "inputln"
     ));
 
+    // Compiled and frozen DFA shared by all lexers, built once when the class is loaded
+    private static final TheLexer SHARED = new TheLexer();
+
     /**
      * Constructor que acepta texto directo en lugar de archivo
      * @param text El texto a analizar
      */
     public TheLexer(String text) {
-        this.file = null; // No hay archivo
-        tokens = new Vector<>();
-        dfa = new Automata();
+        this(text, null);
+    }
+
+    /**
+     * Constructor que acepta texto directo y el scanner que lo analiza
+     * @param text El texto a analizar
+     * @param scanner El scanner generado, o null para usar el DFA interpretado
+     */
+    TheLexer(String text, TheScanner scanner) {
+        this(text, scanner, Integer.MAX_VALUE);
+    }
 
-        // Inicializar el DFA
-        initializeDFA();
+    /**
+     * Constructor que acepta texto directo, el scanner que lo analiza y el presupuesto de errores
+     * @param text El texto a analizar
+     * @param scanner El scanner generado, o null para usar el DFA interpretado
+     * @param errorBudget El numero de errores con el que se deja de analizar
+     */
+    TheLexer(String text, TheScanner scanner, int errorBudget) {
+        this(SHARED);
+        this.file = null; // No hay archivo
+        this.scanner = scanner;
+        this.errorBudget = errorBudget;
+        tokens = newBuffer(text);
 
         // Procesar el texto directamente
         processText(text);
@@ -58,17 +177,57 @@ public class TheLexer {
 
     /**
      * Constructs a new Lexer for the specified input file.
-     * Initializes the DFA with transitions for all supported token types.
+     * Uses the DFA shared by all lexers, with transitions for all supported token types.
      *
      * @param file The input file to be analyzed
      */
     public TheLexer(File file) {
+        this(SHARED);
         this.file = file;
-        tokens = new Vector<>();
-        dfa = new Automata();
+        text = new StringBuilder();
+        tokens = new TokenBuffer(text);
+    }
 
-        // Inicializar el DFA
-        initializeDFA();
+    /**
+     * Constructs the lexer that holds the shared DFA. The DFA is read from the snapshot
+     * resource if there is a valid one, or else built, compiled and minimized here. Either
+     * way it is frozen, once, and every other lexer copies it from this one.
+     */
+    private TheLexer() {
+        dfa = loadSnapshot();
+        if (dfa == null) {
+            // Inicializar el DFA
+            dfa = initializeDFA();
+        }
+        dfa.freeze();
+        resolveStates();
+    }
+
+    /**
+     * Constructs a lexer that shares the compiled DFA and the scanner of another one, with
+     * its own token list. The DFA is frozen and only read while scanning, and generated
+     * scanners keep no state, so they can be shared between threads, such as the chunks
+     * of {@link #runParallel(ForkJoinPool)}.
+     *
+     * @param prototype The lexer whose DFA is shared
+     */
+    private TheLexer(TheLexer prototype) {
+        this.file = prototype.file;
+        this.dfa = prototype.dfa;
+        this.startState = prototype.startState;
+        this.zeroState = prototype.zeroState;
+        this.decimalState = prototype.decimalState;
+        this.stringBodyState = prototype.stringBodyState;
+        this.stringEndState = prototype.stringEndState;
+        this.octalState = prototype.octalState;
+        this.intExponentState = prototype.intExponentState;
+        this.floatExponentState = prototype.floatExponentState;
+        this.charOpenState = prototype.charOpenState;
+        this.charBodyState = prototype.charBodyState;
+        this.charEndState = prototype.charEndState;
+        this.stateKinds = prototype.stateKinds;
+        this.scanner = prototype.scanner;
+        this.skipCommentBodies = prototype.skipCommentBodies;
     }
 
     /**
@@ -76,18 +235,42 @@ public class TheLexer {
      * @param text El texto a procesar
      */
     private void processText(String text) {
-        String[] lines = text.split("\n");
+        int lineStart = 0;
         int lineNumber = 1;
+        endState = LINE_CODE;
 
-        for (String line : lines) {
-            algorithm(line, lineNumber);
-            lineNumber++;
+        try {
+            while (lineStart < text.length()) {
+                if (endState == LINE_BLOCK_COMMENT && skipCommentBodies) {
+                    // Salta las lineas dentro del comentario sin analizarlas
+                    int close = text.indexOf("*/", lineStart);
+                    if (close < 0) {
+                        return;
+                    }
+                    int next;
+                    while ((next = text.indexOf('\n', lineStart)) >= 0 && next < close) {
+                        lineStart = next + 1;
+                        lineNumber++;
+                    }
+                }
+                int lineEnd = text.indexOf('\n', lineStart);
+                if (lineEnd < 0) {
+                    lineEnd = text.length();
+                }
+                scanLine(text, lineStart, lineEnd, lineNumber);
+                lineStart = lineEnd + 1;
+                lineNumber++;
+            }
+        } catch (TokenBuffer.ErrorBudgetException e) {
+            // Demasiados errores: el resto del texto no se analiza
         }
     }
 
     /**
      * Executes the lexical analysis on the input file.
      * Reads the file line by line and processes each line using the DFA.
+     * The lines are kept, since the tokens refer to them as spans. A block comment
+     * may span lines: each line starts in the state the previous one ended in.
      *
      * @throws IOException If an I/O error occurs while reading the input file
      */
@@ -99,190 +282,446 @@ public class TheLexer {
         BufferedReader reader = new BufferedReader(new FileReader(file));
         String line;
         int lineNumber = 1;
-        while ((line = reader.readLine()) != null) {
-            algorithm(line, lineNumber);
-            lineNumber++;
+        endState = LINE_CODE;
+        try {
+            while ((line = reader.readLine()) != null) {
+                int lineStart = text.length();
+                text.append(line).append('\n');
+                scanLine(text, lineStart, lineStart + line.length(), lineNumber);
+                lineNumber++;
+            }
+        } catch (TokenBuffer.ErrorBudgetException e) {
+            // Demasiados errores: el resto del archivo no se lee
+        } finally {
+            reader.close();
         }
-        reader.close();
     }
 
     /**
-     * Método para inicializar el DFA
+     * Executes the lexical analysis on a memory-mapped view of the input file.
+     * The file is scanned byte by byte, without creating a String per line or per token,
+     * and tokens are recorded as (offset, length, kind) spans into the mapped buffer.
+     * Their text is only decoded when requested. Bytes outside ASCII are decoded as UTF-8
+     * code points, as {@link #run()} reads them. The token list of this lexer is not modified.
+     *
+     * @return The spans of all tokens in the file
+     * @throws IOException If the file cannot be mapped, or is larger than 2 GB
+     */
+    public TokenBuffer runMapped() throws IOException {
+        return scanMapped(map());
+    }
+
+    /**
+     * Executes the lexical analysis as {@link #runMapped()}, through a directory of token
+     * files kept by {@link TokenCache}. If the directory has the tokens of a file with the
+     * same content, they are read from there instead of lexing the file again; otherwise
+     * the file is lexed and its tokens are written there for the next run. A token file
+     * that cannot be written only means the next run lexes the file again.
+     *
+     * @param cacheDirectory The directory of the token files
+     * @return The spans of all tokens in the file, the same as {@link #runMapped()}
+     * @throws IOException If the file cannot be mapped, or is larger than 2 GB
      */
-    private void initializeDFA() {
-        //Binary transitions
-        dfa.addTransition("s0", "0", "s1");
-        dfa.addTransition("s1", "b", "s2");
-        dfa.addTransition("s1", "B", "s2");
-        dfa.addTransition("s2", "0", "s3");
-        dfa.addTransition("s2", "1", "s3");
-        dfa.addTransition("s3", "0", "s3");
-        dfa.addTransition("s3", "1", "s3");
-
-        dfa.addAcceptState("s3", "BINARY");
-
-        // Decimal number transitions
-        dfa.addTransition("s0", "1", "s4");
-        dfa.addTransition("s0", "2", "s4");
-        dfa.addTransition("s0", "3", "s4");
-        dfa.addTransition("s0", "4", "s4");
-        dfa.addTransition("s0", "5", "s4");
-        dfa.addTransition("s0", "6", "s4");
-        dfa.addTransition("s0", "7", "s4");
-        dfa.addTransition("s0", "8", "s4");
-        dfa.addTransition("s0", "9", "s4");
-        dfa.addTransition("s4", "0", "s4");
-        dfa.addTransition("s4", "1", "s4");
-        dfa.addTransition("s4", "2", "s4");
-        dfa.addTransition("s4", "3", "s4");
-        dfa.addTransition("s4", "4", "s4");
-        dfa.addTransition("s4", "5", "s4");
-        dfa.addTransition("s4", "6", "s4");
-        dfa.addTransition("s4", "7", "s4");
-        dfa.addTransition("s4", "8", "s4");
-        dfa.addTransition("s4", "9", "s4");
-
-        dfa.addAcceptState("s1", "INTEGER");
-        dfa.addAcceptState("s4", "INTEGER");
-
-        // Identifier transitions (start with letter, can contain letters, numbers, underscore)
-        for (char c = 'a'; c <= 'z'; c++) {
-            dfa.addTransition("s0", String.valueOf(c), "s5");
-            dfa.addTransition("s5", String.valueOf(c), "s5");
+    public TokenBuffer runCached(Path cacheDirectory) throws IOException {
+        MappedSource source = map();
+        TokenCache cache = new TokenCache(cacheDirectory);
+        byte[] hash = TokenCache.hash(source);
+        TokenBuffer cached = cache.read(hash, source, errorBudget);
+        if (cached != null) {
+            return cached;
+        }
+        TokenBuffer result = scanMapped(source);
+        if (!result.isAborted()) {
+            try {
+                cache.write(hash, result);
+            } catch (IOException e) {
+                // La proxima ejecucion vuelve a analizar el archivo
+            }
         }
+        return result;
+    }
 
-        for (char c = 'A'; c <= 'Z'; c++) {
-            dfa.addTransition("s0", String.valueOf(c), "s5");
-            dfa.addTransition("s5", String.valueOf(c), "s5");
+    /**
+     * Lexes the whole of a mapped file into a buffer of its own.
+     */
+    private TokenBuffer scanMapped(MappedSource source) {
+        TokenBuffer list = tokens;
+        try {
+            return scanChunk(source, new int[]{0, source.length(), 0}, LINE_CODE);
+        } finally {
+            tokens = list;
         }
+    }
+
+    /**
+     * Lexes a range of a mapped file into a new buffer of this lexer, up to the error budget.
+     *
+     * @param source The mapped text
+     * @param range The first and after the last index of the range, and where to store its line count
+     * @param entryState The state of the lexer at the beginning of the range
+     * @return The tokens of the range
+     */
+    private TokenBuffer scanChunk(MappedSource source, int[] range, int entryState) {
+        tokens = newBuffer(source);
+        try {
+            range[2] = scanLines(source, range[0], range[1], entryState);
+        } catch (TokenBuffer.ErrorBudgetException e) {
+            // Demasiados errores: el resto no se analiza
+        }
+        return tokens;
+    }
+
+    /**
+     * Creates a token buffer with the error budget of this lexer.
+     */
+    private TokenBuffer newBuffer(CharSequence source) {
+        TokenBuffer buffer = new TokenBuffer(source);
+        buffer.setErrorBudget(errorBudget);
+        return buffer;
+    }
+
+    /**
+     * Executes the lexical analysis on a memory-mapped view of the input file, in parallel.
+     * The file is split into chunks at line boundaries, every chunk is lexed as in
+     * {@link #runMapped()} by a task of the common ForkJoinPool, and the chunk results are
+     * stitched together in order, shifting their line numbers by the lines of the chunks
+     * before them. Chunks are lexed as if they started outside a comment; a chunk that turns
+     * out to start inside a block comment, because the one before ends in it, is lexed again
+     * from that state while stitching.
+     *
+     * @return The spans of all tokens in the file, the same as {@link #runMapped()}
+     * @throws IOException If the file cannot be mapped, or is larger than 2 GB
+     */
+    public TokenBuffer runParallel() throws IOException {
+        return runParallel(ForkJoinPool.commonPool());
+    }
 
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("s5", String.valueOf(c), "s5");
+    /**
+     * Executes the lexical analysis in parallel on the given pool.
+     *
+     * @param pool The pool that lexes the chunks
+     * @return The spans of all tokens in the file, the same as {@link #runMapped()}
+     * @throws IOException If the file cannot be mapped, or is larger than 2 GB
+     * @see #runParallel()
+     */
+    public TokenBuffer runParallel(ForkJoinPool pool) throws IOException {
+        MappedSource source = map();
+        int length = source.length();
+        int chunks = Math.max(1, Math.min(length / MIN_CHUNK_SIZE, pool.getParallelism() * CHUNKS_PER_THREAD));
+        List<ForkJoinTask<TokenBuffer>> tasks = new ArrayList<>();
+        List<TheLexer> workers = new ArrayList<>();
+        List<int[]> ranges = new ArrayList<>();
+        int from = 0;
+        for (int i = 1; i <= chunks && from < length; i++) {
+            // Cut after the first '\n' at or past the even split point, so a "\r\n" stays together
+            int to = i == chunks ? length : Math.max(from, (int) ((long) length * i / chunks));
+            while (to < length && (to == from || source.charAt(to - 1) != '\n')) {
+                to++;
+            }
+            TheLexer worker = new TheLexer(this);
+            int[] range = {from, to, 0};
+            workers.add(worker);
+            ranges.add(range);
+            tasks.add(pool.submit(() -> worker.scanChunk(source, range, LINE_CODE)));
+            from = to;
         }
-        dfa.addTransition("s0", "_", "s5");
-        dfa.addTransition("s0", "$", "s5");
-        dfa.addTransition("s5", "_", "s5");
-        dfa.addTransition("s5", "$", "s5");
-        dfa.addAcceptState("s5", "IDENTIFIER");
-
-
-        //String transitions (start with ", can contain letters, numbers, underscore and symbols)
-        dfa.addTransition("s0", "\"", "s6");
-        for (char c = 32; c <= 126; c++) {
-            if (c != '"') {
-                dfa.addTransition("s6", String.valueOf(c), "s6");
+        TokenBuffer result = newBuffer(source);
+        int lineOffset = 0;
+        int entryState = LINE_CODE;
+        try {
+            for (int i = 0; i < tasks.size(); i++) {
+                TokenBuffer chunk = tasks.get(i).join();
+                TheLexer worker = workers.get(i);
+                int[] range = ranges.get(i);
+                if (entryState != LINE_CODE) {
+                    // The chunk starts inside a block comment
+                    chunk = worker.scanChunk(source, range, entryState);
+                }
+                result.append(chunk, lineOffset);
+                lineOffset += range[2];
+                entryState = worker.endState;
+            }
+        } catch (TokenBuffer.ErrorBudgetException e) {
+            // The error budget is spent: the chunks after this one are not needed
+            for (ForkJoinTask<TokenBuffer> task : tasks) {
+                task.cancel(false);
             }
         }
-        dfa.addTransition("s6", "\"", "s7");
-        dfa.addAcceptState("s7", "STRING");
-
+        return result;
+    }
 
-        //Hexadecimal transitions
-        dfa.addTransition("s1", "x", "s8");
-        dfa.addTransition("s1", "X", "s8");
-        for (char c = 'a'; c <= 'f'; c++) {
-            dfa.addTransition("s8", String.valueOf(c), "s9");
-            dfa.addTransition("s9", String.valueOf(c), "s9");
+    /**
+     * Maps the input file into memory.
+     */
+    private MappedSource map() throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (channel.size() > Integer.MAX_VALUE) {
+                throw new IOException("File too large to be mapped: " + file);
+            }
+            return new MappedSource(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
         }
-        for (char c = 'A'; c <= 'F'; c++) {
-            dfa.addTransition("s8", String.valueOf(c), "s9");
-            dfa.addTransition("s9", String.valueOf(c), "s9");
+    }
+
+    /**
+     * Lexes a range of mapped text line by line, splitting lines on "\n", "\r" and "\r\n"
+     * as {@link BufferedReader#readLine()} does, with the generated scanner if there is one.
+     * Line numbers start at 1 at the beginning of the range.
+     *
+     * @param source The mapped text
+     * @param from The index of the first character of the range
+     * @param to The index after the last character of the range
+     * @param entryState The state of the lexer at the beginning of the range
+     * @return The number of lines in the range
+     */
+    private int scanLines(CharSequence source, int from, int to, int entryState) {
+        int lineStart = from;
+        int lineNumber = 1;
+        endState = entryState;
+        while (lineStart < to) {
+            int lineEnd = lineStart;
+            while (lineEnd < to && source.charAt(lineEnd) != '\n' && source.charAt(lineEnd) != '\r') {
+                lineEnd++;
+            }
+            scanLine(source, lineStart, lineEnd, lineNumber);
+            lineNumber++;
+            lineStart = lineEnd;
+            if (lineStart < to && source.charAt(lineStart) == '\r') {
+                lineStart++;
+                if (lineStart < to && source.charAt(lineStart) == '\n') {
+                    lineStart++;
+                }
+            } else if (lineStart < to) {
+                lineStart++;
+            }
         }
+        return lineNumber - 1;
+    }
 
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("s8", String.valueOf(c), "s9");
-            dfa.addTransition("s9", String.valueOf(c), "s9");
+    /**
+     * Replaces the interpreted DFA loop with a scanner produced by {@link TheScannerGenerator}.
+     * Only affects lines scanned afterwards, so it must be set before {@link #run()}.
+     *
+     * @param scanner The generated scanner, or null to go back to the interpreted DFA
+     */
+    public void setScanner(TheScanner scanner) {
+        this.scanner = scanner;
+    }
+
+    /**
+     * Sets the number of ERROR tokens at which lexing stops, so that garbage input, which
+     * gives an error per fragment, fails fast. The tokens then end with the error that
+     * reaches the budget, and {@link TokenBuffer#isAborted()} is true. Only affects runs
+     * started afterwards; a text is lexed when its lexer is constructed, so its budget is
+     * given by {@link LexerFactory#LexerFactory(TheScanner, int)}.
+     *
+     * @param errorBudget The budget, at least 1, or Integer.MAX_VALUE for no limit (the default)
+     */
+    public void setErrorBudget(int errorBudget) {
+        if (errorBudget < 1) {
+            throw new IllegalArgumentException("Error budget must be at least 1: " + errorBudget);
         }
-        dfa.addAcceptState("s9", "HEXADECIMAL");
-
-
-        //Octal transition
-        dfa.addTransition("s1", "0", "s10");
-        dfa.addTransition("s1", "1", "s10");
-        dfa.addTransition("s1", "2", "s10");
-        dfa.addTransition("s1", "3", "s10");
-        dfa.addTransition("s1", "4", "s10");
-        dfa.addTransition("s1", "5", "s10");
-        dfa.addTransition("s1", "6", "s10");
-        dfa.addTransition("s1", "7", "s10");
-        dfa.addTransition("s1", "8", "s4");
-        dfa.addTransition("s1", "9", "s4");
-        dfa.addTransition("s10", "0", "s10");
-        dfa.addTransition("s10", "1", "s10");
-        dfa.addTransition("s10", "2", "s10");
-        dfa.addTransition("s10", "3", "s10");
-        dfa.addTransition("s10", "4", "s10");
-        dfa.addTransition("s10", "5", "s10");
-        dfa.addTransition("s10", "6", "s10");
-        dfa.addTransition("s10", "7", "s10");
-        dfa.addTransition("s10", "8", "s4");
-        dfa.addTransition("s10", "9", "s4");
-
-        dfa.addAcceptState("s10", "OCTAL");
-
-//		Float transitions
-        dfa.addTransition("s1", ".", "s11");
-        dfa.addTransition("s4", ".", "s11");
-        dfa.addTransition("s10", ".", "s11");
-        for (char c = '0'; c <= '9'; c++) {
-            dfa.addTransition("s11", String.valueOf(c), "s12");
-            dfa.addTransition("s12", String.valueOf(c), "s12");
+        this.errorBudget = errorBudget;
+        if (tokens != null) {
+            tokens.setErrorBudget(errorBudget);
         }
-        dfa.addAcceptState("s11", "FLOAT");
-        dfa.addAcceptState("s12", "FLOAT");
+    }
 
+    /**
+     * Chooses how the interpreted DFA loop goes through the body of a block comment: with a
+     * bulk search for the closing "*&#47;", the default, or character by character through the
+     * scan loop. The tokens are the same either way. The generated scanner always searches.
+     * Only affects lines scanned afterwards, so it must be set before {@link #run()}.
+     *
+     * @param skipCommentBodies true to search for the end of comments in bulk
+     */
+    public void setSkipCommentBodies(boolean skipCommentBodies) {
+        this.skipCommentBodies = skipCommentBodies;
+    }
 
+    /**
+     * Scans one line with the generated scanner if there is one, or with the interpreted DFA.
+     * The line starts in the state the last one ended in.
+     *
+     * @param text The text that contains the line
+     * @param from The index of the first character of the line
+     * @param to The index after the last character of the line
+     * @param lineNumber The current line number in the input
+     */
+    private void scanLine(CharSequence text, int from, int to, int lineNumber) {
+        if (scanner != null) {
+            endState = scanner.scan(text, from, to, lineNumber, endState, tokens);
+        } else {
+            algorithm(text, from, to, lineNumber);
+        }
+    }
 
-        // Exponent transition from integer
-        dfa.addTransition("s4", "e", "s13");
-        dfa.addTransition("s4", "E", "s13");
-        dfa.addTransition("s13", "-", "s14");
+    /**
+     * Scans a single line into a buffer of its own, leaving the tokens of this lexer unchanged.
+     * The line continues the last one scanned, so a block comment left open there goes on.
+     *
+     * @param line The line of text to process
+     * @param lineNumber The line number of the line
+     * @return The tokens of the line
+     */
+    TokenBuffer scanLine(String line, int lineNumber) {
+        return scanLine(line, lineNumber, endState);
+    }
 
-        for (char c = '1'; c <= '9'; c++) {
-            dfa.addTransition("s13", String.valueOf(c), "s15");
-            dfa.addTransition("s14", String.valueOf(c), "s15");
-            dfa.addTransition("s15", String.valueOf(c), "s15");
+    /**
+     * Scans a single line into a buffer of its own, starting in the given state.
+     *
+     * @param line The line of text to process
+     * @param lineNumber The line number of the line
+     * @param entryState The state at the beginning of the line, LINE_CODE or LINE_BLOCK_COMMENT
+     * @return The tokens of the line
+     */
+    TokenBuffer scanLine(String line, int lineNumber, int entryState) {
+        endState = entryState;
+        TokenBuffer list = tokens;
+        tokens = new TokenBuffer(line, LINE_CAPACITY);
+        try {
+            scanLine(line, 0, line.length(), lineNumber);
+            return tokens;
+        } finally {
+            tokens = list;
         }
-        dfa.addTransition("s15", String.valueOf('0'), "s15");
-        dfa.addAcceptState("s15", "INTEGER");
-
-        // Exponent transition from float
-        dfa.addTransition("s12", "e", "s16");
-        dfa.addTransition("s12", "E", "s16");
-        dfa.addTransition("s16", "-", "s17");
-
-        for (char c = '1'; c <= '9'; c++) {
-            dfa.addTransition("s16", String.valueOf(c), "s18");
-            dfa.addTransition("s17", String.valueOf(c), "s18");
-            dfa.addTransition("s18", String.valueOf(c), "s18");
+    }
+
+    /**
+     * Returns the state of the lexer at the end of the last line scanned, which is
+     * {@link #LINE_BLOCK_COMMENT} if the line ends inside an unterminated block comment.
+     *
+     * @return LINE_CODE or LINE_BLOCK_COMMENT
+     */
+    int getEndState() {
+        return endState;
+    }
+
+    /**
+     * Reads the shared DFA from the snapshot resource.
+     *
+     * @return The DFA, or null if there is no valid snapshot resource
+     * @see #readSnapshot(InputStream)
+     */
+    private static Automata loadSnapshot() {
+        try (InputStream in = TheLexer.class.getResourceAsStream(DFA_SNAPSHOT)) {
+            return in == null ? null : readSnapshot(in);
+        } catch (IOException e) {
+            return null;
         }
-        dfa.addTransition("s18", String.valueOf('0'), "s18");
-        dfa.addAcceptState("s18", "FLOAT");
-
-
-        //Add F to be float
-        dfa.addTransition("s1", String.valueOf('f'), "s19");
-        dfa.addTransition("s1", String.valueOf('F'), "s19");
-        dfa.addTransition("s4", String.valueOf('f'), "s19");
-        dfa.addTransition("s4", String.valueOf('F'), "s19");
-        dfa.addTransition("s11", String.valueOf('f'), "s19");
-        dfa.addTransition("s11", String.valueOf('F'), "s19");
-        dfa.addTransition("s12", String.valueOf('f'), "s19");
-        dfa.addTransition("s12", String.valueOf('F'), "s19");
-        dfa.addTransition("s18", String.valueOf('f'), "s19");
-        dfa.addTransition("s18", String.valueOf('F'), "s19");
-
-        dfa.addAcceptState("s19", "FLOAT");
-
-        //Char transitions (start with ', can contain just letters, numbers, underscore or symbols)
-        dfa.addTransition("s0", "'", "s20");
-        for (char c = 32; c <= 126; c++) {
-            if (c != '\'') {
-                dfa.addTransition("s20", String.valueOf(c), "s21");
+    }
+
+    /**
+     * Reads a DFA snapshot in one bulk read. The snapshot holds the text of
+     * {@link #TOKEN_SPEC}, a fingerprint of the class files of TokenSpec and Automata,
+     * which compile the DFA and define its binary form, and a checksum of its content.
+     *
+     * @param in The snapshot, as written by {@link #writeSnapshot(Path)}
+     * @return The DFA, or null if the snapshot is damaged, or stale because it was written
+     * for another token specification or by other class files
+     */
+    static Automata readSnapshot(InputStream in) {
+        try {
+            byte[] bytes = in.readAllBytes();
+            if (bytes.length < 16) {
+                return null;
+            }
+            CRC32 checksum = new CRC32();
+            checksum.update(bytes, 0, bytes.length - 4);
+            if (ByteBuffer.wrap(bytes, bytes.length - 4, 4).getInt() != (int) checksum.getValue()) {
+                return null;
             }
+            DataInputStream data = new DataInputStream(new ByteArrayInputStream(bytes, 0, bytes.length - 4));
+            if (data.readInt() != SNAPSHOT_MAGIC || !data.readUTF().equals(TOKEN_SPEC)
+                    || data.readLong() != fingerprint()) {
+                return null;
+            }
+            Automata snapshot = Automata.read(data);
+            return data.available() == 0 ? snapshot : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Writes the snapshot of a freshly built DFA.
+     *
+     * @param target The snapshot file
+     * @throws IOException If the file cannot be written
+     */
+    static void writeSnapshot(Path target) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(SNAPSHOT_MAGIC);
+        data.writeUTF(TOKEN_SPEC);
+        data.writeLong(fingerprint());
+        initializeDFA().write(data);
+        CRC32 checksum = new CRC32();
+        checksum.update(bytes.toByteArray());
+        data.writeInt((int) checksum.getValue());
+        Files.write(target, bytes.toByteArray());
+    }
+
+    /**
+     * Computes the fingerprint of the class files that compile the DFA.
+     */
+    private static long fingerprint() throws IOException {
+        CRC32 crc = new CRC32();
+        for (Class<?> type : new Class<?>[]{TokenSpec.class, Automata.class}) {
+            try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+                if (in == null) {
+                    throw new IOException("Class file not found: " + type.getName());
+                }
+                crc.update(in.readAllBytes());
+            }
+        }
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the DFA snapshot at build time, into the class output next to TheLexer.class.
+     * Must run again whenever the token specification changes or TokenSpec or Automata is
+     * recompiled; a stale snapshot is ignored and the DFA is built at startup instead.
+     *
+     * @param args Optional output directory for the package tree (default target/classes)
+     * @throws IOException If the snapshot cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "target/classes");
+        Path target = root.resolve(TheLexer.class.getPackageName().replace('.', File.separatorChar)).resolve(DFA_SNAPSHOT);
+        Files.createDirectories(target.getParent());
+        writeSnapshot(target);
+        System.out.println("DFA snapshot written to " + target);
+    }
+
+    /**
+     * Método para inicializar el DFA
+     *
+     * @return El DFA compilado y minimizado de {@link #TOKEN_SPEC}
+     */
+    private static Automata initializeDFA() {
+        return new TokenSpec(TOKEN_SPEC).compile();
+    }
+
+    /**
+     * Resolves the states used by the scan loop and the token kind of every state.
+     */
+    private void resolveStates() {
+        startState = dfa.getStateId(START_STATE);
+        zeroState = dfa.getStateId(ZERO_STATE);
+        decimalState = dfa.getStateId(DECIMAL_STATE);
+        stringBodyState = dfa.getStateId(STRING_BODY_STATE);
+        stringEndState = dfa.getStateId(STRING_END_STATE);
+        octalState = dfa.getStateId(OCTAL_STATE);
+        intExponentState = dfa.getStateId(INT_EXPONENT_STATE);
+        floatExponentState = dfa.getStateId(FLOAT_EXPONENT_STATE);
+        charOpenState = dfa.getStateId(CHAR_OPEN_STATE);
+        charBodyState = dfa.getStateId(CHAR_BODY_STATE);
+        charEndState = dfa.getStateId(CHAR_END_STATE);
+        stateKinds = new TokenKind[dfa.getStateCount()];
+        for (int state = 0; state < stateKinds.length; state++) {
+            stateKinds[state] = dfa.isAcceptState(state) ? TokenKind.ofType(dfa.getAcceptStateName(state)) : TokenKind.ERROR;
         }
-        dfa.addTransition("s21", "'", "s22");
-        dfa.addAcceptState("s22", "CHAR");
     }
 
     /**
@@ -290,33 +729,54 @@ public class TheLexer {
      * Implements the main lexical analysis algorithm that:
      * 1. Processes characters one by one
      * 2. Tracks the current state in the DFA
-     * 3. Builds up token strings
+     * 3. Tracks where the pending token starts in the text
      * 4. Recognizes and creates tokens
      *
-     * @param line The line of text to process
+     * Tokens are contiguous ranges of the text: a block comment ends the pending token,
+     * and comments are not recognized inside string and char literals. The line starts
+     * in the state the previous one ended in, so a block comment can span lines; string
+     * and char literals cannot, and an unterminated one ends at the end of its line.
+     *
+     * @param text The text that contains the line
+     * @param from The index of the first character of the line
+     * @param to The index after the last character of the line
      * @param lineNumber The current line number in the input file
      */
-    private void algorithm(String line, int lineNumber) {
-        String currentState = "s0";
-        String nextState;
-        String string = "";
-        int index = 0;
-        boolean inBlockComment = false;
+    private void algorithm(CharSequence text, int from, int to, int lineNumber) {
+        int currentState = startState;
+        int start = from;
+        int index = from;
+        boolean inBlockComment = endState == LINE_BLOCK_COMMENT;
 
-        while (index < line.length()) {
+        while (index < to) {
+
+            if (inBlockComment && skipCommentBodies) {
+                // Salta el cuerpo del comentario hasta su cierre, o hasta el fin de la linea
+                int close = indexOfCommentEnd(text, index, to);
+                index = close < 0 ? to : close + 2;
+                start = index;
+                inBlockComment = close < 0;
+                continue;
+            }
 
-            char currentChar = line.charAt(index);
+            char currentChar = text.charAt(index);
 
             if (inBlockComment) {
-                if (currentChar == '*' && index + 1 < line.length() && line.charAt(index + 1) == '/') {
+                if (currentChar == '*' && index + 1 < to && text.charAt(index + 1) == '/') {
                     inBlockComment = false;
                     index++;
+                    start = index + 1;
                 }
                 index++;
                 continue;
             }
 
-            if (currentChar == '/' && index + 1 < line.length() && line.charAt(index + 1) == '*') {
+            boolean inLiteral = currentState == stringBodyState || currentState == charOpenState || currentState == charBodyState;
+            if (!inLiteral && currentChar == '/' && index + 1 < to && text.charAt(index + 1) == '*') {
+                if (index > start) {
+                    processString(currentState, text, start, index, lineNumber);
+                }
+                currentState = startState;
                 inBlockComment = true;
                 index++;
                 index++;
@@ -324,87 +784,165 @@ public class TheLexer {
             }
             if (
                 //Pass if String or Char
-                    (Objects.equals(currentState, "s6") || Objects.equals(currentState, "s20")|| Objects.equals(currentState, "s21")) ||
+                    inLiteral ||
                             //Pass if Integer and Octal To Float
-                            ((Objects.equals(currentState, "s4") || Objects.equals(currentState, "s1")|| Objects.equals(currentState, "s10")) && currentChar == '.') ||
+                            ((currentState == decimalState || currentState == zeroState || currentState == octalState) && currentChar == '.') ||
                             // Pass if Integer of Float with negative Exp
-                            (Objects.equals(currentState,"s13") || (Objects.equals(currentState,"s16")) && currentChar == '-')
+                            (currentState == intExponentState || (currentState == floatExponentState) && currentChar == '-')
 
             ){
                 //Ignores specific operators and delimiters for certain states
-                nextState = dfa.getNextState(currentState, currentChar);
-                string = string + currentChar;
-                currentState = nextState;
+                if (currentChar < Automata.ALPHABET_SIZE) {
+                    currentState = dfa.nextState(currentState, currentChar);
+                } else {
+                    // Outside ASCII: move on the whole code point
+                    int codePoint = codePointAt(text, index);
+                    currentState = dfa.nextCodePoint(currentState, codePoint);
+                    index += charCount(text, index, codePoint) - 1;
+                }
 
-                if (Objects.equals(currentState, "s7")|| Objects.equals(currentState, "s22")) {
+                if (currentState == stringEndState || currentState == charEndState) {
                     //Accepts a complete string
-                    String tokenType = dfa.getAcceptStateName(currentState);
-                    tokens.add(new TheToken(string, tokenType, lineNumber));
-                    currentState = "s0";
-                    string = "";
+                    emit(start, index + 1, stateKinds[currentState], lineNumber);
+                    currentState = startState;
+                    start = index + 1;
                 }
             } else if (!(isOperator(currentChar) || isDelimiter(currentChar) || isSpace(currentChar))) {
-                if ((currentChar == '"'|| currentChar == '\'') && !string.isEmpty()) {
-                    processString(currentState, string, lineNumber);
-                    currentState = "s0";
-                    string = "";
+                if ((currentChar == '"'|| currentChar == '\'') && index > start) {
+                    processString(currentState, text, start, index, lineNumber);
+                    currentState = startState;
+                    start = index;
+                }
+                if (currentChar < Automata.ALPHABET_SIZE) {
+                    currentState = dfa.nextState(currentState, currentChar);
+                } else {
+                    // Outside ASCII: move on the whole code point
+                    int codePoint = codePointAt(text, index);
+                    currentState = dfa.nextCodePoint(currentState, codePoint);
+                    index += charCount(text, index, codePoint) - 1;
                 }
-                nextState = dfa.getNextState(currentState, currentChar);
-                string = string + currentChar;
-                currentState = nextState;
             } else {
-                if (!string.isEmpty()) {
-                    processString(currentState, string, lineNumber);
+                if (index > start) {
+                    processString(currentState, text, start, index, lineNumber);
                 }
                 if (isOperator(currentChar)) {
-                    if (index + 1 < line.length()) {
-                        char nextChar = line.charAt(index + 1);
-                        String s =  "" + currentChar + nextChar;
-                        if (isDoubleOperator(s)) {
-                            tokens.add(new TheToken(s, "OPERATOR", lineNumber));
+                    if (index + 1 < to) {
+                        char nextChar = text.charAt(index + 1);
+                        if (isDoubleOperator(currentChar, nextChar)) {
+                            emit(index, index + 2, TokenKind.ofOperator(currentChar, nextChar), lineNumber);
                             index++;
-                        } else if (s.equals("//")) {
-                            index = line.length();
+                        } else if (currentChar == '/' && nextChar == '/') {
+                            index = to;
+                            start = to;
                             break;
                         } else{
-                            tokens.add(new TheToken(String.valueOf(currentChar), "OPERATOR", lineNumber));
+                            emit(index, index + 1, TokenKind.ofSymbol(currentChar), lineNumber);
                         }
                     }else{
-                        tokens.add(new TheToken(String.valueOf(currentChar), "OPERATOR", lineNumber));
+                        emit(index, index + 1, TokenKind.ofSymbol(currentChar), lineNumber);
                     }
                 } else if (isDelimiter(currentChar)) {
-                    tokens.add(new TheToken(String.valueOf(currentChar), "DELIMITER", lineNumber));
+                    emit(index, index + 1, TokenKind.ofSymbol(currentChar), lineNumber);
                 }
-                currentState = "s0";
-                string = "";
+                currentState = startState;
+                start = index + 1;
 
             }
             index++;
         }
         // last word
-        if (!string.isEmpty()) {
-            processString(currentState, string, lineNumber);
+        if (!inBlockComment && index > start) {
+            processString(currentState, text, start, index, lineNumber);
+        }
+        endState = inBlockComment ? LINE_BLOCK_COMMENT : LINE_CODE;
+    }
+
+    /**
+     * Finds the "*&#47;" that closes a block comment within a line. Strings and string
+     * builders are searched with their indexOf. The text of a string lexer goes on past the
+     * line, so the search may run ahead to the end of the comment, once per comment, since
+     * processText then skips the lines up to there without scanning them.
+     *
+     * @param text The text
+     * @param from The index where the search starts, inside the comment
+     * @param to The index after the last character of the line
+     * @return The index of the '*', or -1 if the comment does not end in the line
+     */
+    static int indexOfCommentEnd(CharSequence text, int from, int to) {
+        int close;
+        if (text instanceof String) {
+            close = ((String) text).indexOf("*/", from);
+        } else if (text instanceof StringBuilder) {
+            close = ((StringBuilder) text).indexOf("*/", from);
+        } else {
+            close = -1;
+            for (int index = from; index + 1 < to; index++) {
+                if (text.charAt(index) == '*' && text.charAt(index + 1) == '/') {
+                    close = index;
+                    break;
+                }
+            }
         }
+        return close >= 0 && close + 1 < to ? close : -1;
+    }
+
+    /**
+     * Reads the code point at an index: a surrogate pair of a string, or a UTF-8 sequence
+     * of a mapped file. Used by the scan loops for characters outside ASCII only.
+     *
+     * @param text The text
+     * @param index The index of the first char of the code point
+     * @return The code point
+     */
+    static int codePointAt(CharSequence text, int index) {
+        return text instanceof MappedSource ? ((MappedSource) text).codePointAt(index) : Character.codePointAt(text, index);
     }
 
     /**
-     * Creates a token from the accumulated string if it represents a valid token.
+     * Gets the number of chars (bytes of a mapped file) taken by a code point.
+     *
+     * @param text The text
+     * @param index The index of the first char of the code point
+     * @param codePoint The code point, as read by {@link #codePointAt(CharSequence, int)}
+     * @return The number of chars
+     */
+    static int charCount(CharSequence text, int index, int codePoint) {
+        return text instanceof MappedSource ? ((MappedSource) text).byteCount(index) : Character.charCount(codePoint);
+    }
+
+    /**
+     * Creates a token from the pending range of text, of the kind of the state the DFA stopped in.
      * Handles special cases for identifiers that might be keywords.
      *
      * @param currentState The current state of the DFA
-     * @param string The accumulated string to be processed
+     * @param text The text being scanned
+     * @param start The index of the first character of the token
+     * @param end The index after the last character of the token
      * @param lineNumber The current line number
      */
-    private void processString(String currentState, String string, int lineNumber) {
-        if (dfa.isAcceptState(currentState)) {
-            String tokenType = dfa.getAcceptStateName(currentState);
-            if (tokenType.equals("IDENTIFIER") && keywords.contains(string.toLowerCase())) {
-                tokenType = "KEYWORD";
-            }
-            tokens.add(new TheToken(string, tokenType, lineNumber));
-        } else {
-            tokens.add(new TheToken(string, "ERROR", lineNumber));
+    private void processString(int currentState, CharSequence text, int start, int end, int lineNumber) {
+        TokenKind kind = stateKinds[currentState];
+        if (kind == TokenKind.IDENTIFIER) {
+            kind = TokenKind.ofIdentifier(text, start, end);
         }
+        emit(start, end, kind, lineNumber);
+    }
+
+    /**
+     * Records a token as a span of the text.
+     */
+    private void emit(int start, int end, TokenKind kind, int lineNumber) {
+        tokens.add(kind, start, end - start, lineNumber);
+    }
+
+    /**
+     * Checks if an identifier is a reserved word. The comparison ignores case.
+     *
+     * @param string The identifier text
+     * @return true if the identifier is a keyword
+     */
+    static boolean isKeyword(String string) {
+        return keywords.contains(string.toLowerCase());
     }
 
     /**
@@ -438,20 +976,27 @@ public class TheLexer {
         return c == '=' || c == '+' || c == '-' || c == '*' || c == '/' ||
                 c == '<' || c == '>' || c == '!' || c == '&' || c == '|' || c=='%';
     }
-    private boolean isDoubleOperator(String c) {
-        return Objects.equals(c, "==") ||
-                Objects.equals(c, "!=")||
-                Objects.equals(c, ">=")||
-                Objects.equals(c, "<=")||
-                Objects.equals(c, "+=")||
-                Objects.equals(c, "-=")||
-                Objects.equals(c, "*=")||
-                Objects.equals(c, "/=")||
-                Objects.equals(c, "%=")||
-                Objects.equals(c, "++")||
-                Objects.equals(c, "--")||
-                Objects.equals(c, "||")||
-                Objects.equals(c, "&&");
+
+    /**
+     * Checks if two consecutive characters form a two-character operator.
+     *
+     * @param first The current character
+     * @param second The character that follows it
+     * @return true if both characters form an operator such as ==, ++ or &&
+     */
+    private boolean isDoubleOperator(char first, char second) {
+        switch (second) {
+            case '=':
+                return first == '=' || first == '!' || first == '>' || first == '<' || first == '+' ||
+                        first == '-' || first == '*' || first == '/' || first == '%';
+            case '+':
+            case '-':
+            case '|':
+            case '&':
+                return first == second;
+            default:
+                return false;
+        }
     }
 
     /**
@@ -462,18 +1007,37 @@ public class TheLexer {
         System.out.println("\nToken List:");
         System.out.printf("%10s\t|\t%10s\t|\t%s\n", "Value", "Type", "Line");
         System.out.println("----------------------------------------");
-        for (TheToken token : tokens) {
+        for (int i = 0; i < tokens.size(); i++) {
             System.out.printf("%10s\t|\t%10s\t|\t%d\n",
-                    token.getValue(), token.getType(), token.getLineNumber());
+                    tokens.getValue(i), tokens.getType(i), tokens.getLineNumber(i));
         }
     }
 
     /**
-     * Returns the vector of tokens produced by the lexical analysis.
+     * Returns the automaton used by this lexer. It is shared by all lexers and frozen.
+     *
+     * @return The compiled DFA
+     */
+    public Automata getAutomata() {
+        return dfa;
+    }
+
+    /**
+     * Returns the tokens produced by the lexical analysis as token objects.
+     * The list is materialized from the token buffer on every call.
      *
      * @return Vector containing all tokens
      */
     public Vector<TheToken> getTokens() {
+        return tokens.toVector();
+    }
+
+    /**
+     * Returns the tokens produced by the lexical analysis, stored as spans of the input.
+     *
+     * @return The token buffer of this lexer
+     */
+    public TokenBuffer getTokenBuffer() {
         return tokens;
     }
 
@@ -2,7 +2,6 @@ package javiergs.compiler;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Vector;
 
 /**
  * Main class to run the lexer
@@ -16,10 +15,10 @@ public class TheMain {
 		File file = new File("src/main/resources/inputStatements.txt");
 		TheLexer lexer = new TheLexer(file);
 		lexer.run();
+		System.out.println(lexer.getAutomata().getMinimizationReport());
 		lexer.printTokens();
 		
-		Vector<TheToken> tokens = lexer.getTokens();
-		TheParser parser = new TheParser(tokens);
+		TheParser parser = new TheParser(lexer.getTokenBuffer());
 		parser.run();
 		
 	}
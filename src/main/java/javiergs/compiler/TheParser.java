@@ -4,6 +4,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Vector;
@@ -19,37 +20,117 @@ import java.util.Vector;
 
 public class TheParser {
 
-	private Vector<TheToken> tokens;
-	private int currentToken;
+	/**
+	 * The rules with a FIRST and a FOLLOW set, each with its bit in the masks of
+	 * {@link #FIRST_RULES} and {@link #FOLLOW_RULES}.
+	 */
+	private enum Rule {
+		PROGRAM, METHODS, PARAMS, BODY, PRINTLN, INPUTLN, VARIABLE, ASSIGNMENT, CALL_METHOD, PARAM_VALUES,
+		RETURN, WHILE, IF, DO_WHILE, FOR, SWITCH, STATEMENT_BLOCK, EXPRESSION, TYPE;
 
-	private Map<String, Set<String>> firstSets;
-	private Map<String, Set<String>> followSets;
+		private final long bit = 1L << ordinal();
+	}
+
+	// For every token kind, by ordinal, the rules whose FIRST (FOLLOW) set holds it, one bit per rule.
+	// Built once when the class is loaded and never changed, so every parser shares them.
+	private static final long[] FIRST_RULES = new long[TokenKind.values().length];
+	private static final long[] FOLLOW_RULES = new long[TokenKind.values().length];
+
+	// For every token kind, by ordinal, how tightly it binds its operands as a binary operator,
+	// or 0 if it is not one. Operators with the same power associate to the left.
+	private static final int[] BINDING_POWER = new int[TokenKind.values().length];
+	// Power at which the prefix operators take their operand: "!" takes a whole comparison,
+	// as in !a == b, and "-" takes a single operand, as in -a * b
+	private static final int NOT_POWER = 3;
+	private static final int NEGATION_POWER = 7;
+
+	static {
+		Map<String, Set<String>> firstSets = new HashMap<>();
+		Map<String, Set<String>> followSets = new HashMap<>();
+		// Initialize FIRST sets
+		initializeFirstSets(firstSets);
+		// Initialize FOLLOW sets
+		initializeFollowSets(followSets);
+		// Token kinds matched by each set
+		firstSets.forEach((rule, symbols) -> addRule(FIRST_RULES, Rule.valueOf(rule), symbols));
+		followSets.forEach((rule, symbols) -> addRule(FOLLOW_RULES, Rule.valueOf(rule), symbols));
+		// Binding power of the binary operators
+		BINDING_POWER[TokenKind.OP_OR.ordinal()] = 1;
+		BINDING_POWER[TokenKind.OP_AND.ordinal()] = 2;
+		for (TokenKind kind : TokenKind.values()) {
+			if (kind.isComparison()) {
+				BINDING_POWER[kind.ordinal()] = 4;
+			}
+		}
+		BINDING_POWER[TokenKind.OP_PLUS.ordinal()] = 5;
+		BINDING_POWER[TokenKind.OP_MINUS.ordinal()] = 5;
+		BINDING_POWER[TokenKind.OP_MUL.ordinal()] = 6;
+		BINDING_POWER[TokenKind.OP_DIV.ordinal()] = 6;
+	}
+
+	private TokenSource tokens;
+	private int currentToken;
 
 	private TheSemantic semantic;
 	private TheCodeGenerator codeGenerator;
 	private String currentMethodReturnType = null;
 
-	private Vector<String> parseTreeLog = new Vector<>();
-	private int indentLevel = 0;
+	private SyntaxTree tree = new SyntaxTree();
+	private final Vector<String> syntaxErrors = new Vector<>();
+	// The node of the innermost rule being parsed, parent of the nodes added
+	private int currentNode = SyntaxTree.ROOT;
 
 	public TheParser(Vector<TheToken> tokens) {
+		this(TokenSource.of(tokens));
+	}
+
+	/**
+	 * Constructs a parser that pulls its tokens lazily from a stream, so the
+	 * token list is never materialized.
+	 *
+	 * @param tokens The token stream
+	 */
+	public TheParser(TokenStream tokens) {
+		this((TokenSource) tokens);
+	}
+
+	/**
+	 * Constructs a parser that reads token kinds, values and lines directly from
+	 * the arrays of a token buffer, without creating token objects.
+	 *
+	 * @param tokens The tokens produced by {@link TheLexer}
+	 */
+	public TheParser(TokenBuffer tokens) {
+		this((TokenSource) tokens);
+	}
+
+	private TheParser(TokenSource tokens) {
 		this.tokens = tokens;
 		currentToken = 0;
 		this.semantic = new TheSemantic();
 		this.codeGenerator = new TheCodeGenerator();
-		initializeFirstAndFollowSets();
 	}
 
-	private void initializeFirstAndFollowSets() {
-		firstSets = new HashMap<>();
-		followSets = new HashMap<>();
-		// Initialize FIRST sets
-		initializeFirstSets();
-		// Initialize FOLLOW sets
-		initializeFollowSets();
+	/**
+	 * Adds a rule to the masks of the token kinds that the symbols of its FIRST or FOLLOW
+	 * set match. A symbol matches the kinds with that text (keywords, operators and
+	 * delimiters) or with that type name (IDENTIFIER, INTEGER...); LITERAL matches every
+	 * literal.
+	 *
+	 * @param masks The masks of FIRST or FOLLOW sets by token kind
+	 * @param rule The rule
+	 * @param symbols The symbols of its set
+	 */
+	private static void addRule(long[] masks, Rule rule, Set<String> symbols) {
+		for (TokenKind kind : TokenKind.values()) {
+			if (symbols.contains(kind.getText()) || symbols.contains(kind.getType()) ||
+					kind.isLiteral() && symbols.contains("LITERAL")) {
+				masks[kind.ordinal()] |= rule.bit;
+			}
+		}
 	}
 
-	private void initializeFirstSets() {
+	private static void initializeFirstSets(Map<String, Set<String>> firstSets) {
 		// PROGRAM
 		Set<String> programFirst = new HashSet<>(Arrays.asList("{", "class", "int", "float", "void", "char", "string", "boolean", "IDENTIFIER"));
 		firstSets.put("PROGRAM", programFirst);
@@ -107,27 +188,11 @@ public class TheParser {
 		// EXPRESSION
 		Set<String> expressionFirst = new HashSet<>(Arrays.asList("IDENTIFIER", "(", "!", "-", "LITERAL", "inputln"));
 		firstSets.put("EXPRESSION", expressionFirst);
-		// X
-		firstSets.put("X", new HashSet<>(expressionFirst));
-		// Y
-		Set<String> yFirst = new HashSet<>(expressionFirst);
-		yFirst.add("!");
-		firstSets.put("Y", yFirst);
-		// R
-		firstSets.put("R", new HashSet<>(Arrays.asList("IDENTIFIER", "(", "-", "LITERAL", "inputln")));
-		// E
-		firstSets.put("E", new HashSet<>(Arrays.asList("IDENTIFIER", "(", "-", "LITERAL", "inputln")));
-		// A
-		firstSets.put("A", new HashSet<>(Arrays.asList("IDENTIFIER", "(", "-", "LITERAL", "inputln")));
-		// B
-		firstSets.put("B", new HashSet<>(Arrays.asList("-", "IDENTIFIER", "(", "LITERAL", "inputln")));
-		// C
-		firstSets.put("C", new HashSet<>(Arrays.asList("IDENTIFIER", "(", "LITERAL", "inputln")));
 		// TYPE
 		firstSets.put("TYPE", new HashSet<>(Arrays.asList("int", "float", "void", "char", "string", "boolean")));
 	}
 
-	private void initializeFollowSets() {
+	private static void initializeFollowSets(Map<String, Set<String>> followSets) {
 		// PROGRAM
 		Set<String> programFollow = new HashSet<>(Collections.singletonList("$")); // End of input
 		followSets.put("PROGRAM", programFollow);
@@ -149,7 +214,7 @@ public class TheParser {
 		followSets.put("ASSIGNMENT", new HashSet<>(Collections.singletonList(";")));
 		// CALL_METHOD
 		followSets.put("CALL_METHOD",
-				new HashSet<>(Arrays.asList(";", "+", "-", "*", "/", ")", "<", ">", "==", "!=", "&&", "||", ",")));
+				new HashSet<>(Arrays.asList(";", "+", "-", "*", "/", ")", "<", ">", "<=", ">=", "==", "!=", "&&", "||", ",")));
 		// PARAM_VALUES
 		followSets.put("PARAM_VALUES", new HashSet<>(Collections.singletonList(")")));
 		// RETURN
@@ -169,23 +234,6 @@ public class TheParser {
 				new HashSet<>(Arrays.asList("}", ";", "else", "while", "break", "case", "default")));
 		// EXPRESSION
 		followSets.put("EXPRESSION", new HashSet<>(Arrays.asList(";", ")", ",", ":")));
-		// X
-		followSets.put("X", new HashSet<>(Arrays.asList(";", ")", ",", ":")));
-		// Y
-		followSets.put("Y", new HashSet<>(Arrays.asList("||", ";", ")", ",", ":")));
-		// R
-		followSets.put("R", new HashSet<>(Arrays.asList("&&", "||", ";", ")", ",", ":")));
-		// E
-		followSets.put("E", new HashSet<>(Arrays.asList("<", ">", "==", "!=", "&&", "||", ";", ")", ",", ":")));
-		// A
-		followSets.put("A",
-				new HashSet<>(Arrays.asList("+", "-", "<", ">", "==", "!=", "&&", "||", ";", ")", ",", ":")));
-		// B
-		followSets.put("B",
-				new HashSet<>(Arrays.asList("*", "/", "+", "-", "<", ">", "==", "!=", "&&", "||", ";", ")", ",", ":")));
-		// C
-		followSets.put("C",
-				new HashSet<>(Arrays.asList("*", "/", "+", "-", "<", ">", "==", "!=", "&&", "||", ";", ")", ",", ":")));
 		// TYPE
 		followSets.put("TYPE", new HashSet<>(Collections.singletonList("IDENTIFIER")));
 	}
@@ -193,60 +241,41 @@ public class TheParser {
 	/**
 	 * Check if the current token is in the FIRST set of a rule.
 	 *
-	 * @param rule The rule name to check against
+	 * @param rule The rule to check against
 	 * @return true if the current token is in the FIRST set of the rule
 	 */
-	private boolean isInFirstSetOf(String rule) {
-		if (currentToken >= tokens.size()) {
+	private boolean isInFirstSetOf(Rule rule) {
+		if (!tokens.has(currentToken)) {
 			return false;
 		}
-		String tokenValue = tokens.get(currentToken).getValue();
-		String tokenType = tokens.get(currentToken).getType();
-		Set<String> first = firstSets.get(rule);
-		// Verificar si el valor o tipo del token está directamente en el conjunto FIRST
-		if (first.contains(tokenValue) || first.contains(tokenType)) {
-			return true;
-		}
-		// Comprobar si el tipo de token es un literal y el conjunto FIRST contiene "LITERAL"
-		if ((tokenType.equals("INTEGER") || tokenType.equals("FLOAT") ||
-				tokenType.equals("CHAR") || tokenType.equals("STRING") ||
-				tokenType.equals("HEXADECIMAL") || tokenType.equals("BINARY")) &&
-				first.contains("LITERAL")) {
-			return true;
-		}
-		return false;
+		return (FIRST_RULES[tokens.kind(currentToken).ordinal()] & rule.bit) != 0;
 	}
 
 	/**
 	 * Check if the current token is in the FOLLOW set of a rule.
 	 *
-	 * @param rule The rule name to check against
+	 * @param rule The rule to check against
 	 * @return true if the current token is in the FOLLOW set of the rule
 	 */
-	private boolean isInFollowSetOf(String rule) {
-		if (currentToken >= tokens.size()) {
+	private boolean isInFollowSetOf(Rule rule) {
+		if (!tokens.has(currentToken)) {
 			return false;
 		}
 
-		String tokenValue = tokens.get(currentToken).getValue();
-		String tokenType = tokens.get(currentToken).getType();
-
-		Set<String> follow = followSets.get(rule);
-		return follow.contains(tokenValue) || follow.contains(tokenType)
-				|| follow.contains("$") && currentToken >= tokens.size();
+		return (FOLLOW_RULES[tokens.kind(currentToken).ordinal()] & rule.bit) != 0;
 	}
 
 	/**
 	 * Skip tokens until one is found in either the FIRST or FOLLOW set.
 	 *
-	 * @param rule      The rule name to check against
+	 * @param rule      The rule to check against
 	 * @param errorCode The error code to report
 	 * @return true if a token in FIRST was found, false if a token in FOLLOW was found
 	 */
-	private boolean skipUntilFirstOrFollow(String rule, int errorCode) {
+	private boolean skipUntilFirstOrFollow(Rule rule, int errorCode) {
 		error(errorCode);
 
-		while (currentToken < tokens.size()) {
+		while (tokens.has(currentToken)) {
 			if (isInFirstSetOf(rule)) {
 				return true;
 			}
@@ -265,20 +294,24 @@ public class TheParser {
 	 * @param errorCode The error code
 	 */
 	private void error(int errorCode) {
-		if (currentToken < tokens.size()) {
-			System.out.println("Syntax Error " + errorCode +
-					" at line " + tokens.get(currentToken).getLineNumber() +
-					", token: " + tokens.get(currentToken).getValue() +
-					" (" + tokens.get(currentToken).getType() + ")");
+		String message;
+		if (tokens.has(currentToken)) {
+			message = "Syntax Error " + errorCode +
+					" at line " + tokens.line(currentToken) +
+					", token: " + tokens.value(currentToken) +
+					" (" + tokens.type(currentToken) + ")";
 		} else {
-			System.out.println("Syntax Error " + errorCode + " at end of file");
+			message = "Syntax Error " + errorCode + " at end of file";
 		}
+		syntaxErrors.add(message);
+		System.out.println(message);
 	}
 
 	public void run() {
 		try {
 			RULE_PROGRAM();
-			if (currentToken != tokens.size()) {
+			tree.end(SyntaxTree.ROOT, currentToken);
+			if (tokens.has(currentToken)) {
 				error(999); // Unexpected tokens at the end
 				System.out.println("Recovery: Skipping trailing tokens after valid program");
 			}
@@ -290,74 +323,68 @@ public class TheParser {
 	}
 
 	private void RULE_PROGRAM() {
-		logParseRule("RULE_PROGRAM");
-		indentLevel++;
+		int node = openRule(Rule.PROGRAM);
 
-		if (!isInFirstSetOf("PROGRAM")) {
+		if (!isInFirstSetOf(Rule.PROGRAM)) {
 			// Si no es class o {, intentar parsear como declaraciones simples
 			if (isType() || isAssignment() || isMethodCall()) {
 				System.out.println("-- Parsing simple statements");
 				RULE_BODY(); // Parsear como un cuerpo de declaraciones simples
 				System.out.println("Parsing completed with recovery.");
+				closeRule(node);
 				return;
 			}
 
-			boolean foundFirst = skipUntilFirstOrFollow("PROGRAM", 200);
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.PROGRAM, 200);
 			if (!foundFirst) {
 				System.out.println("Recovered: Cannot find valid program start token");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (tokens.get(currentToken).getValue().equals("{")) {
-			currentToken++;
-			logParseRule("{");
+		if (tokens.kind(currentToken) == TokenKind.DL_LBRACE) {
+			matchToken();
 			RULE_BODY();
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("}")) {
-				currentToken++;
-				logParseRule("}");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RBRACE) {
+				matchToken();
 			} else {
 				// Error: Missing closing brace
-				while (currentToken < tokens.size() && !isInFollowSetOf("PROGRAM")) {
+				while (tokens.has(currentToken) && !isInFollowSetOf(Rule.PROGRAM)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Skipped to end of program after missing '}'");
 			}
-		} else if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("class")) {
-			currentToken++;
-			logParseRule("class");
-			if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-				logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
-				currentToken++;
+		} else if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_CLASS) {
+			matchToken();
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+				matchToken();
 			} else {
 				// Error: Missing class name identifier
-				boolean foundFirst = skipUntilFirstOrFollow("STATEMENT_BLOCK", 201);
+				boolean foundFirst = skipUntilFirstOrFollow(Rule.STATEMENT_BLOCK, 201);
 				if (!foundFirst) {
 					System.out.println("Recovered: Skipping class body due to missing class name");
-					indentLevel--;
+					closeRule(node);
 					return;
 				}
 			}
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("{")) {
-				currentToken++;
-				logParseRule("{");
-				while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals("}")) {
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LBRACE) {
+				matchToken();
+				while (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 					if (isType()) {
 						if (isMethodDeclaration()) {
 							RULE_METHODS();
 						} else {
+							int statement = tree.size();
 							RULE_VARIABLE();
-							if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-								currentToken++;
-								logParseRule(";");
+							if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+								matchTerminator(statement);
 							} else {
 								// Error: Missing semicolon
 								// Skip to next valid statement start or class end
-								while (currentToken < tokens.size() &&
+								while (tokens.has(currentToken) &&
 										!isType() &&
-										!tokens.get(currentToken).getValue().equals("}")) {
+										tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 									currentToken++;
 								}
 								System.out.println("Recovered: Skipped to next statement after missing ';'");
@@ -367,8 +394,8 @@ public class TheParser {
 						// Error: Invalid class member
 						// Skip to next valid statement start or class end
 						boolean foundValid = false;
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals("}")) {
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 							if (isType()) {
 								foundValid = true;
 								break;
@@ -382,9 +409,8 @@ public class TheParser {
 						}
 					}
 				}
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("}")) {
-					currentToken++;
-					logParseRule("}");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RBRACE) {
+					matchToken();
 				} else {
 					// Error: Missing closing brace for class
 					// Just report the error since we're already at the end
@@ -398,70 +424,66 @@ public class TheParser {
 			// Error: Invalid program start
 			error(204);
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_METHODS() {
-		logParseRule("RULE_METHODS");
-		indentLevel++;
-		if (!isInFirstSetOf("METHODS")) {
-			boolean foundFirst = skipUntilFirstOrFollow("METHODS", 700);
+		int node = openRule(Rule.METHODS);
+		if (!isInFirstSetOf(Rule.METHODS)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.METHODS, 700);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping METHODS rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 		RULE_TYPE();
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
-			currentToken++;
+		if (tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			matchToken();
 		} else {
 			error(8);
 			// Skip until we find a "(" or something in FOLLOW(METHODS)
-			while (currentToken < tokens.size() &&
-					!tokens.get(currentToken).getValue().equals("(") &&
-					!isInFollowSetOf("METHODS")) {
+			while (tokens.has(currentToken) &&
+					tokens.kind(currentToken) != TokenKind.DL_LPAREN &&
+					!isInFollowSetOf(Rule.METHODS)) {
 				currentToken++;
 			}
-			if (currentToken >= tokens.size() || !tokens.get(currentToken).getValue().equals("(")) {
+			if (!tokens.has(currentToken) || tokens.kind(currentToken) != TokenKind.DL_LPAREN) {
 				System.out.println("Recovered: Missing method name, skipping method declaration");
+				closeRule(node);
 				return;
 			}
 			System.out.println("Recovered: Found opening parenthesis after missing method name");
 		}
-		if (tokens.get(currentToken).getValue().equals("(")) {
-			currentToken++;
-			logParseRule("(");
+		if (tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+			matchToken();
 			RULE_PARAMS();
-			if (tokens.get(currentToken).getValue().equals(")")) {
-				currentToken++;
-				logParseRule(")");
+			if (tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+				matchToken();
 			} else {
 				error(9);
 				// Skip until we find a "{" or something in FOLLOW(METHODS)
-				while (currentToken < tokens.size() &&
-						!tokens.get(currentToken).getValue().equals("{") &&
-						!isInFollowSetOf("METHODS")) {
+				while (tokens.has(currentToken) &&
+						tokens.kind(currentToken) != TokenKind.DL_LBRACE &&
+						!isInFollowSetOf(Rule.METHODS)) {
 					currentToken++;
 				}
-				if (currentToken >= tokens.size() || !tokens.get(currentToken).getValue().equals("{")) {
+				if (!tokens.has(currentToken) || tokens.kind(currentToken) != TokenKind.DL_LBRACE) {
 					System.out.println("Recovered: Missing closing parenthesis, skipping method declaration");
+					closeRule(node);
 					return;
 				}
 				System.out.println("Recovered: Found opening brace after missing closing parenthesis");
 			}
-			if (tokens.get(currentToken).getValue().equals("{")) {
-				currentToken++;
-				logParseRule("{");
+			if (tokens.kind(currentToken) == TokenKind.DL_LBRACE) {
+				matchToken();
 				RULE_BODY();
-				if (tokens.get(currentToken).getValue().equals("}")) {
-					currentToken++;
-					logParseRule("}");
+				if (tokens.kind(currentToken) == TokenKind.DL_RBRACE) {
+					matchToken();
 				} else {
 					error(10);
 					// Skip until we find something in FOLLOW(METHODS)
-					while (currentToken < tokens.size() && !isInFollowSetOf("METHODS")) {
+					while (tokens.has(currentToken) && !isInFollowSetOf(Rule.METHODS)) {
 						currentToken++;
 					}
 					System.out.println("Recovered: Missing closing brace, skipping to next method or class end");
@@ -469,7 +491,7 @@ public class TheParser {
 			} else {
 				error(11);
 				// Skip until we find something in FOLLOW(METHODS)
-				while (currentToken < tokens.size() && !isInFollowSetOf("METHODS")) {
+				while (tokens.has(currentToken) && !isInFollowSetOf(Rule.METHODS)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Missing method body, skipping to next method or class end");
@@ -477,71 +499,70 @@ public class TheParser {
 		} else {
 			error(12);
 			// Skip until we find something in FOLLOW(METHODS)
-			while (currentToken < tokens.size() && !isInFollowSetOf("METHODS")) {
+			while (tokens.has(currentToken) && !isInFollowSetOf(Rule.METHODS)) {
 				currentToken++;
 			}
 			System.out.println("Recovered: Missing method parameter list, skipping to next method or class end");
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_PARAMS() {
-		logParseRule("RULE_PARAMS");
-		indentLevel++;
+		int node = openRule(Rule.PARAMS);
 		// Params can be empty (epsilon), so we check if the current token is ")"
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
 			// Empty parameter list is valid, do nothing
+			closeRule(node);
 			return;
 		}
-		if (!isInFirstSetOf("PARAMS")) {
-			boolean foundFirst = skipUntilFirstOrFollow("PARAMS", 600);
+		if (!isInFirstSetOf(Rule.PARAMS)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.PARAMS, 600);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping PARAMS rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 		if (isType()) {
 			RULE_TYPE();
-			if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-				logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
-				currentToken++;
+			if (tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+				matchToken();
 			} else {
 				error(13);
 				// Skip until we find a comma or ")" to continue
-				while (currentToken < tokens.size() &&
-						!tokens.get(currentToken).getValue().equals(",") &&
-						!tokens.get(currentToken).getValue().equals(")")) {
+				while (tokens.has(currentToken) &&
+						tokens.kind(currentToken) != TokenKind.DL_COMMA &&
+						tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
 					currentToken++;
 				}
-				if (currentToken >= tokens.size() ||
-						(!tokens.get(currentToken).getValue().equals(",") &&
-								!tokens.get(currentToken).getValue().equals(")"))) {
+				if (!tokens.has(currentToken) ||
+						(tokens.kind(currentToken) != TokenKind.DL_COMMA &&
+								tokens.kind(currentToken) != TokenKind.DL_RPAREN)) {
 					System.out.println("Recovered: Malformed parameter, skipping parameter list");
+					closeRule(node);
 					return;
 				}
 				System.out.println("Recovered: Found comma or closing parenthesis after missing parameter name");
 			}
-			while (tokens.get(currentToken).getValue().equals(",")) {
-				currentToken++;
-				logParseRule(",");
+			while (tokens.kind(currentToken) == TokenKind.DL_COMMA) {
+				matchToken();
 				if (isType()) {
 					RULE_TYPE();
-					if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-						logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
-						currentToken++;
+					if (tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+						matchToken();
 					} else {
 						error(14);
 						// Skip until we find a comma or ")" to continue
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals(",") &&
-								!tokens.get(currentToken).getValue().equals(")")) {
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_COMMA &&
+								tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
 							currentToken++;
 						}
-						if (currentToken >= tokens.size() ||
-								(!tokens.get(currentToken).getValue().equals(",") &&
-										!tokens.get(currentToken).getValue().equals(")"))) {
+						if (!tokens.has(currentToken) ||
+								(tokens.kind(currentToken) != TokenKind.DL_COMMA &&
+										tokens.kind(currentToken) != TokenKind.DL_RPAREN)) {
 							System.out.println("Recovered: Malformed parameter after comma, skipping parameter list");
+							closeRule(node);
 							return;
 						}
 						System.out.println("Recovered: Found comma or closing parenthesis after missing parameter name");
@@ -549,46 +570,45 @@ public class TheParser {
 				} else {
 					error(15);
 					// Skip until we find a comma or ")" to continue
-					while (currentToken < tokens.size() &&
-							!tokens.get(currentToken).getValue().equals(",") &&
-							!tokens.get(currentToken).getValue().equals(")")) {
+					while (tokens.has(currentToken) &&
+							tokens.kind(currentToken) != TokenKind.DL_COMMA &&
+							tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
 						currentToken++;
 					}
-					if (currentToken >= tokens.size() ||
-							(!tokens.get(currentToken).getValue().equals(",") &&
-									!tokens.get(currentToken).getValue().equals(")"))) {
+					if (!tokens.has(currentToken) ||
+							(tokens.kind(currentToken) != TokenKind.DL_COMMA &&
+									tokens.kind(currentToken) != TokenKind.DL_RPAREN)) {
 						System.out.println("Recovered: Missing parameter type after comma, skipping parameter list");
+						closeRule(node);
 						return;
 					}
 					System.out.println("Recovered: Found comma or closing parenthesis after missing parameter type");
 				}
 			}
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_BODY() {
-		logParseRule("-- RULE_BODY");
-		indentLevel++;
-		while (currentToken < tokens.size() &&
-				!(tokens.get(currentToken).getValue().equals("}") ||
-						tokens.get(currentToken).getValue().equals("break"))) {
+		int node = openRule(Rule.BODY);
+		while (tokens.has(currentToken) &&
+				!(tokens.kind(currentToken) == TokenKind.DL_RBRACE ||
+						tokens.kind(currentToken) == TokenKind.KW_BREAK)) {
 			try {
 				if (isType()) {
+					int statement = tree.size();
 					RULE_VARIABLE();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule("-- ;");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1300);
 						// Skip until we find a semicolon or the start of another valid statement
 						boolean recovered = false;
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals("}") &&
-								!tokens.get(currentToken).getValue().equals("break")) {
-							if (tokens.get(currentToken).getValue().equals(";")) {
-								currentToken++;
-								logParseRule("-- ; (recovered)");
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RBRACE &&
+								tokens.kind(currentToken) != TokenKind.KW_BREAK) {
+							if (tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+								matchTerminator(statement);
 								recovered = true;
 								break;
 							}
@@ -608,20 +628,19 @@ public class TheParser {
 						}
 					}
 				} else if (isAssignment()) {
+					int statement = tree.size();
 					RULE_ASSIGNMENT();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule(";");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1301);
 						// Skip until we find a semicolon or the start of another valid statement
 						boolean recovered = false;
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals("}") &&
-								!tokens.get(currentToken).getValue().equals("break")) {
-							if (tokens.get(currentToken).getValue().equals(";")) {
-								currentToken++;
-								logParseRule("; (recovered)");
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RBRACE &&
+								tokens.kind(currentToken) != TokenKind.KW_BREAK) {
+							if (tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+								matchTerminator(statement);
 								recovered = true;
 								break;
 							}
@@ -641,20 +660,19 @@ public class TheParser {
 						}
 					}
 				} else if (isMethodCall()) {
+					int statement = tree.size();
 					RULE_CALL_METHOD();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule(";");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1302);
 						// Similar recovery as above
 						boolean recovered = false;
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals("}") &&
-								!tokens.get(currentToken).getValue().equals("break")) {
-							if (tokens.get(currentToken).getValue().equals(";")) {
-								currentToken++;
-								logParseRule("; (recovered)");
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RBRACE &&
+								tokens.kind(currentToken) != TokenKind.KW_BREAK) {
+							if (tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+								matchTerminator(statement);
 								recovered = true;
 								break;
 							}
@@ -674,18 +692,18 @@ public class TheParser {
 						}
 					}
 				}else if (isPrintlnStatement()) { // NUEVO: Agregar verificación para println
+					int statement = tree.size();
 					RULE_PRINTLN();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule("-- ;");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1305);
 					}
 				}else if (isInputlnStatement()) { // NUEVO: Agregar verificación para inputln
+					int statement = tree.size();
 					RULE_INPUTLN();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule("-- ;");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1605);
 					}
@@ -702,18 +720,18 @@ public class TheParser {
 				} else if (isSwitchStatement()) {
 					RULE_SWITCH();
 				} else {
-					if (!isInFirstSetOf("EXPRESSION")) {
-						boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1303);
+					if (!isInFirstSetOf(Rule.EXPRESSION)) {
+						boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1303);
 						if (!foundFirst) {
 							// Try to skip to the start of another statement or the end of the body
-							while (currentToken < tokens.size() &&
+							while (tokens.has(currentToken) &&
 									!isType() && !isAssignment() && !isMethodCall() &&
 									!isReturnStatement() && !isWhileStatement() &&
 									!isIfStatement() && !isDoStatement() &&
 									!isForStatement() && !isSwitchStatement() &&
 									!isPrintlnStatement() &&
-									!tokens.get(currentToken).getValue().equals("}") &&
-									!tokens.get(currentToken).getValue().equals("break")) {
+									tokens.kind(currentToken) != TokenKind.DL_RBRACE &&
+									tokens.kind(currentToken) != TokenKind.KW_BREAK) {
 								currentToken++;
 							}
 
@@ -721,20 +739,19 @@ public class TheParser {
 							continue;
 						}
 					}
+					int statement = tree.size();
 					RULE_EXPRESSION();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule("-- ;");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1304);
 						// Similar recovery as above
 						boolean recovered = false;
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals("}") &&
-								!tokens.get(currentToken).getValue().equals("break")) {
-							if (tokens.get(currentToken).getValue().equals(";")) {
-								currentToken++;
-								logParseRule("; (recovered)");
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RBRACE &&
+								tokens.kind(currentToken) != TokenKind.KW_BREAK) {
+							if (tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+								matchTerminator(statement);
 								recovered = true;
 								break;
 							}
@@ -755,32 +772,32 @@ public class TheParser {
 					}
 				}
 			} catch (Exception e) {
+				resumeRule(node);
 				System.out.println("Critical error in BODY: " + e.getMessage());
 				// Skip to the next statement or end of body
-				while (currentToken < tokens.size() &&
+				while (tokens.has(currentToken) &&
 						!isType() && !isAssignment() && !isMethodCall() &&
 						!isReturnStatement() && !isWhileStatement() &&
 						!isIfStatement() && !isDoStatement() &&
 						!isForStatement() && !isSwitchStatement() &&
-						!tokens.get(currentToken).getValue().equals("}") &&
-						!tokens.get(currentToken).getValue().equals("break")) {
+						tokens.kind(currentToken) != TokenKind.DL_RBRACE &&
+						tokens.kind(currentToken) != TokenKind.KW_BREAK) {
 					currentToken++;
 				}
 				System.out.println("Recovered from critical error in BODY");
 			}
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_VARIABLE() {
-		logParseRule("RULE_VARIABLE");
-		indentLevel++;
+		int node = openRule(Rule.VARIABLE);
 
-		if (!isInFirstSetOf("VARIABLE")) {
-			boolean foundFirst = skipUntilFirstOrFollow("VARIABLE", 500);
+		if (!isInFirstSetOf(Rule.VARIABLE)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.VARIABLE, 500);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping VARIABLE rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
@@ -790,77 +807,76 @@ public class TheParser {
 
 		// Capturar el tipo
 		if (isType()) {
-			variableType = tokens.get(currentToken).getValue();
+			variableType = tokens.value(currentToken);
 			RULE_TYPE();
 		}
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			variableName = tokens.get(currentToken).getValue();
-			logParseRule("IDENTIFIER: " + variableName);
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			variableName = tokens.value(currentToken);
+			addToken();
 
 			// ANÁLISIS SEMÁNTICO: Declarar variable
 			if (variableType != null && variableName != null) {
-				semantic.checkVariableDeclaration(variableType, variableName, tokens.get(currentToken).getLineNumber());
+				semantic.checkVariableDeclaration(variableType, variableName, tokens.line(currentToken));
 			}
 
 			currentToken++;
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("=")) {
-				currentToken++;
-				logParseRule("=");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.OP_ASSIGN) {
+				matchToken();
 
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 501);
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 501);
 					if (!foundFirst) {
 						System.out.println("Recovered: Missing expression in variable initialization");
-						indentLevel--;
+						closeRule(node);
 						return;
 					}
 				}
 
 				// Capturar el valor antes de evaluar la expresión
 				String assignedValue = null;
-				if (currentToken < tokens.size()) {
-					assignedValue = tokens.get(currentToken).getValue();
-					logParseRule("LITERAL: " + assignedValue);
+				if (tokens.has(currentToken)) {
+					assignedValue = tokens.value(currentToken);
 				}
 
-				// Evaluar la expresión y verificar compatibilidad de tipos
+				// Evaluar la expresión y verificar compatibilidad de tipos; su código deja el valor en el stack
 				String expressionType = evaluateExpression();
 				if (variableType != null && expressionType != null) {
-					semantic.checkAssignment(variableType, expressionType, tokens.get(currentToken).getLineNumber());
+					semantic.checkAssignment(variableType, expressionType, tokens.line(currentToken));
 
 					// Asignar el valor real a la variable
 					if (assignedValue != null && variableName != null) {
-						semantic.setVariableValue(variableName, assignedValue, tokens.get(currentToken).getLineNumber());
-
-						// GENERACIÓN DE CÓDIGO: Variable con inicialización
-						codeGenerator.generateVariableDeclaration(variableName, assignedValue);
+						semantic.setVariableValue(variableName, assignedValue, tokens.line(currentToken));
 					}
 				}
+
+				// GENERACIÓN DE CÓDIGO: Variable con inicialización
+				if (variableName != null) {
+					codeGenerator.generateAssignmentFromStack(variableName);
+				}
 			}
 			// Si no hay inicialización, la variable se declara con valor por defecto (ya está en la tabla de símbolos)
 		} else {
 			error(502);
-			while (currentToken < tokens.size() &&
-					!tokens.get(currentToken).getValue().equals(";") &&
-					!isInFollowSetOf("VARIABLE")) {
+			while (tokens.has(currentToken) &&
+					tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+					!isInFollowSetOf(Rule.VARIABLE)) {
 				currentToken++;
 			}
 			System.out.println("Recovered: Skipped to next statement after invalid variable declaration");
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_ASSIGNMENT() {
-		logParseRule("--- RULE_ASSIGNMENT");
-		indentLevel++;
+		int node = openRule(Rule.ASSIGNMENT);
 
-		if (!isInFirstSetOf("ASSIGNMENT")) {
-			boolean foundFirst = skipUntilFirstOrFollow("ASSIGNMENT", 600);
+		if (!isInFirstSetOf(Rule.ASSIGNMENT)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.ASSIGNMENT, 600);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping ASSIGNMENT rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
@@ -868,33 +884,32 @@ public class TheParser {
 		String variableName = null;
 		String variableType = null;
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			variableName = tokens.get(currentToken).getValue();
-			logParseRule("--- IDENTIFIER: " + variableName);
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			variableName = tokens.value(currentToken);
+			addToken();
 
 			// ANÁLISIS SEMÁNTICO: Verificar que la variable existe
-			variableType = semantic.checkVariableUsage(variableName, tokens.get(currentToken).getLineNumber());
+			variableType = semantic.checkVariableUsage(variableName, tokens.line(currentToken));
 
 			currentToken++;
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("=")) {
-				currentToken++;
-				logParseRule("--- =");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.OP_ASSIGN) {
+				matchToken();
 
 				// DEBUG: Ver qué token sigue después del =
-				if (currentToken < tokens.size()) {
-					System.out.println("DEBUG: Token después de = es: '" + tokens.get(currentToken).getValue() + "' tipo: " + tokens.get(currentToken).getType());
+				if (tokens.has(currentToken)) {
+					System.out.println("DEBUG: Token después de = es: '" + tokens.value(currentToken) + "' tipo: " + tokens.type(currentToken));
 
-					if (currentToken + 1 < tokens.size()) {
-						System.out.println("DEBUG: Token siguiente es: '" + tokens.get(currentToken + 1).getValue() + "' tipo: " + tokens.get(currentToken + 1).getType());
+					if (tokens.has(currentToken + 1)) {
+						System.out.println("DEBUG: Token siguiente es: '" + tokens.value(currentToken + 1) + "' tipo: " + tokens.type(currentToken + 1));
 					}
 				}
 
 				// VERIFICAR SI ES inputln() PRIMERO, ANTES de isInFirstSetOf
-				if (currentToken < tokens.size() &&
-						tokens.get(currentToken).getValue().equals("inputln") &&
-						currentToken + 1 < tokens.size() &&
-						tokens.get(currentToken + 1).getValue().equals("(")) {
+				if (tokens.has(currentToken) &&
+						tokens.kind(currentToken) == TokenKind.KW_INPUTLN &&
+						tokens.has(currentToken + 1) &&
+						tokens.kind(currentToken + 1) == TokenKind.DL_LPAREN) {
 
 					System.out.println("DEBUG: DETECTADO inputln() - Generando código especial");
 
@@ -902,13 +917,10 @@ public class TheParser {
 					codeGenerator.generateInputln();
 
 					// Procesar inputln() sintácticamente
-					currentToken++; // saltar "inputln"
-					logParseRule("inputln");
-					currentToken++; // saltar "("
-					logParseRule("(");
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-						currentToken++; // saltar ")"
-						logParseRule(")");
+					matchToken(); // saltar "inputln"
+					matchToken(); // saltar "("
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+						matchToken(); // saltar ")"
 					}
 
 					// Almacenar el resultado en la variable
@@ -918,42 +930,32 @@ public class TheParser {
 
 				} else {
 					// Solo verificar isInFirstSetOf si NO es inputln
-					if (!isInFirstSetOf("EXPRESSION")) {
-						boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 601);
+					if (!isInFirstSetOf(Rule.EXPRESSION)) {
+						boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 601);
 						if (!foundFirst) {
 							System.out.println("Recovered: Missing expression in assignment");
-							indentLevel--;
+							closeRule(node);
 							return;
 						}
 					}
 
 					System.out.println("DEBUG: NO es inputln() - procesando como expresión normal");
 
-					// GENERACIÓN DE CÓDIGO: Generar código para la expresión
-					String assignmentValue = generateExpressionCode();
-
-					// Evaluar la expresión y verificar compatibilidad de tipos
+					// Evaluar la expresión y verificar compatibilidad de tipos; su código deja el valor en el stack
 					String expressionType = evaluateExpression();
 					if (variableType != null && expressionType != null) {
-						semantic.checkAssignment(variableType, expressionType, tokens.get(currentToken).getLineNumber());
-
-						// GENERACIÓN DE CÓDIGO: Asignación
-						if (assignmentValue != null && variableName != null) {
-							// Para valores simples
-							codeGenerator.generateAssignment(variableName, assignmentValue);
-						} else {
-							// Para expresiones complejas, el código ya fue generado en generateExpressionCode
-							// Solo necesitamos guardar el resultado
-							codeGenerator.generateAssignmentFromStack(variableName);
-						}
+						semantic.checkAssignment(variableType, expressionType, tokens.line(currentToken));
 					}
+
+					// GENERACIÓN DE CÓDIGO: Asignación, guardar el resultado
+					codeGenerator.generateAssignmentFromStack(variableName);
 				}
 			} else {
 				error(602);
 				// Try to recover by finding a semicolon or the next statement
-				while (currentToken < tokens.size() &&
-						!tokens.get(currentToken).getValue().equals(";") &&
-						!isInFollowSetOf("ASSIGNMENT")) {
+				while (tokens.has(currentToken) &&
+						tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+						!isInFollowSetOf(Rule.ASSIGNMENT)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Skipped to next statement after invalid assignment");
@@ -961,43 +963,39 @@ public class TheParser {
 		} else {
 			error(603);
 			// Try to recover by finding a semicolon or the next statement
-			while (currentToken < tokens.size() &&
-					!tokens.get(currentToken).getValue().equals(";") &&
-					!isInFollowSetOf("ASSIGNMENT")) {
+			while (tokens.has(currentToken) &&
+					tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+					!isInFollowSetOf(Rule.ASSIGNMENT)) {
 				currentToken++;
 			}
 			System.out.println("Recovered: Skipped to next statement after invalid assignment");
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_CALL_METHOD() {
-		logParseRule("--- RULE_CALL_METHOD");
-		indentLevel++;
-		if (!isInFirstSetOf("CALL_METHOD")) {
-			boolean foundFirst = skipUntilFirstOrFollow("CALL_METHOD", 700);
+		int node = openRule(Rule.CALL_METHOD);
+		if (!isInFirstSetOf(Rule.CALL_METHOD)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.CALL_METHOD, 700);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping CALL_METHOD rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
-		if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
-			currentToken++;
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("(");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			matchToken();
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
 				RULE_PARAM_VALUES();
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule(")");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
 				} else {
 					error(701);
 					// Try to recover by finding a semicolon or the next statement
-					while (currentToken < tokens.size() &&
-							!tokens.get(currentToken).getValue().equals(";") &&
-							!isInFollowSetOf("CALL_METHOD")) {
+					while (tokens.has(currentToken) &&
+							tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+							!isInFollowSetOf(Rule.CALL_METHOD)) {
 						currentToken++;
 					}
 					System.out.println("Recovered: Skipped to next statement after method call with missing ')'");
@@ -1012,27 +1010,25 @@ public class TheParser {
 		} else {
 			error(703);
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_PARAM_VALUES() {
-		logParseRule("RULE_PARAM_VALUES");
-		indentLevel++;
-		if (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals(")")) {
-			if (!isInFirstSetOf("EXPRESSION")) {
-				boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 800);
+		int node = openRule(Rule.PARAM_VALUES);
+		if (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
+			if (!isInFirstSetOf(Rule.EXPRESSION)) {
+				boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 800);
 				if (!foundFirst) {
 					System.out.println("Recovered: Empty parameter list");
-					indentLevel--;
+					closeRule(node);
 					return;
 				}
 			}
 			RULE_EXPRESSION();
-			while (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(",")) {
-				currentToken++;
-				logParseRule(",");
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 801);
+			while (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COMMA) {
+				matchToken();
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 801);
 					if (!foundFirst) {
 						System.out.println("Recovered: Missing expression after comma in parameter list");
 						break;
@@ -1041,58 +1037,55 @@ public class TheParser {
 				RULE_EXPRESSION();
 			}
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_RETURN() {
-		logParseRule("RULE_RETURN");
-		indentLevel++;
-		if (!isInFirstSetOf("RETURN")) {
-			boolean foundFirst = skipUntilFirstOrFollow("RETURN", 800);
+		int node = openRule(Rule.RETURN);
+		if (!isInFirstSetOf(Rule.RETURN)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.RETURN, 800);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping RETURN rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
-		if (tokens.get(currentToken).getValue().equals("return")) {
-			currentToken++;
-			logParseRule("return");
+		if (tokens.kind(currentToken) == TokenKind.KW_RETURN) {
+			matchToken();
 			// Return can have an optional expression or just be "return;"
-			if (!tokens.get(currentToken).getValue().equals(";")) {
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 801);
+			if (tokens.kind(currentToken) != TokenKind.DL_SEMICOLON) {
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 801);
 					if (!foundFirst) {
 						// If we found a semicolon, that's fine - we'll treat it as "return;"
-						if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-							currentToken++;
-							logParseRule(";");
+						if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+							matchToken();
+							closeRule(node);
 							return;
 						}
 						// Skip until we find a semicolon or something in FOLLOW(RETURN)
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals(";") &&
-								!isInFollowSetOf("RETURN")) {
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+								!isInFollowSetOf(Rule.RETURN)) {
 							currentToken++;
 						}
-						if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-							currentToken++;
-							logParseRule(";");
+						if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+							matchToken();
 						} else {
 							System.out.println("Recovered: Missing expression and semicolon in return statement");
 						}
+						closeRule(node);
 						return;
 					}
 				}
 				RULE_EXPRESSION();
 			}
-			if (tokens.get(currentToken).getValue().equals(";")) {
-				currentToken++;
-				logParseRule(";");
+			if (tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+				matchToken();
 			} else {
 				error(19);
 				// Skip until we find something in FOLLOW(RETURN)
-				while (currentToken < tokens.size() && !isInFollowSetOf("RETURN")) {
+				while (tokens.has(currentToken) && !isInFollowSetOf(Rule.RETURN)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Missing semicolon after return statement");
@@ -1100,84 +1093,74 @@ public class TheParser {
 		} else {
 			error(28);
 			// Skip until we find something in FOLLOW(RETURN)
-			while (currentToken < tokens.size() && !isInFollowSetOf("RETURN")) {
+			while (tokens.has(currentToken) && !isInFollowSetOf(Rule.RETURN)) {
 				currentToken++;
 			}
 			System.out.println("Recovered: Invalid return statement");
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_WHILE() {
-		logParseRule("--- RULE_WHILE");
-		indentLevel++;
+		int node = openRule(Rule.WHILE);
 
-		if (!isInFirstSetOf("WHILE")) {
-			boolean foundFirst = skipUntilFirstOrFollow("WHILE", 900);
+		if (!isInFirstSetOf(Rule.WHILE)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.WHILE, 900);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping WHILE rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("while")) {
-			currentToken++;
-			logParseRule("--- while");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_WHILE) {
+			matchToken();
 
 			// GENERACIÓN DE CÓDIGO: Etiqueta del inicio del while (ANTES de evaluar condición)
 			String whileStartLabel = codeGenerator.generateLabel();
 			codeGenerator.addLabel(whileStartLabel);
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("--- (");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
 
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 901);
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 901);
 					if (!foundFirst) {
 						// Try to recover by finding the closing parenthesis
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals(")")) {
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
 							currentToken++;
 						}
 
-						if (currentToken < tokens.size()) {
+						if (tokens.has(currentToken)) {
 							currentToken++; // Skip the closing parenthesis
 							System.out.println("Recovered: Missing condition in while loop");
 						} else {
 							System.out.println("Recovered: Skipping malformed while loop");
-							indentLevel--;
+							closeRule(node);
 							return;
 						}
 					} else {
-						// GENERACIÓN DE CÓDIGO: Evaluar condición del while
-						generateConditionCode();
-
-						// Evaluar la expresión de condición CORRECTAMENTE
+						// Evaluar la condición y generar su código
 						String conditionType = evaluateExpression();
 
 						// ANÁLISIS SEMÁNTICO: Verificar que la condición sea booleana
 						if (conditionType != null) {
-							semantic.checkBooleanExpression(conditionType, "while", tokens.get(currentToken).getLineNumber());
+							semantic.checkBooleanExpression(conditionType, "while", tokens.line(currentToken));
 						}
 					}
 				} else {
-					// GENERACIÓN DE CÓDIGO: Evaluar condición del while
-					generateConditionCode();
-
-					// Evaluar la expresión de condición CORRECTAMENTE
+					// Evaluar la condición y generar su código
 					String conditionType = evaluateExpression();
 
 					// ANÁLISIS SEMÁNTICO: Verificar que la condición sea booleana
 					if (conditionType != null) {
-						semantic.checkBooleanExpression(conditionType, "while", tokens.get(currentToken).getLineNumber());
+						semantic.checkBooleanExpression(conditionType, "while", tokens.line(currentToken));
 					}
 				}
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule("--- )");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
 
 					// GENERACIÓN DE CÓDIGO: Salto condicional al final del while
 					String whileEndLabel = codeGenerator.generateLabel();
@@ -1195,7 +1178,7 @@ public class TheParser {
 				} else {
 					error(29);
 					// Try to recover by looking for a statement block
-					if (isInFirstSetOf("STATEMENT_BLOCK")) {
+					if (isInFirstSetOf(Rule.STATEMENT_BLOCK)) {
 						System.out.println("Recovered: Missing ')' in while condition");
 
 						// Generar etiquetas de recuperación
@@ -1208,8 +1191,8 @@ public class TheParser {
 						codeGenerator.addLabel(whileEndLabel);
 					} else {
 						// Skip to the next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("WHILE")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.WHILE)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Skipped malformed while loop");
@@ -1218,31 +1201,29 @@ public class TheParser {
 			} else {
 				error(30);
 				// Try to recover by checking if there's an expression anyway
-				if (isInFirstSetOf("EXPRESSION")) {
+				if (isInFirstSetOf(Rule.EXPRESSION)) {
 					System.out.println("Recovered: Missing '(' in while condition");
 
 					// Generar código de recuperación
-					generateConditionCode();
 					evaluateExpression();
 
 					String whileEndLabel = codeGenerator.generateLabel();
 					codeGenerator.generateConditionalJump(whileEndLabel, "false");
 
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-						currentToken++;
-						logParseRule("--- )");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+						matchToken();
 						RULE_STATEMENT_BLOCK();
-					} else if (isInFirstSetOf("STATEMENT_BLOCK")) {
+					} else if (isInFirstSetOf(Rule.STATEMENT_BLOCK)) {
 						System.out.println("Recovered: Missing ')' in while condition");
 						RULE_STATEMENT_BLOCK();
 					} else {
 						// Skip to the next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("WHILE")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.WHILE)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Skipped malformed while loop");
-						indentLevel--;
+						closeRule(node);
 						return;
 					}
 
@@ -1250,8 +1231,8 @@ public class TheParser {
 					codeGenerator.addLabel(whileEndLabel);
 				} else {
 					// Skip to the next statement
-					while (currentToken < tokens.size() &&
-							!isInFollowSetOf("WHILE")) {
+					while (tokens.has(currentToken) &&
+							!isInFollowSetOf(Rule.WHILE)) {
 						currentToken++;
 					}
 					System.out.println("Recovered: Skipped malformed while loop");
@@ -1261,51 +1242,44 @@ public class TheParser {
 			error(31);
 		}
 
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_IF() {
-		logParseRule("--- RULE_IF");
-		indentLevel++;
+		int node = openRule(Rule.IF);
 
-		if (!isInFirstSetOf("IF")) {
-			boolean foundFirst = skipUntilFirstOrFollow("IF", 400);
+		if (!isInFirstSetOf(Rule.IF)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.IF, 400);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping IF rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("if")) {
-			currentToken++;
-			logParseRule("--- if");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_IF) {
+			matchToken();
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("--- (");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
 
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 401);
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 401);
 					if (!foundFirst) {
 						System.out.println("Recovered: Missing expression in if condition");
-						indentLevel--;
+						closeRule(node);
 						return;
 					}
 				} else {
-					// GENERACIÓN DE CÓDIGO: Evaluar condición del if
-					generateConditionCode();
-
-					// Evaluar la expresión de condición
+					// Evaluar la condición y generar su código
 					String conditionType = evaluateExpression();
 
 					// ANÁLISIS SEMÁNTICO: Verificar que la condición sea booleana
-					semantic.checkBooleanExpression(conditionType, "if", tokens.get(currentToken).getLineNumber());
+					semantic.checkBooleanExpression(conditionType, "if", tokens.line(currentToken));
 				}
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule("--- )");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
 
 					// GENERACIÓN DE CÓDIGO: Salto condicional
 					String elseLabel = codeGenerator.generateLabel();
@@ -1313,9 +1287,8 @@ public class TheParser {
 
 					RULE_STATEMENT_BLOCK();
 
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("else")) {
-						currentToken++;
-						logParseRule("--- else");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_ELSE) {
+						matchToken();
 
 						// GENERACIÓN DE CÓDIGO: Salto incondicional para saltar el else
 						String endLabel = codeGenerator.generateLabel();
@@ -1324,7 +1297,7 @@ public class TheParser {
 						// Colocar la etiqueta del else
 						codeGenerator.addLabel(elseLabel);
 
-						if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("if")) {
+						if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_IF) {
 							RULE_IF();
 						} else {
 							RULE_STATEMENT_BLOCK();
@@ -1346,25 +1319,23 @@ public class TheParser {
 			error(404);
 		}
 
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_DO_WHILE() {
-		logParseRule("--- RULE_DO_WHILE");
-		indentLevel++;
+		int node = openRule(Rule.DO_WHILE);
 
-		if (!isInFirstSetOf("DO_WHILE")) {
-			boolean foundFirst = skipUntilFirstOrFollow("DO_WHILE", 900);
+		if (!isInFirstSetOf(Rule.DO_WHILE)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.DO_WHILE, 900);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping DO_WHILE rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (tokens.get(currentToken).getValue().equals("do")) {
-			currentToken++;
-			logParseRule("do");
+		if (tokens.kind(currentToken) == TokenKind.KW_DO) {
+			matchToken();
 
 			// GENERACIÓN DE CÓDIGO: Etiqueta del inicio del do-while
 			String doStartLabel = codeGenerator.generateLabel();
@@ -1372,34 +1343,27 @@ public class TheParser {
 
 			RULE_STATEMENT_BLOCK();
 
-			if (tokens.get(currentToken).getValue().equals("while")) {
-				currentToken++;
-				logParseRule("while");
+			if (tokens.kind(currentToken) == TokenKind.KW_WHILE) {
+				matchToken();
 
-				if (tokens.get(currentToken).getValue().equals("(")) {
-					currentToken++;
-					logParseRule("(");
+				if (tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+					matchToken();
 
-					// GENERACIÓN DE CÓDIGO: Evaluar condición del do-while
-					generateConditionCode();
-
-					// Evaluar la expresión de condición
+					// Evaluar la condición y generar su código
 					String conditionType = evaluateExpression();
 
 					// ANÁLISIS SEMÁNTICO: Verificar que la condición sea booleana
-					semantic.checkBooleanExpression(conditionType, "do-while", tokens.get(currentToken).getLineNumber());
+					semantic.checkBooleanExpression(conditionType, "do-while", tokens.line(currentToken));
 
-					if (tokens.get(currentToken).getValue().equals(")")) {
-						currentToken++;
-						logParseRule(")");
+					if (tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+						matchToken();
 
 						// GENERACIÓN DE CÓDIGO: Salto condicional al inicio si es verdadero
 						// En do-while, si la condición es true (1), volver al inicio
 						codeGenerator.generateConditionalJump(doStartLabel, "1");
 
-						if (tokens.get(currentToken).getValue().equals(";")) {
-							currentToken++;
-							logParseRule(";");
+						if (tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+							matchToken();
 						} else {
 							error(35);
 						}
@@ -1416,45 +1380,40 @@ public class TheParser {
 			error(39);
 		}
 
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_FOR() {
-		logParseRule("--- RULE_FOR");
-		indentLevel++;
+		int node = openRule(Rule.FOR);
 
-		if (!isInFirstSetOf("FOR")) {
-			boolean foundFirst = skipUntilFirstOrFollow("FOR", 1000);
+		if (!isInFirstSetOf(Rule.FOR)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.FOR, 1000);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping FOR rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("for")) {
-			currentToken++;
-			logParseRule("for");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_FOR) {
+			matchToken();
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("(");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
 
 				// Initialization part
 				if (isType()) {
 					RULE_VARIABLE();
-				} else if (!tokens.get(currentToken).getValue().equals(";")) {
+				} else if (tokens.kind(currentToken) != TokenKind.DL_SEMICOLON) {
 					if (isAssignment()) {
 						RULE_ASSIGNMENT();
-					} else if (isInFirstSetOf("EXPRESSION")) {
-						String expressionValue = generateExpressionCode();
-						String expressionType = evaluateExpression();
+					} else if (isInFirstSetOf(Rule.EXPRESSION)) {
+						evaluateExpression();
 					}
 				}
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					logParseRule(";");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+					matchToken();
 				} else {
 					error(1002);
 				}
@@ -1464,22 +1423,18 @@ public class TheParser {
 				codeGenerator.addLabel(forStartLabel);
 
 				// Condition part
-				if (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals(";")) {
-					// GENERACIÓN DE CÓDIGO: Evaluar condición del for
-					generateConditionCode();
-
-					// Evaluar la expresión de condición
+				if (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_SEMICOLON) {
+					// Evaluar la condición y generar su código
 					String conditionType = evaluateExpression();
 
 					// ANÁLISIS SEMÁNTICO: Verificar que la condición sea booleana
 					if (conditionType != null) {
-						semantic.checkBooleanExpression(conditionType, "for", tokens.get(currentToken).getLineNumber());
+						semantic.checkBooleanExpression(conditionType, "for", tokens.line(currentToken));
 					}
 				}
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-					currentToken++;
-					logParseRule(";");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+					matchToken();
 				} else {
 					error(1004);
 				}
@@ -1488,47 +1443,32 @@ public class TheParser {
 				String forEndLabel = codeGenerator.generateLabel();
 				codeGenerator.generateConditionalJump(forEndLabel, "false");
 
-				// Guardar la posición del incremento para procesarlo después del cuerpo
-				int incrementStart = currentToken;
-
-				// Increment part (solo parseamos, no generamos código aquí)
-				if (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals(")")) {
+				// Increment part: se analiza en su lugar y su código se mueve después del cuerpo
+				int incrementCode = codeGenerator.mark();
+				if (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
+					boolean parsed = true;
 					if (isAssignment()) {
-						// Solo avanzar tokens sin generar código
-						while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals(")")) {
-							currentToken++;
-						}
-					} else if (isInFirstSetOf("EXPRESSION")) {
-						// Solo avanzar tokens sin generar código
-						while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals(")")) {
-							currentToken++;
-						}
+						RULE_ASSIGNMENT();
+					} else if (isInFirstSetOf(Rule.EXPRESSION)) {
+						evaluateExpression();
+					} else {
+						parsed = false;
+					}
+					// Lo que sobre del incremento se ignora hasta el paréntesis
+					while (parsed && tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
+						currentToken++;
 					}
 				}
+				List<String> increment = codeGenerator.cut(incrementCode);
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule(")");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
 
 					// Procesar el cuerpo del for
 					RULE_STATEMENT_BLOCK();
 
-					// GENERACIÓN DE CÓDIGO: Ahora generar el incremento
-					// Regresar a procesar el incremento
-					int saveCurrentToken = currentToken;
-					currentToken = incrementStart;
-
-					if (currentToken < saveCurrentToken - 1 && !tokens.get(currentToken).getValue().equals(")")) {
-						if (isAssignment()) {
-							RULE_ASSIGNMENT();
-						} else if (isInFirstSetOf("EXPRESSION")) {
-							String incrementValue = generateExpressionCode();
-							String incrementType = evaluateExpression();
-						}
-					}
-
-					// Restaurar posición
-					currentToken = saveCurrentToken;
+					// GENERACIÓN DE CÓDIGO: Ahora el incremento
+					codeGenerator.append(increment);
 
 					// GENERACIÓN DE CÓDIGO: Salto incondicional al inicio del for
 					codeGenerator.generateJump(forStartLabel);
@@ -1546,40 +1486,38 @@ public class TheParser {
 			error(1009);
 		}
 
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_SWITCH() {
-		logParseRule("--- RULE_SWITCH");
-		indentLevel++;
-		if (!isInFirstSetOf("SWITCH")) {
-			boolean foundFirst = skipUntilFirstOrFollow("SWITCH", 1100);
+		int node = openRule(Rule.SWITCH);
+		if (!isInFirstSetOf(Rule.SWITCH)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.SWITCH, 1100);
 
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping SWITCH rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("switch")) {
-			currentToken++;
-			logParseRule("switch");
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("(");
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1101);
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_SWITCH) {
+			matchToken();
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1101);
 					if (!foundFirst) {
 						// Try to recover by finding the closing parenthesis
-						while (currentToken < tokens.size() &&
-								!tokens.get(currentToken).getValue().equals(")")) {
+						while (tokens.has(currentToken) &&
+								tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
 							currentToken++;
 						}
-						if (currentToken < tokens.size()) {
+						if (tokens.has(currentToken)) {
 							currentToken++; // Skip the closing parenthesis
 							System.out.println("Recovered: Missing expression in switch");
 						} else {
 							System.out.println("Recovered: Malformed switch statement");
+							closeRule(node);
 							return;
 						}
 					} else {
@@ -1588,26 +1526,23 @@ public class TheParser {
 				} else {
 					RULE_EXPRESSION();
 				}
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule(")");
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("{")) {
-						currentToken++;
-						logParseRule("{");
-						while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals("}")) {
-							if (tokens.get(currentToken).getValue().equals("case")) {
-								currentToken++;
-								logParseRule("case");
-								if (!isInFirstSetOf("EXPRESSION")) {
-									boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1102);
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LBRACE) {
+						matchToken();
+						while (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
+							if (tokens.kind(currentToken) == TokenKind.KW_CASE) {
+								matchToken();
+								if (!isInFirstSetOf(Rule.EXPRESSION)) {
+									boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1102);
 									if (!foundFirst) {
 										// Try to recover by finding a colon
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals(":") &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.DL_COLON &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											currentToken++;
 										}
-										if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(":")) {
+										if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COLON) {
 											currentToken++;
 											System.out.println("Recovered: Missing expression in case label");
 										} else {
@@ -1620,47 +1555,45 @@ public class TheParser {
 								} else {
 									RULE_EXPRESSION();
 								}
-								if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(":")) {
-									currentToken++;
-									logParseRule(":");
+								if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COLON) {
+									matchToken();
 									try {
-										while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals("break")) {
+										while (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.KW_BREAK) {
 											RULE_BODY();
 										}
 									} catch (Exception e) {
+										resumeRule(node);
 										System.out.println("Error in case body: " + e.getMessage());
 										// Try to recover by finding a break or the next case/default
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals("break") &&
-												!tokens.get(currentToken).getValue().equals("case") &&
-												!tokens.get(currentToken).getValue().equals("default") &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.KW_BREAK &&
+												tokens.kind(currentToken) != TokenKind.KW_CASE &&
+												tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											currentToken++;
 										}
 									}
-									if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("break")) {
-										currentToken++;
-										logParseRule("break");
-										if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-											currentToken++;
-											logParseRule(";");
+									if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_BREAK) {
+										matchToken();
+										if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+											matchToken();
 										} else {
 											error(1103);
 											System.out.println("Recovered: Missing semicolon after break");
 										}
 									} else {
 										// Check if we've reached another case or default
-										if (currentToken < tokens.size() &&
-												(tokens.get(currentToken).getValue().equals("case") ||
-														tokens.get(currentToken).getValue().equals("default") ||
-														tokens.get(currentToken).getValue().equals("}"))) {
+										if (tokens.has(currentToken) &&
+												(tokens.kind(currentToken) == TokenKind.KW_CASE ||
+														tokens.kind(currentToken) == TokenKind.KW_DEFAULT ||
+														tokens.kind(currentToken) == TokenKind.DL_RBRACE)) {
 											System.out.println("Recovered: Missing break statement in case");
 										} else {
 											// Skip to the next case, default, or closing brace
-											while (currentToken < tokens.size() &&
-													!tokens.get(currentToken).getValue().equals("case") &&
-													!tokens.get(currentToken).getValue().equals("default") &&
-													!tokens.get(currentToken).getValue().equals("}")) {
+											while (tokens.has(currentToken) &&
+													tokens.kind(currentToken) != TokenKind.KW_CASE &&
+													tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+													tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 												currentToken++;
 											}
 											System.out.println("Recovered: Malformed case block");
@@ -1669,37 +1602,36 @@ public class TheParser {
 								} else {
 									error(1104);
 									// Skip to the next case, default, or closing brace
-									while (currentToken < tokens.size() &&
-											!tokens.get(currentToken).getValue().equals("case") &&
-											!tokens.get(currentToken).getValue().equals("default") &&
-											!tokens.get(currentToken).getValue().equals("}")) {
+									while (tokens.has(currentToken) &&
+											tokens.kind(currentToken) != TokenKind.KW_CASE &&
+											tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+											tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 										currentToken++;
 									}
 									System.out.println("Recovered: Missing colon after case expression");
 								}
-							} else if (tokens.get(currentToken).getValue().equals("default")) {
-								currentToken++;
-								logParseRule("default");
-								if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(":")) {
-									currentToken++;
-									logParseRule(":");
+							} else if (tokens.kind(currentToken) == TokenKind.KW_DEFAULT) {
+								matchToken();
+								if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COLON) {
+									matchToken();
 									try {
-										while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											RULE_BODY();
 										}
 									} catch (Exception e) {
+										resumeRule(node);
 										System.out.println("Error in default body: " + e.getMessage());
 										// Try to recover by finding the closing brace
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											currentToken++;
 										}
 									}
 								} else {
 									error(1105);
 									// Skip to the closing brace
-									while (currentToken < tokens.size() &&
-											!tokens.get(currentToken).getValue().equals("}")) {
+									while (tokens.has(currentToken) &&
+											tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 										currentToken++;
 									}
 									System.out.println("Recovered: Missing colon after default");
@@ -1707,18 +1639,17 @@ public class TheParser {
 							} else {
 								error(1106);
 								// Skip to the next case, default, or closing brace
-								while (currentToken < tokens.size() &&
-										!tokens.get(currentToken).getValue().equals("case") &&
-										!tokens.get(currentToken).getValue().equals("default") &&
-										!tokens.get(currentToken).getValue().equals("}")) {
+								while (tokens.has(currentToken) &&
+										tokens.kind(currentToken) != TokenKind.KW_CASE &&
+										tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+										tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 									currentToken++;
 								}
 								System.out.println("Recovered: Expected case or default in switch");
 							}
 						}
-						if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("}")) {
-							currentToken++;
-							logParseRule("}");
+						if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RBRACE) {
+							matchToken();
 						} else {
 							error(1107);
 							System.out.println("Recovered: Missing closing brace in switch statement");
@@ -1726,8 +1657,8 @@ public class TheParser {
 					} else {
 						error(1108);
 						// Try to recover by skipping to the next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("SWITCH")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.SWITCH)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Missing opening brace in switch statement");
@@ -1735,30 +1666,28 @@ public class TheParser {
 				} else {
 					error(1109);
 					// Try to recover by searching for opening brace
-					while (currentToken < tokens.size() &&
-							!tokens.get(currentToken).getValue().equals("{") &&
-							!isInFollowSetOf("SWITCH")) {
+					while (tokens.has(currentToken) &&
+							tokens.kind(currentToken) != TokenKind.DL_LBRACE &&
+							!isInFollowSetOf(Rule.SWITCH)) {
 						currentToken++;
 					}
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("{")) {
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LBRACE) {
 						System.out.println("Recovered: Missing closing parenthesis in switch");
-						currentToken++;
-						logParseRule("{");
+						matchToken();
 						// Complete switch body processing
-						while (currentToken < tokens.size() && !tokens.get(currentToken).getValue().equals("}")) {
-							if (tokens.get(currentToken).getValue().equals("case")) {
-								currentToken++;
-								logParseRule("case");
-								if (!isInFirstSetOf("EXPRESSION")) {
-									boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1112);
+						while (tokens.has(currentToken) && tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
+							if (tokens.kind(currentToken) == TokenKind.KW_CASE) {
+								matchToken();
+								if (!isInFirstSetOf(Rule.EXPRESSION)) {
+									boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1112);
 									if (!foundFirst) {
 										// Intentar recuperarse buscando un colon
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals(":") &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.DL_COLON &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											currentToken++;
 										}
-										if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(":")) {
+										if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COLON) {
 											currentToken++;
 											System.out.println("Recovered: Missing expression in case label");
 										} else {
@@ -1771,92 +1700,87 @@ public class TheParser {
 								} else {
 									RULE_EXPRESSION();
 								}
-								if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(":")) {
-									currentToken++;
-									logParseRule(":");
+								if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COLON) {
+									matchToken();
 									try {
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals("break") &&
-												!tokens.get(currentToken).getValue().equals("case") &&
-												!tokens.get(currentToken).getValue().equals("default") &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.KW_BREAK &&
+												tokens.kind(currentToken) != TokenKind.KW_CASE &&
+												tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											RULE_BODY();
 										}
 									} catch (Exception e) {
+										resumeRule(node);
 										System.out.println("Error in case body: " + e.getMessage());
 										// Recover by finding break, case, default or }
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals("break") &&
-												!tokens.get(currentToken).getValue().equals("case") &&
-												!tokens.get(currentToken).getValue().equals("default") &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.KW_BREAK &&
+												tokens.kind(currentToken) != TokenKind.KW_CASE &&
+												tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											currentToken++;
 										}
 									}
-									if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("break")) {
-										currentToken++;
-										logParseRule("break");
-										if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-											currentToken++;
-											logParseRule(";");
+									if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_BREAK) {
+										matchToken();
+										if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+											matchToken();
 										} else {
 											error(1113);
 											System.out.println("Recovered: Missing semicolon after break");
 										}
-									} else if (currentToken < tokens.size() &&
-											(tokens.get(currentToken).getValue().equals("case") ||
-													tokens.get(currentToken).getValue().equals("default") ||
-													tokens.get(currentToken).getValue().equals("}"))) {
+									} else if (tokens.has(currentToken) &&
+											(tokens.kind(currentToken) == TokenKind.KW_CASE ||
+													tokens.kind(currentToken) == TokenKind.KW_DEFAULT ||
+													tokens.kind(currentToken) == TokenKind.DL_RBRACE)) {
 										System.out.println("Recovered: Missing break statement in case");
 									}
 								} else {
 									error(1114);
 									// Skip to next case, default or }
-									while (currentToken < tokens.size() &&
-											!tokens.get(currentToken).getValue().equals("case") &&
-											!tokens.get(currentToken).getValue().equals("default") &&
-											!tokens.get(currentToken).getValue().equals("}")) {
+									while (tokens.has(currentToken) &&
+											tokens.kind(currentToken) != TokenKind.KW_CASE &&
+											tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+											tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 										currentToken++;
 									}
 									System.out.println("Recovered: Missing colon after case expression");
 								}
-							} else if (tokens.get(currentToken).getValue().equals("default")) {
-								currentToken++;
-								logParseRule("default");
-								if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(":")) {
-									currentToken++;
-									logParseRule(":");
+							} else if (tokens.kind(currentToken) == TokenKind.KW_DEFAULT) {
+								matchToken();
+								if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_COLON) {
+									matchToken();
 									try {
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals("break") &&
-												!tokens.get(currentToken).getValue().equals("case") &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.KW_BREAK &&
+												tokens.kind(currentToken) != TokenKind.KW_CASE &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											RULE_BODY();
 										}
-										if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("break")) {
-											currentToken++;
-											logParseRule("break");
-											if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-												currentToken++;
-												logParseRule(";");
+										if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_BREAK) {
+											matchToken();
+											if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+												matchToken();
 											} else {
 												error(1115);
 												System.out.println("Recovered: Missing semicolon after break in default case");
 											}
 										}
 									} catch (Exception e) {
+										resumeRule(node);
 										System.out.println("Error in default body: " + e.getMessage());
 										// Recover by finding the closing bracket
-										while (currentToken < tokens.size() &&
-												!tokens.get(currentToken).getValue().equals("}")) {
+										while (tokens.has(currentToken) &&
+												tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 											currentToken++;
 										}
 									}
 								} else {
 									error(1116);
 									// Skip to next closing bracket
-									while (currentToken < tokens.size() &&
-											!tokens.get(currentToken).getValue().equals("}")) {
+									while (tokens.has(currentToken) &&
+											tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 										currentToken++;
 									}
 									System.out.println("Recovered: Missing colon after default");
@@ -1864,18 +1788,17 @@ public class TheParser {
 							} else {
 								error(1117);
 								// Skip to next case, default or }
-								while (currentToken < tokens.size() &&
-										!tokens.get(currentToken).getValue().equals("case") &&
-										!tokens.get(currentToken).getValue().equals("default") &&
-										!tokens.get(currentToken).getValue().equals("}")) {
+								while (tokens.has(currentToken) &&
+										tokens.kind(currentToken) != TokenKind.KW_CASE &&
+										tokens.kind(currentToken) != TokenKind.KW_DEFAULT &&
+										tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 									currentToken++;
 								}
 								System.out.println("Recovered: Expected case or default in switch");
 							}
 						}
-						if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("}")) {
-							currentToken++;
-							logParseRule("}");
+						if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RBRACE) {
+							matchToken();
 						} else {
 							error(1118);
 							System.out.println("Recovered: Missing closing brace in switch statement");
@@ -1887,8 +1810,8 @@ public class TheParser {
 			} else {
 				error(1110);
 				// Try to recover by skipping to the next statement
-				while (currentToken < tokens.size() &&
-						!isInFollowSetOf("SWITCH")) {
+				while (tokens.has(currentToken) &&
+						!isInFollowSetOf(Rule.SWITCH)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Missing opening parenthesis in switch statement");
@@ -1896,36 +1819,34 @@ public class TheParser {
 		} else {
 			error(1111);
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_STATEMENT_BLOCK() {
-		logParseRule("---- RULE_STATEMENT_BLOCK");
-		indentLevel++;
-		if (!isInFirstSetOf("STATEMENT_BLOCK")) {
-			boolean foundFirst = skipUntilFirstOrFollow("STATEMENT_BLOCK", 1200);
+		int node = openRule(Rule.STATEMENT_BLOCK);
+		if (!isInFirstSetOf(Rule.STATEMENT_BLOCK)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.STATEMENT_BLOCK, 1200);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping STATEMENT_BLOCK rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("{")) {
-			currentToken++;
-			logParseRule("{");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LBRACE) {
+			matchToken();
 			try {
 				RULE_BODY();
 			} catch (Exception e) {
+				resumeRule(node);
 				System.out.println("Error in statement block body: " + e.getMessage());
 				// Try to recover by finding the closing brace
-				while (currentToken < tokens.size() &&
-						!tokens.get(currentToken).getValue().equals("}")) {
+				while (tokens.has(currentToken) &&
+						tokens.kind(currentToken) != TokenKind.DL_RBRACE) {
 					currentToken++;
 				}
 			}
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("}")) {
-				currentToken++;
-				logParseRule("}");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RBRACE) {
+				matchToken();
 			} else {
 				error(1201);
 				System.out.println("Recovered: Missing closing brace in statement block");
@@ -1934,43 +1855,43 @@ public class TheParser {
 			// Single statement
 			try {
 				if (isType()) {
+					int statement = tree.size();
 					RULE_VARIABLE();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule(";");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1202);
 						// Skip to next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("STATEMENT_BLOCK")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.STATEMENT_BLOCK)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Missing semicolon after variable declaration");
 					}
 				} else if (isAssignment()) {
+					int statement = tree.size();
 					RULE_ASSIGNMENT();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule(";");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1203);
 						// Skip to next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("STATEMENT_BLOCK")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.STATEMENT_BLOCK)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Missing semicolon after assignment");
 					}
 				} else if (isMethodCall()) {
+					int statement = tree.size();
 					RULE_CALL_METHOD();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule(";");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1204);
 						// Skip to next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("STATEMENT_BLOCK")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.STATEMENT_BLOCK)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Missing semicolon after method call");
@@ -1988,97 +1909,134 @@ public class TheParser {
 				} else if (isSwitchStatement()) {
 					RULE_SWITCH();
 				} else {
-					if (!isInFirstSetOf("EXPRESSION")) {
-						boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1205);
+					if (!isInFirstSetOf(Rule.EXPRESSION)) {
+						boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1205);
 
 						if (!foundFirst) {
 							System.out.println("Recovered: Unable to parse statement");
+							closeRule(node);
 							return;
 						}
 					}
+					int statement = tree.size();
 					RULE_EXPRESSION();
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(";")) {
-						currentToken++;
-						logParseRule(";");
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_SEMICOLON) {
+						matchTerminator(statement);
 					} else {
 						error(1205);
 						// Skip to next statement
-						while (currentToken < tokens.size() &&
-								!isInFollowSetOf("STATEMENT_BLOCK")) {
+						while (tokens.has(currentToken) &&
+								!isInFollowSetOf(Rule.STATEMENT_BLOCK)) {
 							currentToken++;
 						}
 						System.out.println("Recovered: Missing semicolon after expression");
 					}
 				}
 			} catch (Exception e) {
+				resumeRule(node);
 				System.out.println("Error in single statement: " + e.getMessage());
 				// Skip to next statement
-				while (currentToken < tokens.size() &&
-						!isInFollowSetOf("STATEMENT_BLOCK")) {
+				while (tokens.has(currentToken) &&
+						!isInFollowSetOf(Rule.STATEMENT_BLOCK)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Skip to next statement after error");
 			}
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private void RULE_EXPRESSION() {
-		logParseRule("--- RULE_EXPRESSION");
-		indentLevel++;
-		if (!isInFirstSetOf("X")) {
-			boolean foundFirst = skipUntilFirstOrFollow("X", 1400);
+		int node = openRule(Rule.EXPRESSION);
+		if (!isInFirstSetOf(Rule.EXPRESSION)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1400);
 
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping EXPRESSION rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
-		RULE_X();
-		while (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("||")) {
-			currentToken++;
-			System.out.println("--- ||");
-			if (!isInFirstSetOf("X")) {
-				boolean foundFirst = skipUntilFirstOrFollow("X", 1401);
+		parseExpression(0);
+		closeRule(node);
+	}
 
+	/**
+	 * Parses an operand and then every binary operator that binds tighter than minPower,
+	 * each with a right operand parsed at the power of the operator, so that a * b + c
+	 * groups as (a * b) + c and a - b - c as (a - b) - c. Each operator becomes the parent
+	 * of its operands in the syntax tree.
+	 *
+	 * @param minPower The binding power of the operator on the left of the operand, or 0
+	 * @return The node of the expression
+	 */
+	private int parseExpression(int minPower) {
+		int node = parseOperand();
+		while (tokens.has(currentToken)) {
+			TokenKind kind = tokens.kind(currentToken);
+			int power = BINDING_POWER[kind.ordinal()];
+			if (power <= minPower) {
+				break;
+			}
+			String operator = tokens.value(currentToken);
+			node = tree.wrap(node, SyntaxTree.Kind.BINARY, operator, currentToken, kind, tokens.line(currentToken));
+			currentNode = node;
+			currentToken++;
+			if (!isInFirstSetOf(Rule.EXPRESSION)) {
+				boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, missingOperandError(kind));
 				if (!foundFirst) {
-					System.out.println("Recovered: Missing operand after ||");
+					System.out.println("Recovered: Missing operand after " + operator);
+					addNode(SyntaxTree.Kind.ERROR, null);
+					closeRule(node);
 					break;
 				}
 			}
-			RULE_X();
+			parseExpression(power);
+			closeRule(node);
+		}
+		return node;
+	}
+
+	private static int missingOperandError(TokenKind operator) {
+		switch (operator) {
+			case OP_OR:
+				return 1401;
+			case OP_AND:
+				return 1411;
+			case OP_PLUS:
+			case OP_MINUS:
+				return 1441;
+			case OP_MUL:
+			case OP_DIV:
+				return 1451;
+			default:
+				return 1431;
 		}
-		indentLevel--;
 	}
 
 	private void RULE_INPUTLN() {
-		logParseRule("RULE_INPUTLN");
-		indentLevel++;
+		int node = openRule(Rule.INPUTLN);
 
-		if (!isInFirstSetOf("INPUTLN")) {
-			boolean foundFirst = skipUntilFirstOrFollow("INPUTLN", 1600);
+		if (!isInFirstSetOf(Rule.INPUTLN)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.INPUTLN, 1600);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping INPUTLN rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("inputln")) {
-			currentToken++;
-			logParseRule("inputln");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_INPUTLN) {
+			matchToken();
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("(");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
 
 				// GENERACIÓN DE CÓDIGO: inputln
 				codeGenerator.generateInputln();
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule(")");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
 				} else {
 					error(1602);
 					System.out.println("Recovered: Missing closing parenthesis in inputln");
@@ -2091,234 +2049,72 @@ public class TheParser {
 			error(1604);
 		}
 
-		indentLevel--;
-	}
-
-	private void RULE_X() {
-		logParseRule("---- RULE_X");
-		indentLevel++;
-		if (!isInFirstSetOf("Y")) {
-			boolean foundFirst = skipUntilFirstOrFollow("Y", 1410);
-
-			if (!foundFirst) {
-				System.out.println("Recovered: Skipping X rule");
-				return;
-			}
-		}
-		RULE_Y();
-		while (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("&&")) {
-			currentToken++;
-			logParseRule("&&");
-			if (!isInFirstSetOf("Y")) {
-				boolean foundFirst = skipUntilFirstOrFollow("Y", 1411);
-				if (!foundFirst) {
-					System.out.println("Recovered: Missing operand after &&");
-					break;
-				}
-			}
-			RULE_Y();
-		}
-		indentLevel--;
-	}
-
-	private void RULE_Y() {
-		logParseRule("RULE_Y");
-		indentLevel++;
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("!")) {
-			currentToken++;
-			logParseRule("!");
-			if (!isInFirstSetOf("Y")) {
-				boolean foundFirst = skipUntilFirstOrFollow("Y", 1420);
-				if (!foundFirst) {
-					System.out.println("Recovered: Missing operand after !");
-					return;
-				}
-			}
-			RULE_Y();
-		} else {
-			if (!isInFirstSetOf("R")) {
-				boolean foundFirst = skipUntilFirstOrFollow("R", 1421);
-
-				if (!foundFirst) {
-					System.out.println("Recovered: Skipping Y rule");
-					return;
-				}
-			}
-			RULE_R();
-		}
-		indentLevel--;
-	}
-
-	private void RULE_R() {
-		logParseRule("------ RULE_R");
-		indentLevel++;
-		if (!isInFirstSetOf("E")) {
-			boolean foundFirst = skipUntilFirstOrFollow("E", 1430);
-
-			if (!foundFirst) {
-				System.out.println("Recovered: Skipping R rule");
-				indentLevel--;
-				return;
-			}
-		}
-		RULE_E();
-		String currentVal = currentToken < tokens.size() ? tokens.get(currentToken).getValue() : "";
-		if (currentToken < tokens.size() &&
-				(currentVal.equals("<") || currentVal.equals(">") ||
-						currentVal.equals("==") || currentVal.equals("!="))) {
-			logParseRule(currentVal);
-			currentToken++;
-			if (!isInFirstSetOf("E")) {
-				boolean foundFirst = skipUntilFirstOrFollow("E", 1431);
-				if (!foundFirst) {
-					System.out.println("Recovered: Missing right operand in comparison");
-					return;
-				}
-			}
-			RULE_E();
-		}
-		indentLevel--;
+		closeRule(node);
 	}
 
-	private void RULE_E() {
-		logParseRule("RULE_E");
-		indentLevel++;
-		if (!isInFirstSetOf("A")) {
-			boolean foundFirst = skipUntilFirstOrFollow("A", 1440);
-			if (!foundFirst) {
-				System.out.println("Recovered: Skipping E rule");
-				indentLevel--;
-				return;
-			}
-		}
-		RULE_A();
-		while (currentToken < tokens.size() &&
-				(tokens.get(currentToken).getValue().equals("+") ||
-						tokens.get(currentToken).getValue().equals("-"))) {
-			String operator = tokens.get(currentToken).getValue();
-			logParseRule(operator);
-			currentToken++;
-			if (!isInFirstSetOf("A")) {
-				boolean foundFirst = skipUntilFirstOrFollow("A", 1441);
-				if (!foundFirst) {
-					System.out.println("Recovered: Missing operand after " + operator);
-					break;
-				}
-			}
-			RULE_A();
-		}
-		indentLevel--;
-	}
-
-	private void RULE_A() {
-		logParseRule("RULE_A");
-		indentLevel++;
-		if (!isInFirstSetOf("B")) {
-			boolean foundFirst = skipUntilFirstOrFollow("B", 1450);
-			if (!foundFirst) {
-				System.out.println("Recovered: Skipping A rule");
-				indentLevel--;
-				return;
-			}
-		}
-		RULE_B();
-		while (currentToken < tokens.size() &&
-				(tokens.get(currentToken).getValue().equals("*") ||
-						tokens.get(currentToken).getValue().equals("/"))) {
-			String operator = tokens.get(currentToken).getValue();
-			logParseRule(operator);
+	/**
+	 * Parses an operand: a prefix operator and its operand, a variable, a literal, a method
+	 * call or an expression in parentheses. The current token is in FIRST(EXPRESSION).
+	 *
+	 * @return The node of the operand, an ERROR node if there is none
+	 */
+	private int parseOperand() {
+		int node = tree.size();
+		if (tokens.has(currentToken) &&
+				(tokens.kind(currentToken) == TokenKind.OP_NOT || tokens.kind(currentToken) == TokenKind.OP_MINUS)) {
+			boolean not = tokens.kind(currentToken) == TokenKind.OP_NOT;
+			String operator = tokens.value(currentToken);
+			currentNode = addNode(SyntaxTree.Kind.UNARY, operator);
 			currentToken++;
-			if (!isInFirstSetOf("B")) {
-				boolean foundFirst = skipUntilFirstOrFollow("B", 1451);
+			if (!isInFirstSetOf(Rule.EXPRESSION)) {
+				boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, not ? 1420 : 1460);
 				if (!foundFirst) {
 					System.out.println("Recovered: Missing operand after " + operator);
-					break;
+					addNode(SyntaxTree.Kind.ERROR, null);
+					closeRule(node);
+					return node;
 				}
 			}
-			RULE_B();
-		}
-		indentLevel--;
-	}
-
-	private void RULE_B() {
-		logParseRule("RULE_B");
-		indentLevel++;
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("-")) {
-			currentToken++;
-			logParseRule("-");
-		}
-		if (!isInFirstSetOf("C")) {
-			boolean foundFirst = skipUntilFirstOrFollow("C", 1460);
-			if (!foundFirst) {
-				System.out.println("Recovered: Skipping B rule");
-				indentLevel--;
-				return;
-			}
-		}
-		RULE_C();
-		indentLevel--;
-	}
-
-	private void RULE_C() {
-		logParseRule("RULE_C");
-		indentLevel++;
-		if (!isInFirstSetOf("C")) {
-			boolean foundFirst = skipUntilFirstOrFollow("C", 1470);
-			if (!foundFirst) {
-				System.out.println("Recovered: Missing operand in expression");
-				return;
-			}
+			parseExpression(not ? NOT_POWER : NEGATION_POWER);
+			closeRule(node);
+			return node;
 		}
-		if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			if (currentToken + 1 < tokens.size() && tokens.get(currentToken + 1).getValue().equals("(")) {
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			if (tokens.has(currentToken + 1) && tokens.kind(currentToken + 1) == TokenKind.DL_LPAREN) {
 				RULE_CALL_METHOD();
-			}else if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("inputln")) {
-				if (currentToken + 1 < tokens.size() && tokens.get(currentToken + 1).getValue().equals("(")) {
-					RULE_INPUTLN();
-				} else {
-					logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
-					currentToken++;
-				}
 			}else {
-				logParseRule("IDENTIFIER: " + tokens.get(currentToken).getValue());
+				tree.end(addNode(SyntaxTree.Kind.VARIABLE, tokens.value(currentToken)), currentToken + 1);
 				currentToken++;
 			}
-		} else if (currentToken < tokens.size() &&
-				(tokens.get(currentToken).getType().equals("INTEGER") ||
-						tokens.get(currentToken).getType().equals("FLOAT") ||
-						tokens.get(currentToken).getType().equals("CHAR") ||
-						tokens.get(currentToken).getType().equals("STRING") ||
-						tokens.get(currentToken).getType().equals("HEXADECIMAL") ||
-						tokens.get(currentToken).getType().equals("BINARY") ||
-						(tokens.get(currentToken).getType().equals("KEYWORD") &&
-								(tokens.get(currentToken).getValue().equals("true") ||
-										tokens.get(currentToken).getValue().equals("false"))))) {
-			logParseRule("LITERAL: " + tokens.get(currentToken).getValue());
+		} else if (tokens.has(currentToken) &&
+				(tokens.kind(currentToken).isLiteral() ||
+						tokens.kind(currentToken) == TokenKind.KW_TRUE ||
+						tokens.kind(currentToken) == TokenKind.KW_FALSE)) {
+			tree.end(addNode(SyntaxTree.Kind.LITERAL, tokens.value(currentToken)), currentToken + 1);
 			currentToken++;
-		} else if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
+		} else if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+			// Los paréntesis solo agrupan: la expresión que encierran es el operando
 			currentToken++;
-			logParseRule("(");
-			if (!isInFirstSetOf("EXPRESSION")) {
-				boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1471);
+			if (!isInFirstSetOf(Rule.EXPRESSION)) {
+				boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1471);
 				if (!foundFirst) {
 					// Try to find the closing parenthesis
-					while (currentToken < tokens.size() &&
-							!tokens.get(currentToken).getValue().equals(")")) {
+					while (tokens.has(currentToken) &&
+							tokens.kind(currentToken) != TokenKind.DL_RPAREN) {
 						currentToken++;
 					}
-					if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
+					if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
 						currentToken++;
 						System.out.println("---------- ) (recovered - empty parentheses)");
 					} else {
 						System.out.println("Recovered: Missing closing parenthesis");
 					}
-					return;
+					return addNode(SyntaxTree.Kind.ERROR, null);
 				}
 			}
 			RULE_EXPRESSION();
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
 				currentToken++;
-				logParseRule(")");
 			} else {
 				error(1472);
 				System.out.println("Recovered: Missing closing parenthesis");
@@ -2327,89 +2123,75 @@ public class TheParser {
 			error(1473);
 			System.out.println("Recovered: Invalid expression element");
 		}
-		indentLevel--;
+		return node < tree.size() ? node : addNode(SyntaxTree.Kind.ERROR, null);
 	}
 
 	private void RULE_TYPE() {
-		logParseRule("----- RULE_TYPE");
-		indentLevel++;
-		if (!isInFirstSetOf("TYPE")) {
-			boolean foundFirst = skipUntilFirstOrFollow("TYPE", 300);
+		int node = openRule(Rule.TYPE);
+		if (!isInFirstSetOf(Rule.TYPE)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.TYPE, 300);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping TYPE rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
-		if (currentToken < tokens.size() &&
-				tokens.get(currentToken).getType().equals("KEYWORD") &&
-				(tokens.get(currentToken).getValue().equals("int") ||
-						tokens.get(currentToken).getValue().equals("float") ||
-						tokens.get(currentToken).getValue().equals("void") ||
-						tokens.get(currentToken).getValue().equals("char") ||
-						tokens.get(currentToken).getValue().equals("string") ||
-						tokens.get(currentToken).getValue().equals("boolean"))) {
-			logParseRule("TYPE: " + tokens.get(currentToken).getValue());
-			currentToken++;
+		if (tokens.has(currentToken) && tokens.kind(currentToken).isType()) {
+			matchToken();
 		} else {
 			error(301);
 		}
-		indentLevel--;
+		closeRule(node);
 	}
 
 	//Metodo para manejar println
 	private void RULE_PRINTLN() {
-		logParseRule("RULE_PRINTLN");
-		indentLevel++;
+		int node = openRule(Rule.PRINTLN);
 
-		if (!isInFirstSetOf("PRINTLN")) {
-			boolean foundFirst = skipUntilFirstOrFollow("PRINTLN", 1500);
+		if (!isInFirstSetOf(Rule.PRINTLN)) {
+			boolean foundFirst = skipUntilFirstOrFollow(Rule.PRINTLN, 1500);
 			if (!foundFirst) {
 				System.out.println("Recovered: Skipping PRINTLN rule");
-				indentLevel--;
+				closeRule(node);
 				return;
 			}
 		}
 
-		if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("println")) {
-			currentToken++;
-			logParseRule("println");
+		if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.KW_PRINTLN) {
+			matchToken();
 
-			if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals("(")) {
-				currentToken++;
-				logParseRule("(");
+			if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_LPAREN) {
+				matchToken();
 
 				// Capturar el valor a imprimir ANTES de procesar la expresión
 				String printValue = null;
-				if (currentToken < tokens.size()) {
-					printValue = tokens.get(currentToken).getValue();
-					logParseRule("PARAMETER: " + printValue);
+				if (tokens.has(currentToken)) {
+					printValue = tokens.value(currentToken);
 
 					// GENERACIÓN DE CÓDIGO: println
 					codeGenerator.generatePrintln(printValue);
 				}
 
 				// Procesar la expresión
-				if (!isInFirstSetOf("EXPRESSION")) {
-					boolean foundFirst = skipUntilFirstOrFollow("EXPRESSION", 1501);
+				if (!isInFirstSetOf(Rule.EXPRESSION)) {
+					boolean foundFirst = skipUntilFirstOrFollow(Rule.EXPRESSION, 1501);
 					if (!foundFirst) {
 						System.out.println("Recovered: Missing expression in println");
-						indentLevel--;
+						closeRule(node);
 						return;
 					}
 				}
 
 				RULE_EXPRESSION(); // Procesar la expresión
 
-				if (currentToken < tokens.size() && tokens.get(currentToken).getValue().equals(")")) {
-					currentToken++;
-					logParseRule(")");
+				if (tokens.has(currentToken) && tokens.kind(currentToken) == TokenKind.DL_RPAREN) {
+					matchToken();
 				} else {
 					error(1502);
 					// Recovery: buscar el siguiente token válido
-					while (currentToken < tokens.size() &&
-							!tokens.get(currentToken).getValue().equals(";") &&
-							!isInFollowSetOf("PRINTLN")) {
+					while (tokens.has(currentToken) &&
+							tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+							!isInFollowSetOf(Rule.PRINTLN)) {
 						currentToken++;
 					}
 					System.out.println("Recovered: Missing closing parenthesis in println");
@@ -2417,9 +2199,9 @@ public class TheParser {
 			} else {
 				error(1503);
 				// Recovery logic
-				while (currentToken < tokens.size() &&
-						!tokens.get(currentToken).getValue().equals(";") &&
-						!isInFollowSetOf("PRINTLN")) {
+				while (tokens.has(currentToken) &&
+						tokens.kind(currentToken) != TokenKind.DL_SEMICOLON &&
+						!isInFollowSetOf(Rule.PRINTLN)) {
 					currentToken++;
 				}
 				System.out.println("Recovered: Missing opening parenthesis in println");
@@ -2428,23 +2210,16 @@ public class TheParser {
 			error(1504);
 		}
 
-		indentLevel--;
+		closeRule(node);
 	}
 
 	private boolean isPrintlnStatement() {
-		return currentToken < tokens.size() &&
-				tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("println");
+		return tokens.has(currentToken) &&
+				tokens.kind(currentToken) == TokenKind.KW_PRINTLN;
 	}
 
 	private boolean isType() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				(tokens.get(currentToken).getValue().equals("int") ||
-						tokens.get(currentToken).getValue().equals("float") ||
-						tokens.get(currentToken).getValue().equals("void") ||
-						tokens.get(currentToken).getValue().equals("char") ||
-						tokens.get(currentToken).getValue().equals("string") ||
-						tokens.get(currentToken).getValue().equals("boolean"));
+		return tokens.kind(currentToken).isType();
 	}
 
 	private boolean isMethodDeclaration() {
@@ -2452,9 +2227,9 @@ public class TheParser {
 		try {
 			if (isType()) {
 				currentToken++;
-				if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
+				if (tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
 					currentToken++;
-					return tokens.get(currentToken).getValue().equals("(");
+					return tokens.kind(currentToken) == TokenKind.DL_LPAREN;
 				}
 			}
 			return false;
@@ -2464,9 +2239,9 @@ public class TheParser {
 	}
 
 	private boolean isAssignment() {
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			if (currentToken + 1 < tokens.size() &&
-					tokens.get(currentToken + 1).getValue().equals("=")) {
+		if (tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			if (tokens.has(currentToken + 1) &&
+					tokens.kind(currentToken + 1) == TokenKind.OP_ASSIGN) {
 				return true;
 			}
 		}
@@ -2474,9 +2249,9 @@ public class TheParser {
 	}
 
 	private boolean isMethodCall() {
-		if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			if (currentToken + 1 < tokens.size() &&
-					tokens.get(currentToken + 1).getValue().equals("(")) {
+		if (tokens.kind(currentToken) == TokenKind.IDENTIFIER) {
+			if (tokens.has(currentToken + 1) &&
+					tokens.kind(currentToken + 1) == TokenKind.DL_LPAREN) {
 				return true;
 			}
 		}
@@ -2484,266 +2259,205 @@ public class TheParser {
 	}
 
 	private boolean isReturnStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("return");
+		return tokens.kind(currentToken) == TokenKind.KW_RETURN;
 	}
 
 	private boolean isWhileStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("while");
+		return tokens.kind(currentToken) == TokenKind.KW_WHILE;
 	}
 
 	private boolean isIfStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("if");
+		return tokens.kind(currentToken) == TokenKind.KW_IF;
 	}
 
 	private boolean isDoStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("do");
+		return tokens.kind(currentToken) == TokenKind.KW_DO;
 	}
 
 	private boolean isForStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("for");
+		return tokens.kind(currentToken) == TokenKind.KW_FOR;
 	}
 
 	private boolean isSwitchStatement() {
-		return tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("switch");
+		return tokens.kind(currentToken) == TokenKind.KW_SWITCH;
 	}
 
 	private boolean isInputlnStatement() {
-		return currentToken < tokens.size() &&
-				tokens.get(currentToken).getType().equals("KEYWORD") &&
-				tokens.get(currentToken).getValue().equals("inputln");
+		return tokens.has(currentToken) &&
+				tokens.kind(currentToken) == TokenKind.KW_INPUTLN;
 	}
 
 	public TheSemantic getSemantic() {
 		return semantic;
 	}
 
+	/**
+	 * Parses an expression into the syntax tree, then checks its types with the semantic
+	 * cube and generates its code from the tree, operands before operators, so the value
+	 * of the expression is left on the stack.
+	 *
+	 * @return The type of the expression, or null if it has errors
+	 */
 	private String evaluateExpression() {
-		int saveToken = currentToken;
-
-		// Primero hacer el análisis de tipos sin mover currentToken
-		String resultType = analyzeExpressionForType();
-
-		// Restaurar posición y hacer el parsing normal
-		currentToken = saveToken;
+		int node = tree.size();
 		RULE_EXPRESSION();
-
-		return resultType;
+		return checkExpression(node);
 	}
 
-	private String analyzeExpressionForType() {
-		int pos = currentToken;
-
-		// Buscar operadores de comparación en los próximos tokens
-		while (pos < tokens.size() && pos < currentToken + 10) {
-			String tokenValue = tokens.get(pos).getValue();
-
-			// Si encontramos un operador de comparación, el resultado es boolean
-			if (tokenValue.equals(">") || tokenValue.equals("<") ||
-					tokenValue.equals("==") || tokenValue.equals("!=") ||
-					tokenValue.equals(">=") || tokenValue.equals("<=")) {
-				return "boolean";
-			}
-
-			// Si encontramos un operador lógico, el resultado es boolean
-			if (tokenValue.equals("&&") || tokenValue.equals("||")) {
-				return "boolean";
-			}
-
-			// Si encontramos delimitadores, parar
-			if (tokenValue.equals(")") || tokenValue.equals(";") || tokenValue.equals(",")) {
-				break;
-			}
-
-			pos++;
-		}
-
-		// Si no hay operadores de comparación, evaluar el primer token
-		if (currentToken < tokens.size()) {
-			String tokenType = tokens.get(currentToken).getType();
-			String tokenValue = tokens.get(currentToken).getValue();
-
-			switch (tokenType) {
-				case "INTEGER":
-					return "int";
-				case "FLOAT":
-					return "float";
-				case "STRING":
-					return "string";
-				case "CHAR":
-					return "char";
-				case "KEYWORD":
-					if (tokenValue.equals("true") || tokenValue.equals("false")) {
-						return "boolean";
-					}
-					break;
-				case "IDENTIFIER":
-					// Buscar el tipo de la variable en la tabla de símbolos
-					return semantic.checkVariableUsage(tokenValue, tokens.get(currentToken).getLineNumber());
-			}
+	/**
+	 * Checks the types of an expression of the syntax tree and generates its code.
+	 *
+	 * @param node The node of the expression
+	 * @return The type of the expression, or null if it has errors
+	 */
+	private String checkExpression(int node) {
+		int child = tree.getFirstChild(node);
+		switch (tree.getKind(node)) {
+			case EXPRESSION:
+				return child == SyntaxTree.NONE ? null : checkExpression(child);
+			case VARIABLE:
+				codeGenerator.generateLoad(tree.getText(node));
+				return semantic.checkVariableUsage(tree.getText(node), tree.getLine(node));
+			case LITERAL:
+				codeGenerator.generateLiteral(tree.getText(node));
+				return literalType(tree.getTokenKind(node));
+			case UNARY:
+				// GENERACIÓN DE CÓDIGO: -x se evalúa como 0 - x
+				if (tree.getTokenKind(node) == TokenKind.OP_MINUS) {
+					codeGenerator.generateLiteral("0");
+				}
+				// Operador unario: el operando se verifica como ambos lados de la operación
+				String type = checkExpression(child);
+				return checkOperator(type, type, tree.getText(node), tree.getLine(node));
+			case BINARY:
+				String leftType = checkExpression(child);
+				String rightType = checkExpression(tree.getNextSibling(child));
+				return checkOperator(leftType, rightType, tree.getText(node), tree.getLine(node));
+			default:
+				// Las llamadas no tienen tipo ni generan código
+				return null;
 		}
-
-		return "int"; // Valor por defecto
 	}
 
-	private String evaluateComplexExpression(int startPos) {
-		// Buscar operadores en la expresión para determinar el tipo resultado
-		int pos = startPos;
-		String leftType = null;
-		String operator = null;
-		String rightType = null;
-
-		// Obtener el primer operando
-		if (pos < tokens.size()) {
-			String tokenType = tokens.get(pos).getType();
-			String tokenValue = tokens.get(pos).getValue();
-
-			switch (tokenType) {
-				case "INTEGER":
-					leftType = "int";
-					break;
-				case "FLOAT":
-					leftType = "float";
-					break;
-				case "STRING":
-					leftType = "string";
-					break;
-				case "CHAR":
-					leftType = "char";
-					break;
-				case "KEYWORD":
-					if (tokenValue.equals("true") || tokenValue.equals("false")) {
-						leftType = "boolean";
-					}
-					break;
-				case "IDENTIFIER":
-					leftType = semantic.checkVariableUsage(tokenValue, tokens.get(pos).getLineNumber());
-					break;
-			}
-			pos++;
-		}
-
-		// Buscar operador
-		while (pos < tokens.size()) {
-			String tokenValue = tokens.get(pos).getValue();
-			if (isComparisonOperator(tokenValue) || isArithmeticOperator(tokenValue) || isLogicalOperator(tokenValue)) {
-				operator = tokenValue;
-				pos++;
+	/**
+	 * Checks an operator whose operands are already on the stack, and generates its operation.
+	 *
+	 * @return The type of the result, or null if the operands do not fit the operator
+	 */
+	private String checkOperator(String leftType, String rightType, String operator, int line) {
+		switch (operator) {
+			case "+": case "-": case "*": case "/":
+				codeGenerator.generateArithmeticOperation(operator);
+				break;
+			case "&&": case "||": case "!":
+				codeGenerator.generateLogicalOperation(operator);
+				break;
+			default:
+				codeGenerator.generateComparisonOperation(operator);
 				break;
-			}
-			pos++;
-		}
-
-		// Si no hay operador, retornar el tipo del operando izquierdo
-		if (operator == null) {
-			return leftType;
 		}
+		return semantic.checkOperation(leftType, rightType, operator, line);
+	}
 
-		// Obtener el segundo operando
-		if (pos < tokens.size()) {
-			String tokenType = tokens.get(pos).getType();
-			String tokenValue = tokens.get(pos).getValue();
-
-			switch (tokenType) {
-				case "INTEGER":
-					rightType = "int";
-					break;
-				case "FLOAT":
-					rightType = "float";
-					break;
-				case "STRING":
-					rightType = "string";
-					break;
-				case "CHAR":
-					rightType = "char";
-					break;
-				case "KEYWORD":
-					if (tokenValue.equals("true") || tokenValue.equals("false")) {
-						rightType = "boolean";
-					}
-					break;
-				case "IDENTIFIER":
-					rightType = semantic.checkVariableUsage(tokenValue, tokens.get(pos).getLineNumber());
-					break;
-			}
-		}
-		// Determinar el tipo resultado basado en el operador
-		if (isComparisonOperator(operator)) {
-			return "boolean"; // Los operadores de comparación siempre retornan boolean
-		} else if (isLogicalOperator(operator)) {
-			return "boolean"; // Los operadores lógicos siempre retornan boolean
-		} else if (isArithmeticOperator(operator)) {
-			// Para operadores aritméticos, usar el cubo semántico
-			return semantic.checkOperation(leftType, rightType, operator, tokens.get(startPos).getLineNumber());
+	private static String literalType(TokenKind kind) {
+		switch (kind) {
+			case FLOAT:
+				return "float";
+			case STRING:
+				return "string";
+			case CHAR:
+				return "char";
+			case KW_TRUE:
+			case KW_FALSE:
+				return "boolean";
+			default:
+				return "int";
 		}
-
-		return leftType; // Por defecto, retornar el tipo del operando izquierdo
 	}
 
-	// Métodos auxiliares para detectar tipos de operadores
-	private boolean isLogicalOperator(String op) {
-		return op.equals("&&") || op.equals("||") || op.equals("!");
+	/**
+	 * @return The syntax tree built by {@link #run()}
+	 */
+	public SyntaxTree getSyntaxTree() {
+		return tree;
 	}
 
-	private void generateConditionCode() {
-		// Guardar posición actual para análisis
-		int startPos = currentToken;
-
-		// Para x > 0, necesitamos generar:
-		// lod x, 0    (cargar x)
-		// lit 0, 0    (cargar 0)
-		// opr 11, 0   (operación mayor que)
-
-		if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			String leftOperand = tokens.get(currentToken).getValue();
-			codeGenerator.generateLoad(leftOperand); // lod x, 0
-
-			// Buscar el operador
-			currentToken++; // Saltar identificador
-			if (currentToken < tokens.size() && isComparisonOperator(tokens.get(currentToken).getValue())) {
-				String operator = tokens.get(currentToken).getValue();
+	/**
+	 * @return The syntax errors found by {@link #run()}, in the order they were reported
+	 */
+	public Vector<String> getSyntaxErrors() {
+		return syntaxErrors;
+	}
 
-				currentToken++; // Saltar operador
-				if (currentToken < tokens.size()) {
-					String rightOperand = tokens.get(currentToken).getValue();
+	/**
+	 * Adds the node of a rule under the current node, and makes it the current node until
+	 * {@link #closeRule(int)}. Every exit of the rule closes it.
+	 *
+	 * @return The new node
+	 */
+	private int openRule(Rule rule) {
+		currentNode = addNode(rule == Rule.EXPRESSION ? SyntaxTree.Kind.EXPRESSION : SyntaxTree.Kind.RULE, rule.name());
+		return currentNode;
+	}
 
-					// Si es un literal, generar LIT
-					if (tokens.get(currentToken).getType().equals("INTEGER") ||
-							tokens.get(currentToken).getType().equals("FLOAT")) {
-						codeGenerator.generateLiteral(rightOperand); // lit 0, 0
-					} else if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-						codeGenerator.generateLoad(rightOperand); // lod rightVar, 0
-					}
+	/**
+	 * Ends the span of a node at the current token, and makes its parent the current node.
+	 */
+	private void closeRule(int node) {
+		tree.end(node, currentToken);
+		currentNode = tree.getParent(node);
+	}
 
-					// Generar la operación de comparación
-					codeGenerator.generateComparisonOperation(operator); // opr 11, 0
-				}
-			}
-		}
+	/**
+	 * Makes a rule the current node again, after an exception left one of its inner rules open.
+	 */
+	private void resumeRule(int node) {
+		currentNode = node;
+	}
 
-		// Restaurar posición para el parsing normal
-		currentToken = startPos;
+	/**
+	 * Adds the current token under the current node, without moving past it.
+	 */
+	private void addToken() {
+		tree.end(addNode(SyntaxTree.Kind.TOKEN, tokens.value(currentToken)), currentToken + 1);
 	}
 
-	// Metodo auxiliar para detectar operadores de comparación
-	private boolean isComparisonOperator(String op) {
-		return op.equals(">") || op.equals("<") || op.equals("==") || op.equals("!=") ||
-				op.equals(">=") || op.equals("<=");
+	/**
+	 * Adds the current token under the current node and moves past it.
+	 */
+	private void matchToken() {
+		addToken();
+		currentToken++;
 	}
 
-	public Vector<String> getParseTreeLog() {
-		return parseTreeLog;
+	/**
+	 * Adds the current token, the semicolon that ends a statement, under the node of the
+	 * statement, and moves past it.
+	 *
+	 * @param statement The node of the statement, already closed
+	 */
+	private void matchTerminator(int statement) {
+		int node = tree.add(statement, SyntaxTree.Kind.TOKEN, tokens.value(currentToken), currentToken,
+				tokens.kind(currentToken), tokens.line(currentToken));
+		System.out.println(tree.getLabel(node));
+		currentToken++;
+		tree.end(node, currentToken);
+		tree.end(statement, currentToken);
 	}
 
-	private void logParseRule(String ruleName) {
-		String indent = "  ".repeat(indentLevel);
-		parseTreeLog.add(indent + ruleName);
-		System.out.println(ruleName);
+	/**
+	 * Adds a node at the current token to the syntax tree, under the current node.
+	 *
+	 * @return The new node
+	 */
+	private int addNode(SyntaxTree.Kind kind, String text) {
+		TokenKind tokenKind = tokens.has(currentToken) ? tokens.kind(currentToken) : null;
+		int line = tokenKind != null ? tokens.line(currentToken) : 0;
+		int node = tree.add(currentNode, kind, text, currentToken, tokenKind, line);
+		if (text != null) {
+			System.out.println(tree.getLabel(node));
+		}
+		return node;
 	}
 	//Getter para el generador de código
 	public TheCodeGenerator getCodeGenerator() {
@@ -2755,75 +2469,4 @@ public class TheParser {
 		codeGenerator.setSymbolTable(semantic.getSymbolTable());
 		return codeGenerator.generateCode();
 	}
-
-	//Metodo para generar código de expresiones
-	private String generateExpressionCode() {
-		int startPos = currentToken;
-
-		// Para expresiones como "x - 1", necesitamos generar:
-		// lod x, 0    (cargar x)
-		// lit 1, 0    (cargar 1)
-		// opr 3, 0    (operación resta)
-
-		if (currentToken < tokens.size()) {
-			String tokenType = tokens.get(currentToken).getType();
-			String tokenValue = tokens.get(currentToken).getValue();
-			// Caso simple: literal directo
-			if (tokenType.equals("INTEGER") || tokenType.equals("FLOAT") ||
-					tokenType.equals("STRING") || tokenType.equals("CHAR")) {
-				return tokenValue;
-			}
-			// Caso simple: variable directa
-			if (tokenType.equals("IDENTIFIER") &&
-					(currentToken + 1 >= tokens.size() ||
-							(!isArithmeticOperator(tokens.get(currentToken + 1).getValue())))) {
-				return tokenValue;
-			}
-			// Caso complejo: expresión aritmética (ej: x - 1)
-			if (tokenType.equals("IDENTIFIER") &&
-					currentToken + 1 < tokens.size() &&
-					isArithmeticOperator(tokens.get(currentToken + 1).getValue())) {
-				generateArithmeticExpression();
-				return null; // El código ya fue generado
-			}
-			// Casos booleanos
-			if (tokenType.equals("KEYWORD")) {
-				if (tokenValue.equals("true") || tokenValue.equals("false")) {
-					return tokenValue;
-				}
-			}
-		}
-		return null;
-	}
-
-	//Metodo para generar expresiones aritméticas
-	private void generateArithmeticExpression() {
-		// Para x - 1:
-		if (currentToken < tokens.size() && tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-			String leftOperand = tokens.get(currentToken).getValue();
-			codeGenerator.generateLoad(leftOperand); // lod x, 0
-			currentToken++; // Saltar identificador
-			if (currentToken < tokens.size() && isArithmeticOperator(tokens.get(currentToken).getValue())) {
-				String operator = tokens.get(currentToken).getValue();
-				currentToken++; // Saltar operador
-				if (currentToken < tokens.size()) {
-					String rightOperand = tokens.get(currentToken).getValue();
-					// Si es un literal, generar LIT
-					if (tokens.get(currentToken).getType().equals("INTEGER") ||
-							tokens.get(currentToken).getType().equals("FLOAT")) {
-						codeGenerator.generateLiteral(rightOperand); // lit 1, 0
-					} else if (tokens.get(currentToken).getType().equals("IDENTIFIER")) {
-						codeGenerator.generateLoad(rightOperand); // lod rightVar, 0
-					}
-					// Generar la operación aritmética
-					codeGenerator.generateArithmeticOperation(operator); // opr 3, 0 (resta)
-				}
-			}
-		}
-	}
-
-	//Metodo auxiliar para detectar operadores aritméticos
-	private boolean isArithmeticOperator(String op) {
-		return op.equals("+") || op.equals("-") || op.equals("*") || op.equals("/");
-	}
-}
\ No newline at end of file
+}
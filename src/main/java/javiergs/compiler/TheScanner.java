@@ -0,0 +1,33 @@
+package javiergs.compiler;
+
+/**
+ * TheScanner.java
+ * ---------------
+ * A line scanner that can replace the interpreted DFA loop of {@link TheLexer}.
+ * Implementations are generated from the lexer's {@link Automata} by
+ * {@link TheScannerGenerator} and must produce exactly the same tokens.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public interface TheScanner {
+
+	/**
+	 * Scans one line of source text and appends its tokens. The line starts in the state
+	 * the previous one ended in, so that block comments can span lines.
+	 *
+	 * @param text       The text that contains the line
+	 * @param from       The index of the first character of the line
+	 * @param to         The index after the last character of the line, before its terminator
+	 * @param lineNumber The line number in the source
+	 * @param entryState The state at the beginning of the line, {@link TheLexer#LINE_CODE} or
+	 *                   {@link TheLexer#LINE_BLOCK_COMMENT}
+	 * @param tokens     The token buffer to append to
+	 * @return The state at the end of the line
+	 */
+	int scan(CharSequence text, int from, int to, int lineNumber, int entryState, TokenBuffer tokens);
+
+}
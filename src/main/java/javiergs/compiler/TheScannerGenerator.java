@@ -0,0 +1,373 @@
+package javiergs.compiler;
+
+import javax.tools.*;
+import java.io.*;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.net.URI;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+
+/**
+ * TheScannerGenerator.java
+ * ---------------
+ * Compiles the lexer's {@link Automata} ahead of time into a specialized Java scanner.
+ * The generated class implements {@link TheScanner} with a single scan method where the
+ * DFA is a nested switch on state and character, the special cases of the interpreted
+ * loop in {@link TheLexer} are resolved per state, and tokens are emitted directly with
+ * their type names as constants.
+ *
+ * The source can be written at build time with {@link #main(String[])}, or compiled in
+ * memory and defined as a hidden class at runtime with {@link #load()}.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class TheScannerGenerator {
+
+    public static final String PACKAGE_NAME = "javiergs.compiler";
+    public static final String CLASS_NAME = "TheGeneratedScanner";
+
+    private final Automata dfa;
+
+    /**
+     * Constructs a generator for a compiled automaton built by {@link TheLexer}.
+     *
+     * @param dfa The compiled (and possibly minimized) lexer DFA
+     */
+    public TheScannerGenerator(Automata dfa) {
+        this.dfa = dfa;
+    }
+
+    /**
+     * Generates the Java source of the scanner.
+     *
+     * @param className The simple name of the generated class
+     * @return The source code of a class in package javiergs.compiler
+     */
+    public String generate(String className) {
+        int start = dfa.getStateId(TheLexer.START_STATE);
+        StringBuilder src = new StringBuilder();
+        src.append("package ").append(PACKAGE_NAME).append(";\n\n");
+        src.append("/**\n");
+        src.append(" * Generated by TheScannerGenerator from the lexer DFA (")
+                .append(dfa.getStateCount()).append(" states). Do not edit.\n");
+        src.append(" */\n");
+        src.append("public final class ").append(className).append(" implements TheScanner {\n\n");
+
+        // scan
+        src.append("    @Override\n");
+        src.append("    public int scan(CharSequence text, int from, int to, int lineNumber, int entryState, TokenBuffer tokens) {\n");
+        src.append("        int state = ").append(start).append(";\n");
+        src.append("        int start = from;\n");
+        src.append("        int index = from;\n");
+        src.append("        boolean inBlockComment = entryState == TheLexer.LINE_BLOCK_COMMENT;\n");
+        src.append("        while (index < to) {\n");
+
+        // Comment bodies are skipped with a bulk search for their end
+        src.append("            if (inBlockComment) {\n");
+        src.append("                int close = TheLexer.indexOfCommentEnd(text, index, to);\n");
+        src.append("                index = close < 0 ? to : close + 2;\n");
+        src.append("                start = index;\n");
+        src.append("                inBlockComment = close < 0;\n");
+        src.append("                continue;\n");
+        src.append("            }\n");
+        src.append("            char c = text.charAt(index);\n");
+
+        // Block comments end the pending lexeme, except inside string and char literals
+        src.append("            if (c == '/' && index + 1 < to && text.charAt(index + 1) == '*') {\n");
+        src.append("                switch (state) {\n");
+        src.append("                    ").append(caseLabels(TheLexer.STRING_BODY_STATE, TheLexer.CHAR_OPEN_STATE,
+                TheLexer.CHAR_BODY_STATE)).append("\n");
+        src.append("                        break;\n");
+        src.append("                    default:\n");
+        src.append("                        if (index > start) {\n");
+        src.append("                            accept(state, text, start, index, lineNumber, tokens);\n");
+        src.append("                        }\n");
+        src.append("                        state = ").append(start).append(";\n");
+        src.append("                        inBlockComment = true;\n");
+        src.append("                        index += 2;\n");
+        src.append("                        continue;\n");
+        src.append("                }\n");
+        src.append("            }\n");
+
+        // States that consume operators, delimiters and spaces
+        src.append("            boolean pass;\n");
+        src.append("            switch (state) {\n");
+        src.append("                ").append(caseLabels(TheLexer.STRING_BODY_STATE, TheLexer.CHAR_OPEN_STATE,
+                TheLexer.CHAR_BODY_STATE, TheLexer.INT_EXPONENT_STATE)).append("\n");
+        src.append("                    pass = true;\n");
+        src.append("                    break;\n");
+        src.append("                ").append(caseLabels(TheLexer.ZERO_STATE, TheLexer.DECIMAL_STATE,
+                TheLexer.OCTAL_STATE)).append("\n");
+        src.append("                    pass = c == '.';\n");
+        src.append("                    break;\n");
+        src.append("                ").append(caseLabels(TheLexer.FLOAT_EXPONENT_STATE)).append("\n");
+        src.append("                    pass = c == '-';\n");
+        src.append("                    break;\n");
+        src.append("                default:\n");
+        src.append("                    pass = false;\n");
+        src.append("            }\n");
+
+        // Separators end the pending lexeme
+        src.append("            if (!pass) {\n");
+        src.append("                switch (c) {\n");
+        src.append("                    case '=': case '+': case '-': case '*': case '/': case '<': case '>': case '!': case '&': case '|': case '%':\n");
+        src.append("                        if (index > start) {\n");
+        src.append("                            accept(state, text, start, index, lineNumber, tokens);\n");
+        src.append("                        }\n");
+        src.append("                        if (index + 1 < to && isDoubleOperator(c, text.charAt(index + 1))) {\n");
+        src.append("                            tokens.add(TokenKind.ofOperator(c, text.charAt(index + 1)), index, 2, lineNumber);\n");
+        src.append("                            index += 2;\n");
+        src.append("                        } else if (c == '/' && index + 1 < to && text.charAt(index + 1) == '/') {\n");
+        src.append("                            index = to;\n");
+        src.append("                            start = to;\n");
+        src.append("                            continue;\n");
+        src.append("                        } else {\n");
+        src.append("                            tokens.add(TokenKind.ofSymbol(c), index, 1, lineNumber);\n");
+        src.append("                            index++;\n");
+        src.append("                        }\n");
+        src.append("                        state = ").append(start).append(";\n");
+        src.append("                        start = index;\n");
+        src.append("                        continue;\n");
+        src.append("                    case ',': case ';': case '.': case '(': case ')': case '{': case '}': case '[': case ']': case ':':\n");
+        src.append("                        if (index > start) {\n");
+        src.append("                            accept(state, text, start, index, lineNumber, tokens);\n");
+        src.append("                        }\n");
+        src.append("                        tokens.add(TokenKind.ofSymbol(c), index, 1, lineNumber);\n");
+        src.append("                        state = ").append(start).append(";\n");
+        src.append("                        index++;\n");
+        src.append("                        start = index;\n");
+        src.append("                        continue;\n");
+        src.append("                    case ' ': case '\\t': case '\\n':\n");
+        src.append("                        if (index > start) {\n");
+        src.append("                            accept(state, text, start, index, lineNumber, tokens);\n");
+        src.append("                        }\n");
+        src.append("                        state = ").append(start).append(";\n");
+        src.append("                        index++;\n");
+        src.append("                        start = index;\n");
+        src.append("                        continue;\n");
+        src.append("                    case '\"': case '\\'':\n");
+        src.append("                        if (index > start) {\n");
+        src.append("                            accept(state, text, start, index, lineNumber, tokens);\n");
+        src.append("                            state = ").append(start).append(";\n");
+        src.append("                            start = index;\n");
+        src.append("                        }\n");
+        src.append("                        break;\n");
+        src.append("                    default:\n");
+        src.append("                        break;\n");
+        src.append("                }\n");
+        src.append("            }\n");
+
+        // DFA step, on the Unicode symbol of the code point outside ASCII
+        src.append("            int symbol = c;\n");
+        src.append("            int width = 1;\n");
+        src.append("            if (c >= ").append(Automata.ALPHABET_SIZE).append(") {\n");
+        src.append("                int codePoint = TheLexer.codePointAt(text, index);\n");
+        src.append("                symbol = Automata.symbolOf(codePoint);\n");
+        src.append("                width = TheLexer.charCount(text, index, codePoint);\n");
+        src.append("            }\n");
+        src.append("            switch (state) {\n");
+        for (int state = 1; state < dfa.getStateCount(); state++) {
+            appendStep(src, state);
+        }
+        src.append("                default:\n");
+        src.append("                    break;\n");
+        src.append("            }\n");
+
+        // Strings and chars are emitted as soon as they close
+        src.append("            if (pass) {\n");
+        src.append("                switch (state) {\n");
+        for (String name : new String[]{TheLexer.STRING_END_STATE, TheLexer.CHAR_END_STATE}) {
+            int state = dfa.getStateId(name);
+            src.append("                    case ").append(state).append(":\n");
+            src.append("                        tokens.add(").append(kind(dfa.getAcceptStateName(state)))
+                    .append(", start, index + 1 - start, lineNumber);\n");
+            src.append("                        state = ").append(start).append(";\n");
+            src.append("                        start = index + 1;\n");
+            src.append("                        break;\n");
+        }
+        src.append("                    default:\n");
+        src.append("                        break;\n");
+        src.append("                }\n");
+        src.append("            }\n");
+        src.append("            index += width;\n");
+        src.append("        }\n");
+        src.append("        if (!inBlockComment && index > start) {\n");
+        src.append("            accept(state, text, start, index, lineNumber, tokens);\n");
+        src.append("        }\n");
+        src.append("        return inBlockComment ? TheLexer.LINE_BLOCK_COMMENT : TheLexer.LINE_CODE;\n");
+        src.append("    }\n\n");
+
+        // accept
+        src.append("    private static void accept(int state, CharSequence text, int start, int end, int lineNumber, TokenBuffer tokens) {\n");
+        src.append("        switch (state) {\n");
+        for (int state = 1; state < dfa.getStateCount(); state++) {
+            String name = dfa.getAcceptStateName(state);
+            if (name == null) {
+                continue;
+            }
+            src.append("            case ").append(state).append(":\n");
+            if (name.equals("IDENTIFIER")) {
+                src.append("                tokens.add(TokenKind.ofIdentifier(text, start, end), start, end - start, lineNumber);\n");
+            } else {
+                src.append("                tokens.add(").append(kind(name)).append(", start, end - start, lineNumber);\n");
+            }
+            src.append("                break;\n");
+        }
+        src.append("            default:\n");
+        src.append("                tokens.add(").append(kind("ERROR")).append(", start, end - start, lineNumber);\n");
+        src.append("        }\n");
+        src.append("    }\n\n");
+
+        // isDoubleOperator
+        src.append("    private static boolean isDoubleOperator(char first, char second) {\n");
+        src.append("        switch (second) {\n");
+        src.append("            case '=':\n");
+        src.append("                return first == '=' || first == '!' || first == '>' || first == '<' || first == '+' ||\n");
+        src.append("                        first == '-' || first == '*' || first == '/' || first == '%';\n");
+        src.append("            case '+': case '-': case '|': case '&':\n");
+        src.append("                return first == second;\n");
+        src.append("            default:\n");
+        src.append("                return false;\n");
+        src.append("        }\n");
+        src.append("    }\n\n");
+        src.append("}\n");
+        return src.toString();
+    }
+
+    /**
+     * Appends the inner switch on the input character for one state.
+     */
+    private void appendStep(StringBuilder src, int state) {
+        LinkedHashMap<Integer, List<Character>> byTarget = new LinkedHashMap<>();
+        for (char symbol = 0; symbol < Automata.SYMBOL_COUNT; symbol++) {
+            int target = dfa.nextSymbol(state, symbol);
+            if (target != Automata.DEAD) {
+                byTarget.computeIfAbsent(target, k -> new ArrayList<>()).add(symbol);
+            }
+        }
+        src.append("                case ").append(state).append(":\n");
+        if (byTarget.isEmpty()) {
+            src.append("                    state = ").append(Automata.DEAD).append(";\n");
+            src.append("                    break;\n");
+            return;
+        }
+        src.append("                    switch (symbol) {\n");
+        for (Map.Entry<Integer, List<Character>> entry : byTarget.entrySet()) {
+            src.append("                        ");
+            for (char symbol : entry.getValue()) {
+                src.append("case ").append(charLiteral(symbol)).append(": ");
+            }
+            src.append("\n");
+            src.append("                            state = ").append(entry.getKey()).append(";\n");
+            src.append("                            break;\n");
+        }
+        src.append("                        default:\n");
+        src.append("                            state = ").append(Automata.DEAD).append(";\n");
+        src.append("                    }\n");
+        src.append("                    break;\n");
+    }
+
+    /**
+     * Gets the source of the token kind constant for a token type name.
+     */
+    private String kind(String type) {
+        return "TokenKind." + TokenKind.ofType(type).name();
+    }
+
+    private String caseLabels(String... states) {
+        StringBuilder labels = new StringBuilder();
+        TreeSet<Integer> ids = new TreeSet<>();
+        for (String name : states) {
+            ids.add(dfa.getStateId(name));
+        }
+        for (int id : ids) {
+            labels.append("case ").append(id).append(": ");
+        }
+        return labels.toString().trim();
+    }
+
+    private static String charLiteral(char symbol) {
+        if (symbol == '\'' || symbol == '\\') {
+            return "'\\" + symbol + "'";
+        }
+        if (symbol >= 32 && symbol <= 126) {
+            return "'" + symbol + "'";
+        }
+        return String.valueOf((int) symbol);
+    }
+
+    /**
+     * Generates the scanner, compiles it in memory and defines it as a hidden class.
+     * Requires a JDK at runtime; the classes of this package must be on the class path.
+     *
+     * @return A new instance of the generated scanner
+     * @throws IllegalStateException If no compiler is available or the source does not compile
+     */
+    public TheScanner load() {
+        JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+        if (compiler == null) {
+            throw new IllegalStateException("No Java compiler available at runtime, use the build-time generator");
+        }
+        String source = generate(CLASS_NAME);
+        Map<String, ByteArrayOutputStream> classes = new HashMap<>();
+        StringWriter diagnostics = new StringWriter();
+        StandardJavaFileManager standard = compiler.getStandardFileManager(null, null, StandardCharsets.UTF_8);
+        JavaFileManager manager = new ForwardingJavaFileManager<JavaFileManager>(standard) {
+            @Override
+            public JavaFileObject getJavaFileForOutput(Location location, String className,
+                                                       JavaFileObject.Kind kind, FileObject sibling) {
+                ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                classes.put(className, bytes);
+                return new SimpleJavaFileObject(URI.create("bytes:///" + className.replace('.', '/') + kind.extension), kind) {
+                    @Override
+                    public OutputStream openOutputStream() {
+                        return bytes;
+                    }
+                };
+            }
+        };
+        JavaFileObject unit = new SimpleJavaFileObject(
+                URI.create("string:///" + PACKAGE_NAME.replace('.', '/') + "/" + CLASS_NAME + ".java"),
+                JavaFileObject.Kind.SOURCE) {
+            @Override
+            public CharSequence getCharContent(boolean ignoreEncodingErrors) {
+                return source;
+            }
+        };
+        List<String> options = Arrays.asList("-classpath", System.getProperty("java.class.path"));
+        boolean success = compiler.getTask(diagnostics, manager, null, options, null,
+                Collections.singletonList(unit)).call();
+        if (!success) {
+            throw new IllegalStateException("Generated scanner does not compile:\n" + diagnostics);
+        }
+        try {
+            byte[] bytecode = classes.get(PACKAGE_NAME + "." + CLASS_NAME).toByteArray();
+            MethodHandles.Lookup hidden = MethodHandles.lookup().defineHiddenClass(bytecode, true);
+            return (TheScanner) hidden.findConstructor(hidden.lookupClass(), MethodType.methodType(void.class)).invoke();
+        } catch (Throwable e) {
+            throw new IllegalStateException("Cannot define the generated scanner: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Writes the generated scanner source at build time.
+     *
+     * @param args Optional output directory for the package tree (default target/generated-sources)
+     * @throws IOException If the source file cannot be written
+     */
+    public static void main(String[] args) throws IOException {
+        Path root = Paths.get(args.length > 0 ? args[0] : "target/generated-sources");
+        Path target = root.resolve(PACKAGE_NAME.replace('.', File.separatorChar)).resolve(CLASS_NAME + ".java");
+        Files.createDirectories(target.getParent());
+        TheScannerGenerator generator = new TheScannerGenerator(new TheLexer("").getAutomata());
+        Files.write(target, generator.generate(CLASS_NAME).getBytes(StandardCharsets.UTF_8));
+        System.out.println("Generated scanner written to " + target);
+    }
+
+}
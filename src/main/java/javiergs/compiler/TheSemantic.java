@@ -56,6 +56,8 @@ public class TheSemantic {
     public static final int OP_EQ = 9;
     public static final int OP_NE = 10;
     public static final int OP_ASSIGN = 11;
+    public static final int OP_GE = 12;
+    public static final int OP_LE = 13;
 
     /**
      * Constructor - Initializes the semantic analyzer
@@ -76,12 +78,12 @@ public class TheSemantic {
      */
     private void initializeSemanticCube() {
         // Create 3D array: [type1][type2][operator] = resultType
-        semanticCube = new String[6][6][12];
+        semanticCube = new String[6][6][14];
 
         // Initialize all combinations to null (invalid)
         for (int i = 0; i < 6; i++) {
             for (int j = 0; j < 6; j++) {
-                for (int k = 0; k < 12; k++) {
+                for (int k = 0; k < 14; k++) {
                     semanticCube[i][j][k] = null;
                 }
             }
@@ -124,6 +126,8 @@ public class TheSemantic {
         // Logical operations (&&, ||)
         semanticCube[BOOLEAN][BOOLEAN][OP_AND] = "boolean";
         semanticCube[BOOLEAN][BOOLEAN][OP_OR] = "boolean";
+        // Unary not, checked with the operand as both types
+        semanticCube[BOOLEAN][BOOLEAN][OP_NOT] = "boolean";
 
         // Comparison operations (<, >, ==, !=)
         semanticCube[INT][INT][OP_GT] = "boolean";
@@ -134,6 +138,14 @@ public class TheSemantic {
         semanticCube[FLOAT][INT][OP_GT] = "boolean";
         semanticCube[INT][FLOAT][OP_LT] = "boolean";
         semanticCube[FLOAT][INT][OP_LT] = "boolean";
+        semanticCube[INT][INT][OP_GE] = "boolean";
+        semanticCube[INT][INT][OP_LE] = "boolean";
+        semanticCube[FLOAT][FLOAT][OP_GE] = "boolean";
+        semanticCube[FLOAT][FLOAT][OP_LE] = "boolean";
+        semanticCube[INT][FLOAT][OP_GE] = "boolean";
+        semanticCube[FLOAT][INT][OP_GE] = "boolean";
+        semanticCube[INT][FLOAT][OP_LE] = "boolean";
+        semanticCube[FLOAT][INT][OP_LE] = "boolean";
 
         // Equality operations (==, !=)
         semanticCube[INT][INT][OP_EQ] = "boolean";
@@ -427,6 +439,8 @@ public class TheSemantic {
             case "!": return OP_NOT;
             case ">": return OP_GT;
             case "<": return OP_LT;
+            case ">=": return OP_GE;
+            case "<=": return OP_LE;
             case "==": return OP_EQ;
             case "!=": return OP_NE;
             case "=": return OP_ASSIGN;
@@ -0,0 +1,271 @@
+package javiergs.compiler;
+
+import java.util.Arrays;
+import java.util.Vector;
+
+/**
+ * TheTableParser.java
+ * ---------------
+ * Predictive parser driven by the {@link ParseTable} that {@link GrammarSpec} compiles from
+ * {@link #GRAMMAR}. The symbols still to match are kept on an explicit stack: a terminal
+ * on top is matched with the next token, and a nonterminal is replaced by the production
+ * the table predicts for the next token. There is no recursion, so a program nested to
+ * any depth is parsed in constant stack space.
+ *
+ * The grammar accepts the programs that {@link TheParser} accepts: an assignment is a
+ * statement whose left side is a variable, and a call is not followed by operators. Where
+ * {@link TheParser} skips tokens without reporting an error, as the rest of the increment
+ * of a for or a class member that is not a declaration, this parser reports one.
+ *
+ * The parser builds a {@link SyntaxTree} with a node for each rule whose name starts with
+ * an uppercase letter, with the tokens it matched and its inner rules as children. It is
+ * not the tree of {@link TheParser}: an expression holds its tokens and calls in order,
+ * not operators over their operands, and the node of an assignment or a call starts after
+ * the name of the variable or the method. It only checks the syntax; the types and the code
+ * are left to {@link TheParser}.
+ *
+ * Errors are recovered in panic mode: a missing terminal is taken as inserted, a token
+ * that no production of the nonterminal on top predicts is skipped, unless it follows the
+ * nonterminal or a symbol below it on the stack takes it, and then the nonterminal is
+ * taken as matched. Only the first error is reported until a token is matched again.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class TheTableParser {
+
+	/**
+	 * The grammar of the language, in the format of {@link GrammarSpec}.
+	 */
+	static final String GRAMMAR = """
+			# Programa: una clase, o un bloque de sentencias
+			PROGRAM        -> 'class' IDENTIFIER '{' members '}' | BLOCK
+			members        -> MEMBER members | @empty
+			MEMBER         -> TYPE IDENTIFIER memberRest
+			memberRest     -> '(' PARAMS ')' BLOCK | initializer ';'
+			PARAMS         -> TYPE IDENTIFIER moreParams | @empty
+			moreParams     -> ',' TYPE IDENTIFIER moreParams | @empty
+
+			# Sentencias; println e inputln van en un cuerpo, no solas en un if o un ciclo
+			BODY           -> statements
+			statements     -> STATEMENT statements | @empty
+			BLOCK          -> '{' BODY '}'
+			STATEMENT      -> statement | PRINTLN | INPUTLN ';'
+			STATEMENT_BLOCK -> BLOCK | statement
+			statement      -> VARIABLE ';' | IDENTIFIER identifierStatement ';' | otherFactor expressionRest ';'
+			               | RETURN | WHILE | IF | DO_WHILE | FOR | SWITCH
+			# Solo se asigna a una variable, y una llamada no sigue con operadores
+			identifierStatement -> ASSIGNMENT | CALL_METHOD | expressionRest
+			ASSIGNMENT     -> '=' assignedValue
+			assignedValue  -> INPUTLN | EXPRESSION
+			VARIABLE       -> TYPE IDENTIFIER initializer
+			initializer    -> '=' EXPRESSION | @empty
+			RETURN         -> 'return' optionalExpression ';'
+			optionalExpression -> EXPRESSION | @empty
+			WHILE          -> 'while' '(' EXPRESSION ')' STATEMENT_BLOCK
+			# El else va con el if más cercano
+			@expect 1
+			IF             -> 'if' '(' EXPRESSION ')' STATEMENT_BLOCK elsePart
+			elsePart       -> 'else' STATEMENT_BLOCK | @empty
+			DO_WHILE       -> 'do' STATEMENT_BLOCK 'while' '(' EXPRESSION ')' ';'
+			# La inicialización y el incremento son una asignación o una expresión
+			FOR            -> 'for' '(' forInit ';' optionalExpression ';' forUpdate ')' STATEMENT_BLOCK
+			forInit        -> VARIABLE | forUpdate
+			forUpdate      -> IDENTIFIER forIdentifier | otherFactor expressionRest | @empty
+			forIdentifier  -> ASSIGNMENT | call expressionRest
+			# Cada case termina con break; el default va al final y no lo lleva
+			SWITCH         -> 'switch' '(' EXPRESSION ')' '{' cases '}'
+			cases          -> CASE cases | DEFAULT | @empty
+			CASE           -> 'case' EXPRESSION ':' BODY 'break' ';'
+			DEFAULT        -> 'default' ':' BODY
+			PRINTLN        -> 'println' '(' EXPRESSION ')' ';'
+			INPUTLN        -> 'inputln' '(' ')'
+
+			# Expresiones, de menor a mayor precedencia
+			EXPRESSION     -> conjunction moreDisjuncts
+			moreDisjuncts  -> '||' conjunction moreDisjuncts | @empty
+			conjunction    -> comparison moreConjuncts
+			moreConjuncts  -> '&&' comparison moreConjuncts | @empty
+			comparison     -> sum moreComparisons
+			moreComparisons -> comparator sum moreComparisons | @empty
+			comparator     -> '<' | '>' | '<=' | '>=' | '==' | '!='
+			sum            -> term moreTerms
+			moreTerms      -> '+' term moreTerms | '-' term moreTerms | @empty
+			term           -> factor moreFactors
+			moreFactors    -> '*' factor moreFactors | '/' factor moreFactors | @empty
+			factor         -> IDENTIFIER call | otherFactor
+			otherFactor    -> '!' factor | '-' factor | literal | '(' EXPRESSION ')'
+			# Lo que sigue al primer factor de una expresión
+			expressionRest -> moreFactors moreTerms moreComparisons moreConjuncts moreDisjuncts
+			call           -> CALL_METHOD | @empty
+			CALL_METHOD    -> '(' PARAM_VALUES ')'
+			PARAM_VALUES   -> EXPRESSION moreValues | @empty
+			moreValues     -> ',' EXPRESSION moreValues | @empty
+			# TheParser no toma true, false ni los octales como operandos
+			literal        -> INTEGER | FLOAT | BINARY | HEXADECIMAL | STRING | CHAR
+			TYPE           -> 'int' | 'float' | 'char' | 'string' | 'boolean' | 'void'
+			""";
+
+	private static final ParseTable TABLE = new GrammarSpec(GRAMMAR).compile();
+
+	// Marca en la pila del final del nodo de una regla
+	private static final int CLOSE = Integer.MIN_VALUE;
+
+	private final TokenSource tokens;
+	private int currentToken = 0;
+	private final SyntaxTree tree = new SyntaxTree();
+	private final Vector<String> syntaxErrors = new Vector<>();
+
+	public TheTableParser(Vector<TheToken> tokens) {
+		this(TokenSource.of(tokens));
+	}
+
+	/**
+	 * Constructs a parser that pulls its tokens lazily from a stream.
+	 *
+	 * @param tokens The token stream
+	 */
+	public TheTableParser(TokenStream tokens) {
+		this((TokenSource) tokens);
+	}
+
+	/**
+	 * Constructs a parser that reads the tokens from the arrays of a token buffer.
+	 *
+	 * @param tokens The tokens produced by {@link TheLexer}
+	 */
+	public TheTableParser(TokenBuffer tokens) {
+		this((TokenSource) tokens);
+	}
+
+	private TheTableParser(TokenSource tokens) {
+		this.tokens = tokens;
+	}
+
+	/**
+	 * Parses the program.
+	 */
+	public void run() {
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = ~TABLE.getStart();
+		// Reglas con nodo abiertas, una por nivel del árbol, y sus nodos
+		int[] rules = new int[16];
+		int[] nodes = new int[16];
+		int depth = 0;
+		boolean recovering = false;
+		int terminal = terminalAt(currentToken);
+
+		while (top > 0) {
+			int symbol = stack[--top];
+			if (symbol == CLOSE) {
+				tree.end(nodes[--depth], currentToken);
+			} else if (symbol >= 0) {
+				// Terminal: debe ser el siguiente token
+				if (symbol == terminal) {
+					int node = tree.add(depth == 0 ? SyntaxTree.ROOT : nodes[depth - 1], SyntaxTree.Kind.TOKEN,
+							tokens.value(currentToken), currentToken, tokens.kind(currentToken), tokens.line(currentToken));
+					terminal = terminalAt(++currentToken);
+					tree.end(node, currentToken);
+					recovering = false;
+				} else if (!recovering) {
+					error("expected " + ParseTable.terminalName(symbol));
+					recovering = true;
+				}
+			} else {
+				int nonterminal = ~symbol;
+				int production = TABLE.predict(nonterminal, terminal);
+				if (production < 0) {
+					if (!recovering) {
+						// Las reglas auxiliares se reportan como la regla que las usa
+						int rule = TABLE.isVisible(nonterminal) || depth == 0 ? nonterminal : rules[depth - 1];
+						error((terminal == ParseTable.END ? "incomplete " : "unexpected token in ") + TABLE.getName(rule));
+						recovering = true;
+					}
+					if (terminal != ParseTable.END && !TABLE.follows(nonterminal, terminal) &&
+							!isExpected(stack, top, terminal)) {
+						// Saltar el token y volver a intentar la regla
+						terminal = terminalAt(++currentToken);
+						top++;
+					}
+					continue;
+				}
+				int start = TABLE.getProductionStart(production);
+				int end = TABLE.getProductionEnd(production);
+				if (top + end - start + 1 > stack.length) {
+					stack = Arrays.copyOf(stack, Math.max(stack.length * 2, top + end - start + 1));
+				}
+				if (TABLE.isVisible(nonterminal)) {
+					int node = tree.add(depth == 0 ? SyntaxTree.ROOT : nodes[depth - 1], SyntaxTree.Kind.RULE,
+							TABLE.getName(nonterminal), currentToken,
+							terminal == ParseTable.END ? null : tokens.kind(currentToken),
+							terminal == ParseTable.END ? 0 : tokens.line(currentToken));
+					if (depth == rules.length) {
+						rules = Arrays.copyOf(rules, depth * 2);
+						nodes = Arrays.copyOf(nodes, depth * 2);
+					}
+					rules[depth] = nonterminal;
+					nodes[depth++] = node;
+					stack[top++] = CLOSE;
+				}
+				for (int i = end - 1; i >= start; i--) {
+					stack[top++] = TABLE.getSymbol(i);
+				}
+			}
+		}
+		tree.end(SyntaxTree.ROOT, currentToken);
+		if (terminal != ParseTable.END) {
+			error("unexpected tokens after the program");
+		}
+	}
+
+	/**
+	 * Tells if a symbol still on the stack can take a terminal: the terminal itself, or a
+	 * nonterminal with a production for it. Then the rules above it are taken as matched,
+	 * instead of skipping the terminal, so a missing ';' does not cost the '}' after it.
+	 */
+	private static boolean isExpected(int[] stack, int top, int terminal) {
+		for (int i = top - 1; i >= 0; i--) {
+			int symbol = stack[i];
+			if (symbol == CLOSE) {
+				continue;
+			}
+			if (symbol >= 0 ? symbol == terminal : TABLE.predict(~symbol, terminal) >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private int terminalAt(int index) {
+		return tokens.has(index) ? tokens.kind(index).ordinal() : ParseTable.END;
+	}
+
+	private void error(String message) {
+		if (tokens.has(currentToken)) {
+			syntaxErrors.add("Syntax Error at line " + tokens.line(currentToken) +
+					", token: " + tokens.value(currentToken) +
+					" (" + tokens.type(currentToken) + "): " + message);
+		} else {
+			syntaxErrors.add("Syntax Error at end of input: " + message);
+		}
+	}
+
+	/**
+	 * @return The syntax tree built by {@link #run()}
+	 */
+	public SyntaxTree getSyntaxTree() {
+		return tree;
+	}
+
+	/**
+	 * @return The syntax errors found by {@link #run()}
+	 */
+	public Vector<String> getSyntaxErrors() {
+		return syntaxErrors;
+	}
+
+}
@@ -17,6 +17,7 @@ public class TheToken {
 
 	private String value;
 	private String type;
+	private TokenKind kind;
 	private int lineNumber;
 
 	/**
@@ -29,6 +30,21 @@ public class TheToken {
 	public TheToken(String value, String type, int lineNumber) {
 		this.value = value;
 		this.type = type;
+		this.kind = TokenKind.classify(value, type);
+		this.lineNumber = lineNumber;
+	}
+
+	/**
+	 * Constructs a new Token of a kind assigned by the lexer.
+	 *
+	 * @param value      The string value of the token
+	 * @param kind       The kind of the token
+	 * @param lineNumber The line number where the token appears
+	 */
+	public TheToken(String value, TokenKind kind, int lineNumber) {
+		this.value = value;
+		this.type = kind.getType();
+		this.kind = kind;
 		this.lineNumber = lineNumber;
 	}
 
@@ -45,6 +61,10 @@ public class TheToken {
 		return lineNumber;
 	}
 
+	public TokenKind getKind() {
+		return kind;
+	}
+
 	// Métodos adicionales para compatibilidad con CompilerUI
 	public String getToken() {
 		return type;  // El tipo del token (KEYWORD, IDENTIFIER, etc.)
@@ -61,10 +81,12 @@ public class TheToken {
 	// Setters
 	public void setValue(String value) {
 		this.value = value;
+		this.kind = TokenKind.classify(value, type);
 	}
 
 	public void setType(String type) {
 		this.type = type;
+		this.kind = TokenKind.classify(value, type);
 	}
 
 	public void setLineNumber(int lineNumber) {
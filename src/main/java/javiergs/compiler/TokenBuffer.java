@@ -0,0 +1,360 @@
+package javiergs.compiler;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Vector;
+
+/**
+ * TokenBuffer.java
+ * ---------------
+ * Compact token list that stores each token as a span of its source text instead of
+ * a {@link TheToken} object: a {@link TokenKind}, a start offset, a length and a line number, held
+ * in parallel primitive arrays. The value of a token is only materialized when it is
+ * requested, and equal values share one interned String.
+ *
+ * {@link TheParser} reads the arrays by index; {@link #get(int)} and {@link #toVector()}
+ * provide {@link TheToken} views for code that works with token objects.
+ *
+ * A buffer may have an error budget: adding the ERROR token that reaches it throws
+ * {@link ErrorBudgetException}, which the lexer catches to stop early on garbage input.
+ * {@link #getDiagnostics(int)} lists the ERROR tokens as {@link Diagnostics}.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class TokenBuffer implements TokenSource {
+
+	private static final int INITIAL_CAPACITY = 1024;
+
+	private final CharSequence source;
+	private byte[] kinds;
+	private int[] starts;
+	private int[] lengths;
+	private int[] lines;
+	private int size = 0;
+
+	// Lexing stops at the ERROR token that reaches the budget
+	private int errorBudget = Integer.MAX_VALUE;
+	private int errorCount = 0;
+	private boolean aborted = false;
+
+	// Values already materialized, allocated on the first request
+	private String[] values;
+	private HashMap<String, String> interned;
+
+	/**
+	 * @param source The text the token spans refer to
+	 */
+	TokenBuffer(CharSequence source) {
+		this(source, INITIAL_CAPACITY);
+	}
+
+	/**
+	 * @param source The text the token spans refer to
+	 * @param capacity The number of tokens that fit before the arrays grow
+	 */
+	TokenBuffer(CharSequence source, int capacity) {
+		this.source = source;
+		kinds = new byte[capacity];
+		starts = new int[capacity];
+		lengths = new int[capacity];
+		lines = new int[capacity];
+	}
+
+	/**
+	 * Thrown when an ERROR token reaches the error budget of a buffer, after it is added.
+	 * The buffer keeps the tokens up to that one. It carries no stack trace, since it only
+	 * tells the lexer to stop.
+	 */
+	static final class ErrorBudgetException extends RuntimeException {
+		private static final long serialVersionUID = 1L;
+
+		ErrorBudgetException() {
+			super("Error budget reached", null, false, false);
+		}
+	}
+
+	/**
+	 * Sets the number of ERROR tokens at which lexing stops.
+	 *
+	 * @param errorBudget The budget, at least 1
+	 */
+	void setErrorBudget(int errorBudget) {
+		if (errorBudget < 1) {
+			throw new IllegalArgumentException("Error budget must be at least 1: " + errorBudget);
+		}
+		this.errorBudget = errorBudget;
+	}
+
+	/**
+	 * Appends a token span.
+	 *
+	 * @throws ErrorBudgetException If the token is the ERROR token that reaches the budget
+	 */
+	void add(TokenKind kind, int start, int length, int line) {
+		if (size == kinds.length) {
+			grow(Math.max(1, size * 2));
+		}
+		kinds[size] = (byte) kind.ordinal();
+		starts[size] = start;
+		lengths[size] = length;
+		lines[size] = line;
+		size++;
+		if (kind == TokenKind.ERROR && ++errorCount >= errorBudget) {
+			aborted = true;
+			throw new ErrorBudgetException();
+		}
+	}
+
+	/**
+	 * Appends a token span whose value is already known, such as one read from a
+	 * {@link TokenCache} file. The value is kept as it is, so it must already be interned.
+	 */
+	void add(TokenKind kind, int start, int length, int line, String value) {
+		if (values == null) {
+			values = new String[kinds.length];
+			interned = new HashMap<>();
+		}
+		try {
+			add(kind, start, length, line);
+		} finally {
+			values[size - 1] = value;
+		}
+	}
+
+	/**
+	 * Appends all the tokens of another buffer over the same source.
+	 *
+	 * @param other The buffer to append
+	 * @param lineOffset The amount added to the line numbers of the appended tokens
+	 */
+	void append(TokenBuffer other, int lineOffset) {
+		append(other, 0, lineOffset);
+	}
+
+	/**
+	 * Appends all the tokens of another buffer whose source is a part of this one.
+	 *
+	 * @param other The buffer to append
+	 * @param startOffset The offset of the source of the other buffer in this source
+	 * @param lineOffset The amount added to the line numbers of the appended tokens
+	 */
+	void append(TokenBuffer other, int startOffset, int lineOffset) {
+		// Only the tokens up to the ERROR token that reaches the budget
+		int count = other.size;
+		boolean reached = errorCount + other.errorCount >= errorBudget;
+		if (reached) {
+			count = 0;
+			for (int errors = errorCount; errors < errorBudget; count++) {
+				if (other.kinds[count] == TokenKind.ERROR.ordinal()) {
+					errors++;
+				}
+			}
+		}
+		int capacity = Math.max(1, kinds.length);
+		while (capacity < size + count) {
+			capacity *= 2;
+		}
+		if (capacity > kinds.length) {
+			grow(capacity);
+		}
+		System.arraycopy(other.kinds, 0, kinds, size, count);
+		System.arraycopy(other.lengths, 0, lengths, size, count);
+		for (int i = 0; i < count; i++) {
+			starts[size + i] = other.starts[i] + startOffset;
+			lines[size + i] = other.lines[i] + lineOffset;
+		}
+		size += count;
+		if (reached) {
+			errorCount = errorBudget;
+			aborted = true;
+			throw new ErrorBudgetException();
+		}
+		errorCount += other.errorCount;
+	}
+
+	private void grow(int capacity) {
+		kinds = Arrays.copyOf(kinds, capacity);
+		starts = Arrays.copyOf(starts, capacity);
+		lengths = Arrays.copyOf(lengths, capacity);
+		lines = Arrays.copyOf(lines, capacity);
+		if (values != null) {
+			values = Arrays.copyOf(values, capacity);
+		}
+	}
+
+	/**
+	 * @return The number of tokens
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return The number of ERROR tokens
+	 */
+	public int getErrorCount() {
+		return errorCount;
+	}
+
+	/**
+	 * @return true if lexing stopped at the error budget, so the tokens end early
+	 */
+	public boolean isAborted() {
+		return aborted;
+	}
+
+	/**
+	 * Lists the ERROR tokens as diagnostics. Only the arrays are read, and the source
+	 * back to the start of the line of each error listed, for its column.
+	 *
+	 * @param limit The largest number of errors to list
+	 * @return The first errors, in order
+	 */
+	public Diagnostics getDiagnostics(int limit) {
+		Diagnostics diagnostics = new Diagnostics();
+		for (int i = 0; i < size && diagnostics.size() < limit; i++) {
+			if (kinds[i] != TokenKind.ERROR.ordinal()) {
+				continue;
+			}
+			int start = starts[i];
+			int lineStart = start;
+			while (lineStart > 0 && source.charAt(lineStart - 1) != '\n' && source.charAt(lineStart - 1) != '\r') {
+				lineStart--;
+			}
+			char first = source.charAt(start);
+			Diagnostics.Kind kind = first == '"' ? Diagnostics.Kind.UNTERMINATED_STRING
+					: first == '\'' ? Diagnostics.Kind.INVALID_CHAR : Diagnostics.Kind.INVALID_TOKEN;
+			diagnostics.add(kind, lines[i], start - lineStart + 1, start, lengths[i]);
+		}
+		return diagnostics;
+	}
+
+	/**
+	 * @param index The token index
+	 * @return The token kind
+	 */
+	public TokenKind getKind(int index) {
+		if (index >= size) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return TokenKind.of(kinds[index]);
+	}
+
+	/**
+	 * @param index The token index
+	 * @return The token type name, such as IDENTIFIER or OPERATOR
+	 */
+	public String getType(int index) {
+		if (index >= size) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return TokenKind.of(kinds[index]).getType();
+	}
+
+	/**
+	 * @param index The token index
+	 * @return The offset of the token in the source
+	 */
+	public int getStart(int index) {
+		return starts[index];
+	}
+
+	/**
+	 * @param index The token index
+	 * @return The length of the token in the source
+	 */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	/**
+	 * @param index The token index
+	 * @return The line number of the token
+	 */
+	public int getLineNumber(int index) {
+		if (index >= size) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		return lines[index];
+	}
+
+	/**
+	 * Gets the text of a token, materializing and interning it on the first request.
+	 *
+	 * @param index The token index
+	 * @return The token text
+	 */
+	public String getValue(int index) {
+		if (index >= size) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		if (values == null) {
+			values = new String[kinds.length];
+			interned = new HashMap<>();
+		}
+		String value = values[index];
+		if (value == null) {
+			value = source.subSequence(starts[index], starts[index] + lengths[index]).toString();
+			String previous = interned.putIfAbsent(value, value);
+			if (previous != null) {
+				value = previous;
+			}
+			values[index] = value;
+		}
+		return value;
+	}
+
+	@Override
+	public boolean has(int index) {
+		return index < size;
+	}
+
+	/**
+	 * Gets a token as an object. The token is a copy: changing it does not change the buffer.
+	 *
+	 * @param index The token index
+	 * @return The token
+	 */
+	@Override
+	public TheToken get(int index) {
+		return new TheToken(getValue(index), getKind(index), getLineNumber(index));
+	}
+
+	@Override
+	public TokenKind kind(int index) {
+		return getKind(index);
+	}
+
+	@Override
+	public String value(int index) {
+		return getValue(index);
+	}
+
+	@Override
+	public String type(int index) {
+		return getType(index);
+	}
+
+	@Override
+	public int line(int index) {
+		return getLineNumber(index);
+	}
+
+	/**
+	 * Materializes all the tokens, for code that works with a token list.
+	 *
+	 * @return A new list with one {@link TheToken} per token
+	 */
+	public Vector<TheToken> toVector() {
+		Vector<TheToken> tokens = new Vector<>(size);
+		for (int i = 0; i < size; i++) {
+			tokens.add(get(i));
+		}
+		return tokens;
+	}
+
+}
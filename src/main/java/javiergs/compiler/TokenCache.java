@@ -0,0 +1,286 @@
+package javiergs.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.zip.CRC32;
+
+/**
+ * TokenCache.java
+ * ---------------
+ * Directory of token files, used by {@link TheLexer#runCached(Path)} so that a source
+ * file that did not change is not lexed again. The tokens of a source are kept in a file
+ * named after the SHA-256 hash of its content, with the extension ".tok", laid out as:
+ * - a header: magic number, format version, fingerprint of the lexer, and the source hash
+ * - the table of the distinct token values, each a varint byte count and its UTF-8 bytes
+ * - the tokens, each a kind byte and varints for the gap since the end of the previous
+ *   token, its length, the lines since the previous token, and the index of its value
+ * - a CRC32 of everything before it
+ * Varints are unsigned LEB128: seven bits per byte, low bits first, high bit set on all
+ * bytes but the last.
+ *
+ * The fingerprint covers the token specification and the class files of the lexer, so
+ * the files written by another version of the lexer are ignored. Token files are
+ * memory-mapped to be read, and written to a temporary file that is then renamed, so a
+ * build never reads one half written.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+final class TokenCache {
+
+	static final String EXTENSION = ".tok";
+
+	private static final int MAGIC = 0x544F4B31;
+	private static final int VERSION = 1;
+	private static final int HASH_LENGTH = 32;
+	private static final int HEADER_LENGTH = 4 + 4 + 8 + HASH_LENGTH;
+
+	// Fingerprint of the lexer, or 0 if its class files cannot be read and nothing is cached
+	private static final long FINGERPRINT = fingerprint();
+
+	private final Path directory;
+
+	/**
+	 * @param directory The directory of the token files, created when the first one is written
+	 */
+	TokenCache(Path directory) {
+		this.directory = directory;
+	}
+
+	/**
+	 * Hashes the content of a source file.
+	 *
+	 * @param source The mapped source file
+	 * @return The SHA-256 hash of its bytes
+	 */
+	static byte[] hash(MappedSource source) {
+		try {
+			MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(source.getBytes());
+			return digest.digest();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @param hash The hash of a source
+	 * @return The token file of the source
+	 */
+	Path pathOf(byte[] hash) {
+		return directory.resolve(HexFormat.of().formatHex(hash) + EXTENSION);
+	}
+
+	/**
+	 * Reads the tokens of a source from its token file. The values of the tokens come from
+	 * the file, already interned; their spans refer to the source as in
+	 * {@link TheLexer#runMapped()}.
+	 *
+	 * @param hash The hash of the source
+	 * @param source The mapped source
+	 * @param errorBudget The number of ERROR tokens at which the tokens end, as when lexing
+	 * @return The tokens, or null if there is no token file for the source, or it is
+	 * damaged or was written by another version of the lexer
+	 */
+	TokenBuffer read(byte[] hash, MappedSource source, int errorBudget) {
+		if (FINGERPRINT == 0) {
+			return null;
+		}
+		ByteBuffer data;
+		try (FileChannel channel = FileChannel.open(pathOf(hash), StandardOpenOption.READ)) {
+			if (channel.size() < HEADER_LENGTH + 4 || channel.size() > Integer.MAX_VALUE) {
+				return null;
+			}
+			data = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+		} catch (IOException e) {
+			// No token file for this source
+			return null;
+		}
+		try {
+			int end = data.limit() - 4;
+			CRC32 checksum = new CRC32();
+			checksum.update(data.slice(0, end));
+			if (data.getInt(end) != (int) checksum.getValue()) {
+				return null;
+			}
+			if (data.getInt() != MAGIC || data.getInt() != VERSION || data.getLong() != FINGERPRINT) {
+				return null;
+			}
+			byte[] stored = new byte[HASH_LENGTH];
+			data.get(stored);
+			if (!MessageDigest.isEqual(stored, hash)) {
+				return null;
+			}
+
+			// Table of values
+			String[] values = new String[readVarint(data)];
+			byte[] bytes = new byte[64];
+			for (int i = 0; i < values.length; i++) {
+				int length = readVarint(data);
+				if (length > bytes.length) {
+					bytes = new byte[Math.max(length, bytes.length * 2)];
+				}
+				data.get(bytes, 0, length);
+				values[i] = new String(bytes, 0, length, StandardCharsets.UTF_8);
+			}
+
+			// Tokens
+			int count = readVarint(data);
+			TokenBuffer tokens = new TokenBuffer(source, Math.max(1, count));
+			tokens.setErrorBudget(errorBudget);
+			int position = 0;
+			int line = 0;
+			try {
+				for (int i = 0; i < count; i++) {
+					TokenKind kind = TokenKind.of(data.get() & 0xff);
+					int start = position + readVarint(data);
+					int length = readVarint(data);
+					line += readVarint(data);
+					position = start + length;
+					if (position > source.length()) {
+						return null;
+					}
+					tokens.add(kind, start, length, line, values[readVarint(data)]);
+				}
+			} catch (TokenBuffer.ErrorBudgetException e) {
+				// The file was checked whole: the tokens end at the error that reached the budget
+				return tokens;
+			}
+			return data.position() == end ? tokens : null;
+		} catch (RuntimeException e) {
+			// Truncated data, or an index out of range
+			return null;
+		}
+	}
+
+	/**
+	 * Writes the token file of a source.
+	 *
+	 * @param hash The hash of the source
+	 * @param tokens The tokens of the source, as lexed by {@link TheLexer#runMapped()}
+	 * @throws IOException If the file cannot be written
+	 */
+	void write(byte[] hash, TokenBuffer tokens) throws IOException {
+		if (FINGERPRINT == 0) {
+			return;
+		}
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_LENGTH + tokens.size() * 6);
+		DataOutputStream data = new DataOutputStream(bytes);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeLong(FINGERPRINT);
+		data.write(hash);
+
+		// Table of values, in order of first use
+		HashMap<String, Integer> ids = new HashMap<>();
+		int[] valueIds = new int[tokens.size()];
+		ByteArrayOutputStream table = new ByteArrayOutputStream();
+		for (int i = 0; i < tokens.size(); i++) {
+			String value = tokens.getValue(i);
+			Integer id = ids.get(value);
+			if (id == null) {
+				id = ids.size();
+				ids.put(value, id);
+				byte[] utf8 = value.getBytes(StandardCharsets.UTF_8);
+				writeVarint(table, utf8.length);
+				table.write(utf8);
+			}
+			valueIds[i] = id;
+		}
+		writeVarint(bytes, ids.size());
+		table.writeTo(bytes);
+
+		// Tokens
+		writeVarint(bytes, tokens.size());
+		int position = 0;
+		int line = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			bytes.write(tokens.getKind(i).ordinal());
+			writeVarint(bytes, tokens.getStart(i) - position);
+			writeVarint(bytes, tokens.getLength(i));
+			writeVarint(bytes, tokens.getLineNumber(i) - line);
+			writeVarint(bytes, valueIds[i]);
+			position = tokens.getStart(i) + tokens.getLength(i);
+			line = tokens.getLineNumber(i);
+		}
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes.toByteArray());
+		data.writeInt((int) checksum.getValue());
+
+		// Write aside, then rename over the token file
+		Files.createDirectories(directory);
+		Path target = pathOf(hash);
+		Path temporary = Files.createTempFile(directory, target.getFileName().toString(), ".tmp");
+		try {
+			Files.write(temporary, bytes.toByteArray());
+			try {
+				Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	private static int readVarint(ByteBuffer data) {
+		int value = 0;
+		for (int shift = 0; shift < 32; shift += 7) {
+			byte b = data.get();
+			value |= (b & 0x7f) << shift;
+			if (b >= 0) {
+				if (value < 0) {
+					throw new IllegalArgumentException("Varint out of range");
+				}
+				return value;
+			}
+		}
+		throw new IllegalArgumentException("Varint too long");
+	}
+
+	private static void writeVarint(ByteArrayOutputStream out, int value) {
+		while ((value & ~0x7f) != 0) {
+			out.write((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.write(value);
+	}
+
+	/**
+	 * Computes the fingerprint of the lexer: a CRC32 of the token specification and of the
+	 * class files that decide which tokens a text has.
+	 */
+	private static long fingerprint() {
+		CRC32 crc = new CRC32();
+		crc.update(TheLexer.TOKEN_SPEC.getBytes(StandardCharsets.UTF_8));
+		for (Class<?> type : new Class<?>[]{TheLexer.class, TokenKind.class, TokenSpec.class, Automata.class}) {
+			try (InputStream in = type.getResourceAsStream(type.getSimpleName() + ".class")) {
+				if (in == null) {
+					return 0;
+				}
+				crc.update(in.readAllBytes());
+			} catch (IOException e) {
+				return 0;
+			}
+		}
+		return crc.getValue() == 0 ? 1 : crc.getValue();
+	}
+
+}
@@ -0,0 +1,388 @@
+package javiergs.compiler;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * TokenKind.java
+ * ---------------
+ * The kind of a token, assigned once by {@link TheLexer}. Literals and identifiers
+ * have one kind per token type, while every keyword, operator and delimiter has a
+ * kind of its own, so the parser can dispatch with a switch instead of comparing
+ * strings. Each kind keeps the type name of the original token categories
+ * (KEYWORD, OPERATOR, DELIMITER...), which is what {@link TheToken#getType()} returns.
+ *
+ * Keywords are recognized ignoring case, but only the exact lower case spelling gets
+ * its own kind; any other spelling is the generic {@link #KEYWORD} kind. Identifiers
+ * are checked against the keywords with a perfect hash on (length, first char, last char)
+ * that reads the source span directly, see {@link #ofIdentifier(CharSequence, int, int)}.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public enum TokenKind {
+
+	ERROR("ERROR", null),
+	IDENTIFIER("IDENTIFIER", null),
+	INTEGER("INTEGER", null),
+	FLOAT("FLOAT", null),
+	BINARY("BINARY", null),
+	OCTAL("OCTAL", null),
+	HEXADECIMAL("HEXADECIMAL", null),
+	STRING("STRING", null),
+	CHAR("CHAR", null),
+
+	// Keywords
+	KEYWORD("KEYWORD", null),
+	KW_INT("KEYWORD", "int"),
+	KW_END("KEYWORD", "end"),
+	KW_IF("KEYWORD", "if"),
+	KW_ELSE("KEYWORD", "else"),
+	KW_WHILE("KEYWORD", "while"),
+	KW_DO("KEYWORD", "do"),
+	KW_FOR("KEYWORD", "for"),
+	KW_BREAK("KEYWORD", "break"),
+	KW_CONTINUE("KEYWORD", "continue"),
+	KW_CLASS("KEYWORD", "class"),
+	KW_FLOAT("KEYWORD", "float"),
+	KW_TRUE("KEYWORD", "true"),
+	KW_FALSE("KEYWORD", "false"),
+	KW_STRING("KEYWORD", "string"),
+	KW_CHAR("KEYWORD", "char"),
+	KW_VOID("KEYWORD", "void"),
+	KW_BOOLEAN("KEYWORD", "boolean"),
+	KW_RETURN("KEYWORD", "return"),
+	KW_SWITCH("KEYWORD", "switch"),
+	KW_CASE("KEYWORD", "case"),
+	KW_DEFAULT("KEYWORD", "default"),
+	KW_PRINTLN("KEYWORD", "println"),
+	KW_INPUTLN("KEYWORD", "inputln"),
+
+	// Operators
+	OP_ASSIGN("OPERATOR", "="),
+	OP_PLUS("OPERATOR", "+"),
+	OP_MINUS("OPERATOR", "-"),
+	OP_MUL("OPERATOR", "*"),
+	OP_DIV("OPERATOR", "/"),
+	OP_MOD("OPERATOR", "%"),
+	OP_LT("OPERATOR", "<"),
+	OP_GT("OPERATOR", ">"),
+	OP_NOT("OPERATOR", "!"),
+	OP_BIT_AND("OPERATOR", "&"),
+	OP_BIT_OR("OPERATOR", "|"),
+	OP_EQ("OPERATOR", "=="),
+	OP_NE("OPERATOR", "!="),
+	OP_LE("OPERATOR", "<="),
+	OP_GE("OPERATOR", ">="),
+	OP_AND("OPERATOR", "&&"),
+	OP_OR("OPERATOR", "||"),
+	OP_INC("OPERATOR", "++"),
+	OP_DEC("OPERATOR", "--"),
+	OP_PLUS_ASSIGN("OPERATOR", "+="),
+	OP_MINUS_ASSIGN("OPERATOR", "-="),
+	OP_MUL_ASSIGN("OPERATOR", "*="),
+	OP_DIV_ASSIGN("OPERATOR", "/="),
+	OP_MOD_ASSIGN("OPERATOR", "%="),
+
+	// Delimiters
+	DL_COMMA("DELIMITER", ","),
+	DL_SEMICOLON("DELIMITER", ";"),
+	DL_DOT("DELIMITER", "."),
+	DL_COLON("DELIMITER", ":"),
+	DL_LPAREN("DELIMITER", "("),
+	DL_RPAREN("DELIMITER", ")"),
+	DL_LBRACE("DELIMITER", "{"),
+	DL_RBRACE("DELIMITER", "}"),
+	DL_LBRACKET("DELIMITER", "["),
+	DL_RBRACKET("DELIMITER", "]");
+
+	private static final TokenKind[] VALUES = values();
+	private static final Map<String, TokenKind> BY_TEXT = new HashMap<>();
+	private static final TokenKind[] SINGLE = new TokenKind[128];
+
+	// Perfect hash of the keywords: slot = (length + first * HASH_FIRST + last) & (slots - 1)
+	private static final int HASH_FIRST;
+	private static final TokenKind[] KEYWORD_SLOTS;
+
+	static {
+		for (TokenKind kind : VALUES) {
+			if (kind.text != null) {
+				BY_TEXT.put(kind.text, kind);
+				if (kind.text.length() == 1) {
+					SINGLE[kind.text.charAt(0)] = kind;
+				}
+			}
+		}
+		// Search the smallest table and multiplier that give every keyword its own slot
+		TokenKind[] slots = null;
+		int multiplier = 0;
+		for (int size = 32; slots == null; size *= 2) {
+			for (multiplier = 1; multiplier < 256 && slots == null; multiplier++) {
+				slots = new TokenKind[size];
+				for (TokenKind kind : VALUES) {
+					if (kind.text == null || !kind.isKeyword()) {
+						continue;
+					}
+					String word = kind.text;
+					int slot = keywordHash(word.length(), word.charAt(0), word.charAt(word.length() - 1), multiplier) & (size - 1);
+					if (slots[slot] != null) {
+						slots = null;
+						break;
+					}
+					slots[slot] = kind;
+				}
+			}
+		}
+		HASH_FIRST = multiplier - 1;
+		KEYWORD_SLOTS = slots;
+	}
+
+	private final String type;
+	private final String text;
+
+	TokenKind(String type, String text) {
+		this.type = type;
+		this.text = text;
+	}
+
+	/**
+	 * @return The token type name, such as KEYWORD or OPERATOR
+	 */
+	public String getType() {
+		return type;
+	}
+
+	/**
+	 * @return The fixed text of a keyword, operator or delimiter, or null for other kinds
+	 */
+	public String getText() {
+		return text;
+	}
+
+	/**
+	 * @return true for keywords, including the generic KEYWORD kind
+	 */
+	public boolean isKeyword() {
+		return type.equals("KEYWORD");
+	}
+
+	/**
+	 * @return true for the literals the parser accepts as operands
+	 */
+	public boolean isLiteral() {
+		switch (this) {
+			case INTEGER: case FLOAT: case CHAR: case STRING: case HEXADECIMAL: case BINARY:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true for the keywords that name a type
+	 */
+	public boolean isType() {
+		switch (this) {
+			case KW_INT: case KW_FLOAT: case KW_VOID: case KW_CHAR: case KW_STRING: case KW_BOOLEAN:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true for &lt;, &gt;, ==, !=, &lt;= and &gt;=
+	 */
+	public boolean isComparison() {
+		switch (this) {
+			case OP_LT: case OP_GT: case OP_EQ: case OP_NE: case OP_LE: case OP_GE:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true for +, -, * and /
+	 */
+	public boolean isArithmetic() {
+		switch (this) {
+			case OP_PLUS: case OP_MINUS: case OP_MUL: case OP_DIV:
+				return true;
+			default:
+				return false;
+		}
+	}
+
+	/**
+	 * @return true for &amp;&amp;, || and !
+	 */
+	public boolean isLogical() {
+		return this == OP_AND || this == OP_OR || this == OP_NOT;
+	}
+
+	/**
+	 * Gets a kind from its ordinal, as stored by {@link TokenBuffer}.
+	 */
+	static TokenKind of(int ordinal) {
+		return VALUES[ordinal];
+	}
+
+	/**
+	 * Gets the kind of the token type reported by an accept state of the lexer DFA.
+	 *
+	 * @param type A token type name, such as INTEGER
+	 * @return The kind, or ERROR for a name that is not a token type
+	 */
+	static TokenKind ofType(String type) {
+		for (TokenKind kind : VALUES) {
+			if (kind.text == null && kind.type.equals(type)) {
+				return kind;
+			}
+		}
+		return ERROR;
+	}
+
+	/**
+	 * Gets the kind of an identifier, which may be a keyword.
+	 *
+	 * @param word The identifier text
+	 * @return A keyword kind, or IDENTIFIER
+	 */
+	static TokenKind ofIdentifier(String word) {
+		return ofIdentifier(word, 0, word.length());
+	}
+
+	/**
+	 * Gets the kind of an identifier in a span of text, without allocating. The keyword
+	 * is found with the perfect hash of the lower case span, and then compared with it
+	 * character by character.
+	 *
+	 * @param text The text that contains the identifier
+	 * @param start The index of the first character of the identifier
+	 * @param end The index after the last character of the identifier
+	 * @return A keyword kind, KEYWORD for a keyword in another case, or IDENTIFIER
+	 */
+	static TokenKind ofIdentifier(CharSequence text, int start, int end) {
+		int length = end - start;
+		if (length < 2) {
+			return IDENTIFIER;
+		}
+		int first = text.charAt(start);
+		int last = text.charAt(end - 1);
+		if (first >= 128 || last >= 128) {
+			return slowKeyword(text, start, end);
+		}
+		TokenKind kind = KEYWORD_SLOTS[keywordHash(length, toLower(first), toLower(last), HASH_FIRST)
+				& (KEYWORD_SLOTS.length - 1)];
+		if (kind == null || kind.text.length() != length) {
+			return IDENTIFIER;
+		}
+		boolean exact = true;
+		for (int i = 0; i < length; i++) {
+			int c = text.charAt(start + i);
+			if (c >= 128) {
+				return slowKeyword(text, start, end);
+			}
+			int lower = toLower(c);
+			if (lower != kind.text.charAt(i)) {
+				return IDENTIFIER;
+			}
+			exact &= lower == c;
+		}
+		return exact ? kind : KEYWORD;
+	}
+
+	private static int keywordHash(int length, int first, int last, int multiplier) {
+		return length + first * multiplier + last;
+	}
+
+	private static int toLower(int c) {
+		return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+	}
+
+	/**
+	 * Recognizes keywords in spans with characters outside ASCII, whose lower case may be ASCII.
+	 */
+	private static TokenKind slowKeyword(CharSequence text, int start, int end) {
+		String word = text.subSequence(start, end).toString();
+		TokenKind kind = BY_TEXT.get(word);
+		if (kind != null && kind.isKeyword()) {
+			return kind;
+		}
+		return TheLexer.isKeyword(word) ? KEYWORD : IDENTIFIER;
+	}
+
+	/**
+	 * Gets the kind of a one-character operator or delimiter.
+	 *
+	 * @param c The character
+	 * @return The kind, or null if the character is not an operator or delimiter
+	 */
+	static TokenKind ofSymbol(char c) {
+		return c < SINGLE.length ? SINGLE[c] : null;
+	}
+
+	/**
+	 * Gets the kind of a two-character operator.
+	 *
+	 * @param first The first character
+	 * @param second The second character
+	 * @return The kind, or null if the characters are not an operator
+	 */
+	static TokenKind ofOperator(char first, char second) {
+		switch (second) {
+			case '=':
+				switch (first) {
+					case '=': return OP_EQ;
+					case '!': return OP_NE;
+					case '<': return OP_LE;
+					case '>': return OP_GE;
+					case '+': return OP_PLUS_ASSIGN;
+					case '-': return OP_MINUS_ASSIGN;
+					case '*': return OP_MUL_ASSIGN;
+					case '/': return OP_DIV_ASSIGN;
+					case '%': return OP_MOD_ASSIGN;
+					default: return null;
+				}
+			case '+': return first == '+' ? OP_INC : null;
+			case '-': return first == '-' ? OP_DEC : null;
+			case '&': return first == '&' ? OP_AND : null;
+			case '|': return first == '|' ? OP_OR : null;
+			default: return null;
+		}
+	}
+
+	/**
+	 * Gets the kind of a token from its text and type name, for tokens that were not
+	 * created by the lexer.
+	 *
+	 * @param value The token text
+	 * @param type The token type name
+	 * @return The kind
+	 */
+	static TokenKind classify(String value, String type) {
+		if (type == null) {
+			return ERROR;
+		}
+		switch (type) {
+			case "IDENTIFIER":
+				return IDENTIFIER;
+			case "KEYWORD": {
+				TokenKind kind = value == null ? null : BY_TEXT.get(value);
+				return kind != null && kind.isKeyword() ? kind : KEYWORD;
+			}
+			case "OPERATOR":
+			case "DELIMITER": {
+				TokenKind kind = value == null ? null : BY_TEXT.get(value);
+				return kind != null && kind.type.equals(type) ? kind : ERROR;
+			}
+			default:
+				return ofType(type);
+		}
+	}
+
+}
@@ -0,0 +1,98 @@
+package javiergs.compiler;
+
+import java.util.Vector;
+
+/**
+ * TokenSource.java
+ * ---------------
+ * Random access to tokens by absolute index, as used by {@link TheParser}.
+ * A source may be fully materialized (a {@link TokenBuffer} or a Vector of tokens) or produced lazily
+ * (a {@link TokenStream}), in which case only a window around the parser's
+ * position is kept in memory.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+interface TokenSource {
+
+	/**
+	 * Checks if there is a token at the given index, lexing ahead if needed.
+	 *
+	 * @param index The absolute token index
+	 * @return true if the source has a token at that index
+	 */
+	boolean has(int index);
+
+	/**
+	 * Gets the token at the given index.
+	 *
+	 * @param index The absolute token index
+	 * @return The token
+	 * @throws ArrayIndexOutOfBoundsException If there is no token at that index
+	 */
+	TheToken get(int index);
+
+	/**
+	 * Gets the kind of the token at the given index.
+	 *
+	 * @param index The absolute token index
+	 * @return The token kind
+	 */
+	default TokenKind kind(int index) {
+		return get(index).getKind();
+	}
+
+	/**
+	 * Gets the text of the token at the given index.
+	 *
+	 * @param index The absolute token index
+	 * @return The token text
+	 */
+	default String value(int index) {
+		return get(index).getValue();
+	}
+
+	/**
+	 * Gets the type name of the token at the given index.
+	 *
+	 * @param index The absolute token index
+	 * @return The token type, such as IDENTIFIER or OPERATOR
+	 */
+	default String type(int index) {
+		return get(index).getType();
+	}
+
+	/**
+	 * Gets the line number of the token at the given index.
+	 *
+	 * @param index The absolute token index
+	 * @return The line number
+	 */
+	default int line(int index) {
+		return get(index).getLineNumber();
+	}
+
+	/**
+	 * Wraps a materialized token list.
+	 *
+	 * @param tokens The tokens produced by {@link TheLexer}
+	 * @return A source backed by the list
+	 */
+	static TokenSource of(Vector<TheToken> tokens) {
+		return new TokenSource() {
+			@Override
+			public boolean has(int index) {
+				return index < tokens.size();
+			}
+
+			@Override
+			public TheToken get(int index) {
+				return tokens.get(index);
+			}
+		};
+	}
+
+}
@@ -0,0 +1,497 @@
+package javiergs.compiler;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * TokenSpec.java
+ * ---------------
+ * Declarative specification of the tokens of a lexer, compiled into an {@link Automata}.
+ * Every line of the specification is one of:
+ * - KIND priority regex: the token kind accepted by a regular expression. Several lines
+ *   of the same kind are alternatives. When an input matches more than one kind, the
+ *   highest priority wins, and between equal priorities the earlier line.
+ * - @state name [input]: names the state reached from the start on the input (the rest
+ *   of the line), so that a scan loop can refer to it. The name follows the state through
+ *   minimization; two names must not end up on the same state.
+ * - Blank lines and lines starting with '#' are ignored.
+ *
+ * Regular expressions support ASCII literal characters, '.' (any character), classes
+ * such as [a-z_$] or [^"], the escapes \n, \t, \r and \c for any other character c,
+ * grouping with parentheses, alternation with '|', and the operators '*', '+' and '?'.
+ * Characters outside ASCII are matched inside classes by the Unicode classes
+ * [:unicode-id-start:], [:unicode-id-part:] (which includes the former) and [:unicode:]
+ * (any of them), which stand for the Unicode input symbols of {@link Automata}. '.'
+ * and negated classes include them.
+ *
+ * The specification is compiled by Thompson's construction into an NFA, by subset
+ * construction into a DFA, and minimized by {@link Automata#minimize(String...)}. The
+ * result is frozen and cached by the hash of the specification text, so the same
+ * specification is only compiled once.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class TokenSpec {
+
+	private static final Map<String, Automata> cache = new ConcurrentHashMap<>();
+
+	// Character sets are bit sets over the input symbols of Automata
+	private static final int SET_WORDS = (Automata.SYMBOL_COUNT + 63) / 64;
+
+	private final String text;
+	private final List<String> kinds = new ArrayList<>();
+	private final List<Integer> priorities = new ArrayList<>();
+	private final List<String> patterns = new ArrayList<>();
+	private final LinkedHashMap<String, String> namedStates = new LinkedHashMap<>();
+
+	// Thompson NFA: epsilon edges and at most one character set edge per state
+	private final List<int[]> epsilon = new ArrayList<>();
+	private final List<long[]> symbols = new ArrayList<>();
+	private final List<Integer> symbolTarget = new ArrayList<>();
+	private final List<Integer> acceptLine = new ArrayList<>();
+
+	// Regex being parsed
+	private String pattern;
+	private int position;
+	private int lineNumber;
+
+	/**
+	 * Parses a specification.
+	 *
+	 * @param text The specification, one declaration per line
+	 * @throws IllegalArgumentException If a line is not a valid declaration
+	 */
+	public TokenSpec(String text) {
+		this.text = text;
+		String[] lines = text.split("\n", -1);
+		for (lineNumber = 1; lineNumber <= lines.length; lineNumber++) {
+			String line = lines[lineNumber - 1].strip();
+			if (line.isEmpty() || line.startsWith("#")) {
+				continue;
+			}
+			String[] fields = line.split("\\s+", 3);
+			if (fields[0].equals("@state")) {
+				if (fields.length < 2) {
+					throw error("missing state name");
+				}
+				if (namedStates.put(fields[1], fields.length > 2 ? fields[2] : "") != null) {
+					throw error("state " + fields[1] + " is already named");
+				}
+			} else {
+				if (fields.length < 3) {
+					throw error("expected KIND priority regex");
+				}
+				kinds.add(fields[0]);
+				try {
+					priorities.add(Integer.parseInt(fields[1]));
+				} catch (NumberFormatException e) {
+					throw error("invalid priority " + fields[1]);
+				}
+				patterns.add(fields[2]);
+			}
+		}
+		lineNumber = 0;
+	}
+
+	/**
+	 * Computes the hash that identifies a specification.
+	 *
+	 * @param text The specification
+	 * @return The SHA-256 of the text, in hexadecimal
+	 */
+	public static String hash(String text) {
+		try {
+			byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+			return HexFormat.of().formatHex(digest);
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return The hash of this specification
+	 */
+	public String getHash() {
+		return hash(text);
+	}
+
+	/**
+	 * Compiles the specification, or returns the automaton compiled before for the same
+	 * specification text.
+	 *
+	 * @return The minimized and frozen automaton
+	 * @throws IllegalArgumentException If a regex is invalid or a named state is not reachable
+	 */
+	public Automata compile() {
+		return cache.computeIfAbsent(getHash(), hash -> build());
+	}
+
+	/**
+	 * Builds the automaton: one Thompson fragment per line, all reachable from a common
+	 * start, then subset construction, naming, minimization.
+	 */
+	private synchronized Automata build() {
+		epsilon.clear();
+		symbols.clear();
+		symbolTarget.clear();
+		acceptLine.clear();
+		int start = newState();
+		for (int line = 0; line < patterns.size(); line++) {
+			pattern = patterns.get(line);
+			position = 0;
+			int[] fragment = parseAlternation();
+			if (position < pattern.length()) {
+				throw regexError("unexpected '" + pattern.charAt(position) + "'");
+			}
+			addEpsilon(start, fragment[0]);
+			acceptLine.set(fragment[1], line);
+		}
+		pattern = null;
+
+		// Subset construction: DFA state i is the epsilon closure dfaStates.get(i)
+		List<BitSet> dfaStates = new ArrayList<>();
+		HashMap<BitSet, Integer> dfaIds = new HashMap<>();
+		List<int[]> dfaNext = new ArrayList<>();
+		BitSet initial = new BitSet();
+		initial.set(start);
+		closure(initial);
+		dfaStates.add(initial);
+		dfaIds.put(initial, 0);
+		for (int state = 0; state < dfaStates.size(); state++) {
+			BitSet set = dfaStates.get(state);
+			int[] row = new int[Automata.SYMBOL_COUNT];
+			for (int symbol = 0; symbol < Automata.SYMBOL_COUNT; symbol++) {
+				BitSet target = new BitSet();
+				for (int nfa = set.nextSetBit(0); nfa >= 0; nfa = set.nextSetBit(nfa + 1)) {
+					long[] edge = symbols.get(nfa);
+					if (edge != null && (edge[symbol >> 6] & (1L << symbol)) != 0) {
+						target.set(symbolTarget.get(nfa));
+					}
+				}
+				if (target.isEmpty()) {
+					row[symbol] = -1;
+					continue;
+				}
+				closure(target);
+				Integer id = dfaIds.get(target);
+				if (id == null) {
+					id = dfaStates.size();
+					dfaStates.add(target);
+					dfaIds.put(target, id);
+				}
+				row[symbol] = id;
+			}
+			dfaNext.add(row);
+		}
+
+		// Name the states reached by the inputs of the @state lines
+		String[] names = new String[dfaStates.size()];
+		for (Map.Entry<String, String> entry : namedStates.entrySet()) {
+			int state = 0;
+			for (int codePoint : entry.getValue().codePoints().toArray()) {
+				state = state < 0 ? -1 : dfaNext.get(state)[Automata.symbolOf(codePoint)];
+			}
+			if (state < 0) {
+				throw new IllegalArgumentException("Token spec: state " + entry.getKey() + " is not reachable");
+			}
+			if (names[state] != null) {
+				throw new IllegalArgumentException("Token spec: states " + names[state] + " and "
+						+ entry.getKey() + " are the same state");
+			}
+			names[state] = entry.getKey();
+		}
+		for (int state = 0; state < names.length; state++) {
+			if (names[state] == null) {
+				names[state] = "d" + state;
+				while (namedStates.containsKey(names[state])) {
+					names[state] = "_" + names[state];
+				}
+			}
+		}
+
+		Automata dfa = new Automata();
+		for (int state = 0; state < dfaStates.size(); state++) {
+			int[] row = dfaNext.get(state);
+			for (int symbol = 0; symbol < Automata.SYMBOL_COUNT; symbol++) {
+				if (row[symbol] >= 0) {
+					dfa.addTransition(names[state], String.valueOf((char) symbol), names[row[symbol]]);
+				}
+			}
+			int line = acceptedLine(dfaStates.get(state));
+			if (line >= 0) {
+				dfa.addAcceptState(names[state], kinds.get(line));
+			}
+		}
+		dfa.compile();
+		dfa.minimize();
+		HashMap<Integer, String> minimizedNames = new HashMap<>();
+		for (String name : namedStates.keySet()) {
+			String other = minimizedNames.put(dfa.getStateId(name), name);
+			if (other != null) {
+				throw new IllegalArgumentException("Token spec: states " + other + " and " + name
+						+ " are equivalent");
+			}
+		}
+		dfa.freeze();
+		return dfa;
+	}
+
+	/**
+	 * Chooses the line accepted by a set of NFA states: highest priority, then earliest.
+	 */
+	private int acceptedLine(BitSet set) {
+		int best = -1;
+		for (int nfa = set.nextSetBit(0); nfa >= 0; nfa = set.nextSetBit(nfa + 1)) {
+			int line = acceptLine.get(nfa);
+			if (line >= 0 && (best < 0 || priorities.get(line) > priorities.get(best)
+					|| (priorities.get(line).equals(priorities.get(best)) && line < best))) {
+				best = line;
+			}
+		}
+		return best;
+	}
+
+	private void closure(BitSet set) {
+		ArrayDeque<Integer> pending = new ArrayDeque<>();
+		for (int nfa = set.nextSetBit(0); nfa >= 0; nfa = set.nextSetBit(nfa + 1)) {
+			pending.push(nfa);
+		}
+		while (!pending.isEmpty()) {
+			for (int target : epsilon.get(pending.pop())) {
+				if (target >= 0 && !set.get(target)) {
+					set.set(target);
+					pending.push(target);
+				}
+			}
+		}
+	}
+
+	private int newState() {
+		epsilon.add(new int[]{-1, -1});
+		symbols.add(null);
+		symbolTarget.add(-1);
+		acceptLine.add(-1);
+		return epsilon.size() - 1;
+	}
+
+	private void addEpsilon(int from, int to) {
+		int[] edges = epsilon.get(from);
+		int free = 0;
+		while (free < edges.length && edges[free] >= 0) {
+			free++;
+		}
+		if (free == edges.length) {
+			// Only the common start has more than two
+			edges = Arrays.copyOf(edges, edges.length * 2);
+			Arrays.fill(edges, free, edges.length, -1);
+			epsilon.set(from, edges);
+		}
+		edges[free] = to;
+	}
+
+	// Fragments are {start, end}; the end state has no outgoing edges yet
+
+	private int[] parseAlternation() {
+		int[] left = parseConcatenation();
+		while (position < pattern.length() && pattern.charAt(position) == '|') {
+			position++;
+			int[] right = parseConcatenation();
+			int start = newState();
+			int end = newState();
+			addEpsilon(start, left[0]);
+			addEpsilon(start, right[0]);
+			addEpsilon(left[1], end);
+			addEpsilon(right[1], end);
+			left = new int[]{start, end};
+		}
+		return left;
+	}
+
+	private int[] parseConcatenation() {
+		int start = newState();
+		int end = start;
+		while (position < pattern.length() && pattern.charAt(position) != '|' && pattern.charAt(position) != ')') {
+			int[] next = parseRepetition();
+			addEpsilon(end, next[0]);
+			end = next[1];
+		}
+		return new int[]{start, end};
+	}
+
+	private int[] parseRepetition() {
+		int[] atom = parseAtom();
+		while (position < pattern.length() && "*+?".indexOf(pattern.charAt(position)) >= 0) {
+			char operator = pattern.charAt(position++);
+			int start = newState();
+			int end = newState();
+			addEpsilon(start, atom[0]);
+			if (operator != '+') {
+				addEpsilon(start, end);
+			}
+			if (operator != '?') {
+				addEpsilon(atom[1], atom[0]);
+			}
+			addEpsilon(atom[1], end);
+			atom = new int[]{start, end};
+		}
+		return atom;
+	}
+
+	private int[] parseAtom() {
+		char c = pattern.charAt(position++);
+		long[] set = new long[SET_WORDS];
+		switch (c) {
+			case '(':
+				int[] group = parseAlternation();
+				if (position >= pattern.length() || pattern.charAt(position) != ')') {
+					throw regexError("missing ')'");
+				}
+				position++;
+				return group;
+			case '[':
+				set = parseClass();
+				break;
+			case '.':
+				addSymbols(set, 0, Automata.SYMBOL_COUNT - 1);
+				break;
+			case '*':
+			case '+':
+			case '?':
+				throw regexError("nothing to repeat before '" + c + "'");
+			case '\\':
+				char escaped = escape();
+				addRange(set, escaped, escaped);
+				break;
+			default:
+				addRange(set, c, c);
+		}
+		int start = newState();
+		int end = newState();
+		symbols.set(start, set);
+		symbolTarget.set(start, end);
+		return new int[]{start, end};
+	}
+
+	private long[] parseClass() {
+		long[] set = new long[SET_WORDS];
+		boolean negated = position < pattern.length() && pattern.charAt(position) == '^';
+		if (negated) {
+			position++;
+		}
+		boolean first = true;
+		while (position < pattern.length() && (first || pattern.charAt(position) != ']')) {
+			first = false;
+			if (pattern.startsWith("[:", position)) {
+				parseUnicodeClass(set);
+				continue;
+			}
+			char low = pattern.charAt(position++);
+			if (low == '\\') {
+				low = escape();
+			}
+			char high = low;
+			if (position + 1 < pattern.length() && pattern.charAt(position) == '-' && pattern.charAt(position + 1) != ']') {
+				position++;
+				high = pattern.charAt(position++);
+				if (high == '\\') {
+					high = escape();
+				}
+			}
+			if (high < low) {
+				throw regexError("invalid range " + low + "-" + high);
+			}
+			addRange(set, low, high);
+		}
+		if (position >= pattern.length()) {
+			throw regexError("missing ']'");
+		}
+		position++;
+		if (negated) {
+			long[] all = new long[SET_WORDS];
+			addSymbols(all, 0, Automata.SYMBOL_COUNT - 1);
+			for (int i = 0; i < SET_WORDS; i++) {
+				set[i] = all[i] & ~set[i];
+			}
+		}
+		return set;
+	}
+
+	private void parseUnicodeClass(long[] set) {
+		int end = pattern.indexOf(":]", position + 2);
+		if (end < 0) {
+			throw regexError("missing ':]'");
+		}
+		String name = pattern.substring(position + 2, end);
+		switch (name) {
+			case "unicode":
+				addSymbols(set, Automata.UNICODE_IDENTIFIER_START, Automata.UNICODE_OTHER);
+				break;
+			case "unicode-id-part":
+				addSymbols(set, Automata.UNICODE_IDENTIFIER_START, Automata.UNICODE_IDENTIFIER_PART);
+				break;
+			case "unicode-id-start":
+				addSymbols(set, Automata.UNICODE_IDENTIFIER_START, Automata.UNICODE_IDENTIFIER_START);
+				break;
+			default:
+				throw regexError("unknown class [:" + name + ":]");
+		}
+		position = end + 2;
+	}
+
+	private char escape() {
+		if (position >= pattern.length()) {
+			throw regexError("trailing '\\'");
+		}
+		return escape(pattern.charAt(position++));
+	}
+
+	private static char escape(char c) {
+		switch (c) {
+			case 'n':
+				return '\n';
+			case 't':
+				return '\t';
+			case 'r':
+				return '\r';
+			default:
+				return c;
+		}
+	}
+
+	private void addRange(long[] set, char low, char high) {
+		if (high >= Automata.ALPHABET_SIZE) {
+			throw regexError("character outside 7-bit ASCII, use a Unicode class");
+		}
+		addSymbols(set, low, high);
+	}
+
+	private static void addSymbols(long[] set, int low, int high) {
+		for (int symbol = low; symbol <= high; symbol++) {
+			set[symbol >> 6] |= 1L << symbol;
+		}
+	}
+
+	private IllegalArgumentException regexError(String message) {
+		return new IllegalArgumentException("Token spec: " + message + " at " + position + " in " + pattern);
+	}
+
+	private IllegalArgumentException error(String message) {
+		return new IllegalArgumentException("Token spec line " + lineNumber + ": " + message);
+	}
+
+}
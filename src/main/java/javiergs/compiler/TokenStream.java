@@ -0,0 +1,184 @@
+package javiergs.compiler;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+
+/**
+ * TokenStream.java
+ * ---------------
+ * Pull-based token stream that lexes its input lazily, one line at a time, as tokens
+ * are requested. Only a small ring buffer of recent tokens is kept, so memory does not
+ * grow with the size of the input:
+ * - next() and hasNext() iterate over the tokens
+ * - peek(k) looks k tokens ahead without consuming them
+ * - {@link TheParser} can run directly on the stream through absolute indexes
+ *
+ * Tokens are produced by the same DFA as {@link TheLexer#run()}, with the same line
+ * splitting rules as {@link BufferedReader#readLine()}.
+ *
+ * @author javiergs
+ * @author eduardomv
+ * @author santiarr
+ * @author yawham
+ * @version 2.0
+ */
+public class TokenStream implements TokenSource, Closeable {
+
+	/** Default number of tokens kept behind the furthest token read. Must be a power of two. */
+	public static final int DEFAULT_CAPACITY = 64;
+
+	private final BufferedReader reader;
+	private final CharBuffer buffer;
+	private final TheLexer lexer;
+	private TokenBuffer lineTokens;
+	private int lineNumber = 0;
+	private int pending = 0;
+	private boolean endOfInput = false;
+
+	private final TheToken[] ring;
+	private int head = 0;
+	private int position = 0;
+
+	/**
+	 * Constructs a stream over a character reader.
+	 *
+	 * @param reader The source text
+	 */
+	public TokenStream(Reader reader) {
+		this(reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader), null);
+	}
+
+	/**
+	 * Constructs a stream over a character buffer. The buffer is consumed from its
+	 * current position to its limit.
+	 *
+	 * @param buffer The source text
+	 */
+	public TokenStream(CharBuffer buffer) {
+		this(null, buffer);
+	}
+
+	private TokenStream(BufferedReader reader, CharBuffer buffer) {
+		this.reader = reader;
+		this.buffer = buffer;
+		this.lexer = new TheLexer((File) null);
+		this.lineTokens = new TokenBuffer("");
+		this.ring = new TheToken[DEFAULT_CAPACITY];
+	}
+
+	/**
+	 * @return true if there is at least one more token to read with next()
+	 */
+	public boolean hasNext() {
+		return has(position);
+	}
+
+	/**
+	 * Consumes the next token.
+	 *
+	 * @return The next token
+	 * @throws ArrayIndexOutOfBoundsException If the stream is exhausted
+	 */
+	public TheToken next() {
+		TheToken token = get(position);
+		position++;
+		return token;
+	}
+
+	/**
+	 * Looks ahead without consuming tokens.
+	 *
+	 * @param k Distance from the next token (0 is the token next() would return)
+	 * @return The token, or null if the stream ends before it
+	 */
+	public TheToken peek(int k) {
+		return has(position + k) ? get(position + k) : null;
+	}
+
+	@Override
+	public boolean has(int index) {
+		while (head <= index && advance()) {
+		}
+		return index < head;
+	}
+
+	@Override
+	public TheToken get(int index) {
+		if (index < 0 || !has(index)) {
+			throw new ArrayIndexOutOfBoundsException(index);
+		}
+		if (index < head - ring.length) {
+			throw new IllegalStateException("Token " + index + " is no longer buffered");
+		}
+		return ring[index & (ring.length - 1)];
+	}
+
+	/**
+	 * Closes the underlying reader, if any.
+	 *
+	 * @throws IOException If the reader cannot be closed
+	 */
+	@Override
+	public void close() throws IOException {
+		if (reader != null) {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Moves one token from the lexer into the ring buffer, lexing the next line if needed.
+	 *
+	 * @return false at the end of the input
+	 */
+	private boolean advance() {
+		while (pending == lineTokens.size()) {
+			String line = readLine();
+			if (line == null) {
+				endOfInput = true;
+				return false;
+			}
+			lineTokens = lexer.scanLine(line, ++lineNumber);
+			pending = 0;
+		}
+		ring[head & (ring.length - 1)] = lineTokens.get(pending++);
+		head++;
+		return true;
+	}
+
+	private String readLine() {
+		if (endOfInput) {
+			return null;
+		}
+		if (reader != null) {
+			try {
+				return reader.readLine();
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+		if (!buffer.hasRemaining()) {
+			return null;
+		}
+		int start = buffer.position();
+		int end = start;
+		while (end < buffer.limit() && buffer.get(end) != '\n' && buffer.get(end) != '\r') {
+			end++;
+		}
+		String line = buffer.subSequence(0, end - start).toString();
+		int next = end;
+		if (next < buffer.limit()) {
+			if (buffer.get(next) == '\r' && next + 1 < buffer.limit() && buffer.get(next + 1) == '\n') {
+				next++;
+			}
+			next++;
+		}
+		buffer.position(next);
+		return line;
+	}
+
+}
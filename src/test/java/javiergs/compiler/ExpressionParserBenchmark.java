@@ -0,0 +1,143 @@
+package javiergs.compiler;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.Random;
+
+/**
+ * Measures how fast TheParser parses, types and generates code for generated expressions,
+ * each assigned to a variable in an otherwise empty method, in four shapes:
+ * - left: parentheses nested to the left, as in ((a + 1) * b) - 2
+ * - right: parentheses nested to the right, as in a + (1 * (b - 2))
+ * - flat: a chain of operators of every precedence and no parentheses
+ * - random: random trees of every operator, with unary ! and -
+ * Every shape is generated at several nesting depths, or numbers of operators for the
+ * flat shape, from a fixed seed. The tokens are lexed once and the console output of the
+ * parser is discarded, so the time is that of the parser alone.
+ *
+ * Usage: ExpressionParserBenchmark [largest depth, default 1000]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class ExpressionParserBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int ITERATIONS = 10;
+
+	// Each timed sample parses at least this many tokens, so small expressions run several times
+	private static final int SAMPLE_TOKENS = 200_000;
+
+	private static final String[] SHAPES = {"left", "right", "flat", "random"};
+
+	private static final String[] ARITHMETIC = {"+", "-", "*", "/"};
+	private static final String[] OPERATORS = {"+", "-", "*", "/", "<", ">", "<=", ">=", "==", "!=", "&&", "||"};
+	private static final String[] OPERANDS = {"a", "b", "x", "1", "2", "3.5"};
+
+	public static void main(String[] args) {
+		int largest = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		PrintStream console = System.out;
+		PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+
+		console.printf("%-7s %6s %8s %12s %10s%n", "shape", "depth", "tokens", "us/parse", "ns/token");
+		for (int depth = 10; depth <= largest; depth *= 10) {
+			for (String shape : SHAPES) {
+				TokenBuffer tokens = new TheLexer(createProgram(shape, depth)).getTokenBuffer();
+				int repetitions = Math.max(1, SAMPLE_TOKENS / tokens.size());
+				System.setOut(silent);
+				long best;
+				try {
+					best = measure(tokens, repetitions);
+				} finally {
+					System.setOut(console);
+				}
+				console.printf("%-7s %6d %,8d %12.1f %10.1f%n", shape, depth, tokens.size(),
+						best / 1e3 / repetitions, (double) best / repetitions / tokens.size());
+			}
+		}
+	}
+
+	private static long measure(TokenBuffer tokens, int repetitions) {
+		for (int i = 0; i < WARMUP; i++) {
+			parse(tokens, repetitions);
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			parse(tokens, repetitions);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		return best;
+	}
+
+	private static int parse(TokenBuffer tokens, int repetitions) {
+		int code = 0;
+		for (int i = 0; i < repetitions; i++) {
+			TheParser parser = new TheParser(tokens);
+			parser.run();
+			code += parser.getCodeGenerator().getIntermediateCode().size();
+		}
+		return code;
+	}
+
+	/**
+	 * Generates a program that assigns an expression of the given shape and depth.
+	 */
+	private static String createProgram(String shape, int depth) {
+		Random random = new Random(42);
+		StringBuilder expression = new StringBuilder();
+		switch (shape) {
+			case "left":
+				expression.append("(".repeat(depth)).append(operand(random));
+				for (int i = 0; i < depth; i++) {
+					expression.append(' ').append(ARITHMETIC[random.nextInt(ARITHMETIC.length)]).append(' ')
+							.append(operand(random)).append(')');
+				}
+				break;
+			case "right":
+				for (int i = 0; i < depth; i++) {
+					expression.append(operand(random)).append(' ')
+							.append(ARITHMETIC[random.nextInt(ARITHMETIC.length)]).append(" (");
+				}
+				expression.append(operand(random)).append(")".repeat(depth));
+				break;
+			case "flat":
+				expression.append(operand(random));
+				for (int i = 0; i < depth; i++) {
+					expression.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+							.append(operand(random));
+				}
+				break;
+			default:
+				randomExpression(random, depth, expression);
+				break;
+		}
+		return "class Benchmark {\n\tint a = 1;\n\tint b = 2;\n\tfloat x = 0.5;\n\tboolean r;\n"
+				+ "\tvoid run() {\n\t\tr = " + expression + ";\n\t}\n}\n";
+	}
+
+	/**
+	 * Appends a random expression whose deepest parentheses are nested depth levels down.
+	 */
+	private static void randomExpression(Random random, int depth, StringBuilder expression) {
+		if (random.nextInt(4) == 0) {
+			expression.append(random.nextBoolean() ? "!" : "-");
+		}
+		if (depth == 0) {
+			expression.append(operand(random));
+		} else {
+			expression.append('(');
+			randomExpression(random, depth - 1, expression);
+			expression.append(')');
+		}
+		for (int i = random.nextInt(3); i > 0; i--) {
+			expression.append(' ').append(OPERATORS[random.nextInt(OPERATORS.length)]).append(' ')
+					.append(operand(random));
+		}
+	}
+
+	private static String operand(Random random) {
+		return OPERANDS[random.nextInt(OPERANDS.length)];
+	}
+
+}
@@ -0,0 +1,103 @@
+package javiergs.compiler;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Compares keyword recognition with the HashSet of TheLexer, which needs the identifier
+ * as a lower case String, against the perfect hash of TokenKind, which reads the span.
+ * The corpus is every identifier and keyword of the sample programs, repeated.
+ *
+ * Usage: KeywordBenchmark [number of identifiers in millions, default 4]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class KeywordBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws IOException {
+		int millions = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+		StringBuilder text = new StringBuilder();
+		int[] spans = createCorpus(millions * 1_000_000, text);
+
+		System.out.printf("corpus: %,d identifiers%n", spans.length / 2);
+		for (int round = 0; round < 3; round++) {
+			report("hash set", text, spans, false);
+			report("perfect hash", text, spans, true);
+		}
+	}
+
+	private static void report(String name, CharSequence text, int[] spans, boolean perfect) {
+		for (int i = 0; i < WARMUP; i++) {
+			count(text, spans, perfect);
+		}
+		long best = Long.MAX_VALUE;
+		long allocated = 0;
+		int keywords = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			keywords = count(text, spans, perfect);
+			best = Math.min(best, System.nanoTime() - start);
+			allocated = allocatedBytes() - bytes;
+		}
+		System.out.printf("%-13s %6.2f ns/identifier  %6.1f bytes/identifier  %,d keywords%n", name,
+				(double) best / (spans.length / 2), (double) allocated / (spans.length / 2), keywords);
+	}
+
+	private static int count(CharSequence text, int[] spans, boolean perfect) {
+		int keywords = 0;
+		for (int i = 0; i < spans.length; i += 2) {
+			boolean keyword;
+			if (perfect) {
+				keyword = TokenKind.ofIdentifier(text, spans[i], spans[i + 1]) != TokenKind.IDENTIFIER;
+			} else {
+				keyword = TheLexer.isKeyword(text.subSequence(spans[i], spans[i + 1]).toString());
+			}
+			if (keyword) {
+				keywords++;
+			}
+		}
+		return keywords;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	private static int[] createCorpus(int identifiers, StringBuilder text) throws IOException {
+		StringBuilder sample = new StringBuilder();
+		for (String name : new String[]{"src/main/resources/inputMethods.txt", "src/main/resources/inputStatements.txt",
+				"src/test/resources/Suma.txt", "src/test/resources/Temperatura.txt"}) {
+			sample.append(new String(Files.readAllBytes(Paths.get(name)), StandardCharsets.UTF_8)).append('\n');
+		}
+		TokenBuffer tokens = new TheLexer(sample.toString()).getTokenBuffer();
+		StringBuilder words = new StringBuilder();
+		int count = 0;
+		for (int i = 0; i < tokens.size(); i++) {
+			if (tokens.getKind(i) == TokenKind.IDENTIFIER || tokens.getKind(i).isKeyword()) {
+				words.append(tokens.getValue(i)).append(' ');
+				count++;
+			}
+		}
+		int[] spans = new int[identifiers * 2];
+		int n = 0;
+		while (n < spans.length) {
+			for (int i = 0, start = 0; i < count && n < spans.length; i++) {
+				int end = words.indexOf(" ", start);
+				spans[n++] = text.length() + start;
+				spans[n++] = text.length() + end;
+				start = end + 1;
+			}
+			text.append(words);
+		}
+		return spans;
+	}
+
+}
@@ -0,0 +1,185 @@
+package javiergs.compiler;
+
+import java.lang.management.ManagementFactory;
+import java.util.Random;
+
+/**
+ * Measures the throughput of TheLexer on synthetic corpora of 1 KB, 1 MB and 100 MB, in
+ * four shapes: identifier-heavy, literal-heavy, comment-heavy and operator-heavy. Each
+ * corpus is generated from a fixed seed, so runs are comparable, and lexed from a String
+ * to leave file reading out. Reports MB/s, where a MB is a million ASCII characters, and
+ * the bytes allocated per token, as counted by the thread allocation counter of the JVM.
+ *
+ * The results on a reference machine are kept in src/test/resources/LexerThroughput.md.
+ *
+ * Usage: LexerThroughputBenchmark [largest corpus in MB, default 100]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class LexerThroughputBenchmark {
+
+	private static final int WARMUP = 3;
+	private static final int ITERATIONS = 5;
+
+	// Each timed sample lexes at least this many characters, so small corpora run several times
+	private static final int SAMPLE_SIZE = 8_000_000;
+
+	private static final String[] SHAPES = {"identifier", "literal", "comment", "operator"};
+
+	private static final String[] WORDS = {"total", "count", "index", "value", "result", "buffer",
+			"offset", "length", "sum", "max", "node", "line", "Item", "Size", "_tmp", "$ref"};
+
+	public static void main(String[] args) {
+		int largest = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+		int[] sizes = {1_000, 1_000_000, largest * 1_000_000};
+
+		System.out.printf("%-11s %9s %10s %11s %13s%n", "shape", "size", "MB/s", "B/token", "tokens");
+		for (int size : sizes) {
+			for (String shape : SHAPES) {
+				report(shape, sizeName(size), createCorpus(shape, size));
+			}
+		}
+	}
+
+	private static void report(String shape, String size, String corpus) {
+		int repetitions = Math.max(1, SAMPLE_SIZE / corpus.length());
+		for (int i = 0; i < WARMUP; i++) {
+			lex(corpus, repetitions);
+		}
+		long best = Long.MAX_VALUE;
+		long allocated = Long.MAX_VALUE;
+		long tokens = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long bytes = allocatedBytes();
+			long start = System.nanoTime();
+			tokens = lex(corpus, repetitions);
+			best = Math.min(best, System.nanoTime() - start);
+			allocated = Math.min(allocated, allocatedBytes() - bytes);
+		}
+		System.out.printf("%-11s %9s %10.1f %11.2f %,13d%n", shape, size,
+				(double) corpus.length() * repetitions / 1e6 / (best / 1e9), (double) allocated / tokens,
+				tokens / repetitions);
+	}
+
+	private static long lex(String corpus, int repetitions) {
+		long tokens = 0;
+		for (int i = 0; i < repetitions; i++) {
+			tokens += new TheLexer(corpus).getTokenBuffer().size();
+		}
+		return tokens;
+	}
+
+	private static long allocatedBytes() {
+		return ((com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean()).getCurrentThreadAllocatedBytes();
+	}
+
+	private static String sizeName(int size) {
+		return size >= 1_000_000 ? size / 1_000_000 + " MB" : size / 1_000 + " KB";
+	}
+
+	/**
+	 * Generates a corpus of whole lines of one shape, up to the given number of characters.
+	 */
+	private static String createCorpus(String shape, int size) {
+		Random random = new Random(42);
+		StringBuilder text = new StringBuilder(size + 256);
+		StringBuilder line = new StringBuilder();
+		while (true) {
+			line.setLength(0);
+			switch (shape) {
+				case "identifier":
+					identifierLine(random, line);
+					break;
+				case "literal":
+					literalLine(random, line);
+					break;
+				case "comment":
+					commentLines(random, line);
+					break;
+				default:
+					operatorLine(random, line);
+					break;
+			}
+			if (text.length() + line.length() > size && text.length() > 0) {
+				return text.toString();
+			}
+			text.append(line);
+		}
+	}
+
+	private static void identifierLine(Random random, StringBuilder line) {
+		line.append(random.nextBoolean() ? "\tint " : "\t");
+		line.append(identifier(random)).append(" = ").append(identifier(random));
+		for (int i = random.nextInt(3); i > 0; i--) {
+			line.append(" + ").append(identifier(random));
+		}
+		line.append(";\n");
+	}
+
+	private static void literalLine(Random random, StringBuilder line) {
+		line.append('\t').append(identifier(random)).append(" = ");
+		switch (random.nextInt(6)) {
+			case 0:
+				line.append('"').append(WORDS[random.nextInt(WORDS.length)]).append(" and ")
+						.append(random.nextInt(1000)).append(" more\"");
+				break;
+			case 1:
+				line.append(random.nextInt(100_000)).append('.').append(random.nextInt(1000)).append("e-")
+						.append(1 + random.nextInt(9)).append('f');
+				break;
+			case 2:
+				line.append("0x").append(Integer.toHexString(random.nextInt()).toUpperCase());
+				break;
+			case 3:
+				line.append('\'').append((char) ('a' + random.nextInt(26))).append('\'');
+				break;
+			case 4:
+				line.append("0b").append(Integer.toBinaryString(1 + random.nextInt(1 << 12)));
+				break;
+			default:
+				line.append('0').append(Integer.toOctalString(1 + random.nextInt(1 << 15)));
+				break;
+		}
+		line.append(";\n");
+	}
+
+	private static void commentLines(Random random, StringBuilder line) {
+		if (random.nextInt(4) == 0) {
+			line.append("\t/*\n");
+			for (int i = 1 + random.nextInt(6); i > 0; i--) {
+				line.append("\t * ");
+				words(random, line);
+				line.append('\n');
+			}
+			line.append("\t */\n");
+		} else {
+			line.append("\t// ");
+			words(random, line);
+			line.append('\n');
+		}
+		line.append('\t').append(identifier(random)).append(" = ").append(random.nextInt(100)).append(";\n");
+	}
+
+	private static void operatorLine(Random random, StringBuilder line) {
+		String[] binary = {"+", "-", "*", "/", "%", "==", "!=", "<=", ">=", "<", ">", "&&", "||"};
+		String[] assign = {"=", "+=", "-=", "*=", "/=", "%="};
+		line.append("\ta ").append(assign[random.nextInt(assign.length)]).append(" (b");
+		for (int i = 2 + random.nextInt(6); i > 0; i--) {
+			line.append(' ').append(binary[random.nextInt(binary.length)]).append(random.nextBoolean() ? " !c" : " d");
+		}
+		line.append(random.nextBoolean() ? ")++;\n" : ")--;\n");
+	}
+
+	private static String identifier(Random random) {
+		return WORDS[random.nextInt(WORDS.length)] + WORDS[random.nextInt(WORDS.length)]
+				+ (random.nextBoolean() ? "" : Integer.toString(random.nextInt(100)));
+	}
+
+	private static void words(Random random, StringBuilder line) {
+		for (int i = 3 + random.nextInt(8); i > 0; i--) {
+			line.append(WORDS[random.nextInt(WORDS.length)].toLowerCase()).append(' ');
+		}
+	}
+
+}
@@ -0,0 +1,45 @@
+package javiergs.compiler;
+
+/**
+ * Regression benchmark for the cost of long lexemes. Lexes one line holding a string
+ * literal, and one holding an identifier, of growing sizes up to and past 64 KB.
+ * TheLexer tracks where the pending lexeme starts instead of copying it character by
+ * character, so the time per character must stay flat as the lexeme grows; a quadratic
+ * accumulation shows up as a time per character that doubles with each size.
+ *
+ * Usage: LiteralBenchmark
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class LiteralBenchmark {
+
+	private static final int[] SIZES = {4 << 10, 16 << 10, 64 << 10, 256 << 10};
+	private static final int WARMUP = 20;
+	private static final int ITERATIONS = 50;
+
+	public static void main(String[] args) {
+		TheLexer lexer = new TheLexer("");
+		for (int round = 0; round < 2; round++) {
+			for (int size : SIZES) {
+				report("string", lexer, "s = \"" + "a".repeat(size) + "\";");
+				report("identifier", lexer, "a".repeat(size) + " = 1;");
+			}
+		}
+	}
+
+	private static void report(String name, TheLexer lexer, String line) {
+		for (int i = 0; i < WARMUP; i++) {
+			lexer.scanLine(line, 1);
+		}
+		long best = Long.MAX_VALUE;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			lexer.scanLine(line, 1);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("%-10s %4d KB  %8.1f us  %5.2f ns/char%n", name, line.length() >> 10,
+				best / 1e3, (double) best / line.length());
+	}
+
+}
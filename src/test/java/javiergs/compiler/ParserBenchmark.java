@@ -0,0 +1,163 @@
+package javiergs.compiler;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Vector;
+
+/**
+ * Compares TheParser with TheTableParser on the same tokens, on three corpora:
+ * - methods: one class with size / 10 copies of the methods of the sample programs without
+ *   syntax errors
+ * - blocks: if statements nested in each other, each in braces
+ * - parens: an expression in nested parentheses
+ * The corpora are generated at several sizes or depths, lexed once, and parsed by both
+ * parsers with their console output discarded. TheParser also checks types and generates
+ * code as it parses; TheTableParser only builds the syntax tree. Before a corpus is timed
+ * both parsers must parse it without syntax errors, or the run fails, so the times are
+ * never those of error recovery. A parser that runs out of stack on a corpus is reported
+ * as overflow.
+ *
+ * Usage: ParserBenchmark [largest depth, default 10000]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class ParserBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int ITERATIONS = 10;
+
+	// Each timed sample parses at least this many tokens, so small corpora run several times
+	private static final int SAMPLE_TOKENS = 200_000;
+
+	private static final String[] CORPORA = {"methods", "blocks", "parens"};
+
+	public static void main(String[] args) throws IOException {
+		int largest = args.length > 0 ? Integer.parseInt(args[0]) : 10000;
+		String methods = sampleMethods();
+		PrintStream console = System.out;
+		PrintStream silent = new PrintStream(OutputStream.nullOutputStream());
+
+		console.printf("%-8s %6s %8s %14s %14s %8s%n", "corpus", "size", "tokens", "recursive us", "table us", "speedup");
+		for (int size = 10; size <= largest; size *= 10) {
+			for (String corpus : CORPORA) {
+				TokenBuffer tokens = new TheLexer(createProgram(corpus, size, methods)).getTokenBuffer();
+				int repetitions = Math.max(1, SAMPLE_TOKENS / tokens.size());
+				System.setOut(silent);
+				long recursive;
+				long table;
+				try {
+					check(corpus, size, tokens);
+					recursive = measure(tokens, repetitions, false);
+					table = measure(tokens, repetitions, true);
+				} finally {
+					System.setOut(console);
+				}
+				console.printf("%-8s %6d %,8d %14s %14s %8s%n", corpus, size, tokens.size(),
+						format(recursive, repetitions), format(table, repetitions),
+						recursive < 0 || table < 0 ? "-" : String.format("%.1fx", (double) recursive / table));
+			}
+		}
+	}
+
+	/**
+	 * Parses a corpus once with each parser, and fails if either reports a syntax error. A
+	 * parser that runs out of stack is left to {@link #measure}.
+	 */
+	private static void check(String corpus, int size, TokenBuffer tokens) {
+		Vector<String> errors = new Vector<>();
+		try {
+			TheParser parser = new TheParser(tokens);
+			parser.run();
+			errors.addAll(parser.getSyntaxErrors());
+		} catch (StackOverflowError e) {
+			// Se reporta como overflow
+		}
+		TheTableParser parser = new TheTableParser(tokens);
+		parser.run();
+		errors.addAll(parser.getSyntaxErrors());
+		if (!errors.isEmpty()) {
+			throw new IllegalStateException("Corpus " + corpus + " " + size + " has syntax errors: " + errors);
+		}
+	}
+
+	/**
+	 * @return The best time of a sample, or -1 if the parser overflowed its stack
+	 */
+	private static long measure(TokenBuffer tokens, int repetitions, boolean table) {
+		try {
+			for (int i = 0; i < WARMUP; i++) {
+				parse(tokens, repetitions, table);
+			}
+			long best = Long.MAX_VALUE;
+			for (int i = 0; i < ITERATIONS; i++) {
+				long start = System.nanoTime();
+				parse(tokens, repetitions, table);
+				best = Math.min(best, System.nanoTime() - start);
+			}
+			return best;
+		} catch (StackOverflowError e) {
+			return -1;
+		}
+	}
+
+	private static int parse(TokenBuffer tokens, int repetitions, boolean table) {
+		int nodes = 0;
+		for (int i = 0; i < repetitions; i++) {
+			if (table) {
+				TheTableParser parser = new TheTableParser(tokens);
+				parser.run();
+				nodes += parser.getSyntaxTree().size();
+			} else {
+				TheParser parser = new TheParser(tokens);
+				parser.run();
+				nodes += parser.getSyntaxTree().size();
+			}
+		}
+		return nodes;
+	}
+
+	private static String format(long best, int repetitions) {
+		return best < 0 ? "overflow" : String.format("%.1f", best / 1e3 / repetitions);
+	}
+
+	/**
+	 * Generates the program of a corpus at the given size.
+	 */
+	private static String createProgram(String corpus, int size, String methods) {
+		StringBuilder program = new StringBuilder("class Benchmark {\n\tint a = 1;\n\tboolean r;\n");
+		switch (corpus) {
+			case "methods":
+				program.append(methods.repeat(size / 10));
+				break;
+			case "blocks":
+				program.append("\tvoid run() {\n");
+				program.append("if (a > 0) {\n".repeat(size)).append("a = a - 1;\n").append("}\n".repeat(size));
+				program.append("\t}\n");
+				break;
+			default:
+				program.append("\tvoid run() {\n\t\tr = ").append("(".repeat(size)).append("a + 1")
+						.append(")".repeat(size)).append(" > 2;\n\t}\n");
+				break;
+		}
+		return program.append("}\n").toString();
+	}
+
+	/**
+	 * Reads the methods of the sample programs without syntax errors: the bodies of their
+	 * classes.
+	 */
+	private static String sampleMethods() throws IOException {
+		StringBuilder methods = new StringBuilder();
+		for (String name : new String[]{"src/main/resources/inputMethods.txt", "src/main/resources/inputAssignment.txt"}) {
+			String text = new String(Files.readAllBytes(Paths.get(name)), StandardCharsets.UTF_8);
+			methods.append(text, text.indexOf('{') + 1, text.lastIndexOf('}'));
+		}
+		return methods.toString();
+	}
+
+}
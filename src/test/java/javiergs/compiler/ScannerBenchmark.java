@@ -0,0 +1,73 @@
+package javiergs.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Compares the interpreted DFA loop of TheLexer with the scanner generated by
+ * TheScannerGenerator on a corpus built by repeating the sample programs.
+ *
+ * Usage: ScannerBenchmark [corpus size in MB, default 8]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class ScannerBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws IOException {
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		File corpus = createCorpus(megabytes);
+		TheScanner generated = new TheScannerGenerator(new TheLexer("").getAutomata()).load();
+
+		System.out.printf("corpus: %.1f MB%n", corpus.length() / 1e6);
+		for (int round = 0; round < 3; round++) {
+			report("interpreted", corpus, null);
+			report("generated", corpus, generated);
+		}
+		corpus.delete();
+	}
+
+	private static void report(String name, File corpus, TheScanner scanner) throws IOException {
+		for (int i = 0; i < WARMUP; i++) {
+			lex(corpus, scanner);
+		}
+		long best = Long.MAX_VALUE;
+		int tokens = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			tokens = lex(corpus, scanner);
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("%-12s %8.1f MB/s  %,d tokens%n", name, corpus.length() / 1e6 / (best / 1e9), tokens);
+	}
+
+	private static int lex(File corpus, TheScanner scanner) throws IOException {
+		TheLexer lexer = new TheLexer(corpus);
+		lexer.setScanner(scanner);
+		lexer.run();
+		return lexer.getTokenBuffer().size();
+	}
+
+	private static File createCorpus(int megabytes) throws IOException {
+		StringBuilder sample = new StringBuilder();
+		for (String name : new String[]{"src/main/resources/inputMethods.txt", "src/main/resources/inputStatements.txt",
+				"src/test/resources/Suma.txt", "src/test/resources/Temperatura.txt"}) {
+			sample.append(new String(Files.readAllBytes(Paths.get(name)), StandardCharsets.UTF_8)).append('\n');
+		}
+		StringBuilder text = new StringBuilder();
+		while (text.length() < megabytes * 1_000_000) {
+			text.append(sample);
+		}
+		Path file = Files.createTempFile("corpus", ".txt");
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
+
+}
@@ -0,0 +1,122 @@
+package javiergs.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestGrammarSpec {
+
+	// Gramática de expresiones de los libros; las producciones se numeran en el orden escrito
+	private static final String EXPRESSIONS = String.join("\n",
+			"E -> T moreE",
+			"moreE -> '+' T moreE | @empty",
+			"T -> F moreT",
+			"moreT -> '*' F moreT | @empty",
+			"F -> '(' E ')' | IDENTIFIER");
+
+	private static final int E = 0, MORE_E = 1, T = 2, MORE_T = 3, F = 4;
+
+	private static final int PLUS = TokenKind.OP_PLUS.ordinal();
+	private static final int TIMES = TokenKind.OP_MUL.ordinal();
+	private static final int OPEN = TokenKind.DL_LPAREN.ordinal();
+	private static final int CLOSE = TokenKind.DL_RPAREN.ordinal();
+	private static final int IDENTIFIER = TokenKind.IDENTIFIER.ordinal();
+	private static final int END = ParseTable.END;
+
+	@Test
+	public void testFirstSets() {
+		System.out.println("testing FIRST sets ===========================================================================");
+		ParseTable table = new GrammarSpec(EXPRESSIONS).compile();
+		// FIRST(E) = FIRST(T) = FIRST(F) = { '(', IDENTIFIER }
+		assertPredicts(table, E, 0, OPEN, IDENTIFIER);
+		assertPredicts(table, T, 3, OPEN, IDENTIFIER);
+		assertEquals(6, table.predict(F, OPEN));
+		assertEquals(7, table.predict(F, IDENTIFIER));
+		assertPredicts(table, F, -1, PLUS, TIMES, CLOSE, END);
+		// FIRST(moreE) = { '+' } y FIRST(moreT) = { '*' }, además de vacío
+		assertEquals(1, table.predict(MORE_E, PLUS));
+		assertEquals(4, table.predict(MORE_T, TIMES));
+	}
+
+	@Test
+	public void testFollowSets() {
+		System.out.println("testing FOLLOW sets ==========================================================================");
+		ParseTable table = new GrammarSpec(EXPRESSIONS).compile();
+		assertFollows(table, E, CLOSE, END);
+		assertFollows(table, MORE_E, CLOSE, END);
+		assertFollows(table, T, PLUS, CLOSE, END);
+		assertFollows(table, MORE_T, PLUS, CLOSE, END);
+		assertFollows(table, F, TIMES, PLUS, CLOSE, END);
+		// Una regla vacía se predice con su FOLLOW
+		assertPredicts(table, MORE_E, 2, CLOSE, END);
+		assertPredicts(table, MORE_T, 5, PLUS, CLOSE, END);
+		assertPredicts(table, MORE_E, -1, TIMES, OPEN, IDENTIFIER);
+	}
+
+	@Test
+	public void testConflictsMustBeExpected() {
+		System.out.println("testing expected conflicts ===================================================================");
+		String danglingElse = String.join("\n",
+				"S -> 'if' '(' IDENTIFIER ')' S elsePart | IDENTIFIER ';'",
+				"elsePart -> 'else' S | @empty");
+		IllegalArgumentException error = assertThrows(IllegalArgumentException.class,
+				() -> new GrammarSpec(danglingElse).compile());
+		assertTrue(error.getMessage().contains("1 conflicts where 0 are expected"), error.getMessage());
+		error = assertThrows(IllegalArgumentException.class,
+				() -> new GrammarSpec("@expect 2\n" + danglingElse).compile());
+		assertTrue(error.getMessage().contains("1 conflicts where 2 are expected"), error.getMessage());
+
+		ParseTable table = new GrammarSpec("@expect 1\n" + danglingElse).compile();
+		assertEquals(1, table.getConflicts().size());
+		// El else va con el if más cercano: gana la alternativa escrita primero
+		assertEquals("elsePart -> 'else' S", table.describe(table.predict(1, TokenKind.KW_ELSE.ordinal())));
+	}
+
+	@Test
+	public void testGrammarOfTableParser() {
+		System.out.println("testing grammar of the table parser ==========================================================");
+		GrammarSpec grammar = new GrammarSpec(TheTableParser.GRAMMAR);
+		ParseTable table = grammar.compile();
+		assertEquals(1, table.getConflicts().size());
+		assertTrue(table.getConflicts().get(0).startsWith("elsePart on 'else'"), table.getConflicts().get(0));
+		assertSame(table, new GrammarSpec(TheTableParser.GRAMMAR).compile());
+		assertFalse(table.isVisible(1));
+		assertTrue(table.isVisible(table.getStart()));
+	}
+
+	@Test
+	public void testInvalidGrammars() {
+		System.out.println("testing invalid grammars =====================================================================");
+		assertThrows(IllegalArgumentException.class, () -> new GrammarSpec(""));
+		assertThrows(IllegalArgumentException.class, () -> new GrammarSpec("S -> 'nonsense'"));
+		assertThrows(IllegalArgumentException.class, () -> new GrammarSpec("S -> A"));
+		assertThrows(IllegalArgumentException.class, () -> new GrammarSpec("S -> IDENTIFIER\nS -> ';'"));
+		assertThrows(IllegalArgumentException.class, () -> new GrammarSpec("S -> IDENTIFIER @empty"));
+	}
+
+	private static void assertPredicts(ParseTable table, int nonterminal, int production, int... terminals) {
+		for (int terminal : terminals) {
+			assertEquals(production, table.predict(nonterminal, terminal),
+					table.getName(nonterminal) + " on " + ParseTable.terminalName(terminal));
+		}
+	}
+
+	private static void assertFollows(ParseTable table, int nonterminal, int... terminals) {
+		int count = 0;
+		for (int terminal = 0; terminal < ParseTable.TERMINAL_COUNT; terminal++) {
+			if (table.follows(nonterminal, terminal)) {
+				count++;
+			}
+		}
+		assertEquals(terminals.length, count, "size of FOLLOW(" + table.getName(nonterminal) + ")");
+		for (int terminal : terminals) {
+			assertTrue(table.follows(nonterminal, terminal),
+					ParseTable.terminalName(terminal) + " in FOLLOW(" + table.getName(nonterminal) + ")");
+		}
+	}
+
+}
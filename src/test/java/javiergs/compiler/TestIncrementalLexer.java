@@ -0,0 +1,102 @@
+package javiergs.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class TestIncrementalLexer {
+
+	private static final String[] RESOURCES = {
+			"src/main/resources/inputStatements.txt", "src/main/resources/inputAssignment.txt",
+			"src/test/resources/ConteoPares.txt", "src/test/resources/Temperatura.txt"};
+
+	// Líneas que se insertan al azar: abren y cierran comentarios, o tienen tokens comunes
+	private static final String[] EDITS = {
+			"/* abre", "cierra */", "x = /* dentro */ 1;", "int y = 0b101 + 0x1F;", "\"texto /* no */\"",
+			"// línea", "", "}", "while (a < 2) { a = a + 1; }", "*/ z = 3; /*", "'c' 1.5 $id"};
+
+	@Test
+	public void testInitialText() throws IOException {
+		System.out.println("testing incremental lexer on the resources ===================================================");
+		for (String name : RESOURCES) {
+			String text = Files.readString(Path.of(name));
+			assertTokens(new TheLexer(text).getTokenBuffer(), new IncrementalLexer(text).getTokenBuffer(), name);
+		}
+	}
+
+	@Test
+	public void testRandomEdits() throws IOException {
+		System.out.println("testing incremental lexer after random edits =================================================");
+		Random random = new Random(12);
+		for (String name : RESOURCES) {
+			List<String> lines = new ArrayList<>(Arrays.asList(Files.readString(Path.of(name)).split("\n", -1)));
+			IncrementalLexer lexer = new IncrementalLexer(String.join("\n", lines));
+			for (int edit = 0; edit < 200; edit++) {
+				int first = random.nextInt(lines.size() + 1);
+				int removed = random.nextInt(Math.min(3, lines.size() - first) + 1);
+				List<String> added = new ArrayList<>();
+				for (int i = random.nextInt(3); i > 0; i--) {
+					added.add(EDITS[random.nextInt(EDITS.length)]);
+				}
+				lines.subList(first, first + removed).clear();
+				lines.addAll(first, added);
+				lexer.update(first, removed, added);
+				assertEquals(lines.size(), lexer.getLineCount());
+				assertTokens(new TheLexer(String.join("\n", lines)).getTokenBuffer(), lexer.getTokenBuffer(),
+						name + " edit " + edit);
+			}
+		}
+	}
+
+	@Test
+	public void testRelexStopsWhenStateConverges() {
+		System.out.println("testing lines lexed again after an edit ======================================================");
+		List<String> lines = new ArrayList<>();
+		for (int i = 0; i < 100; i++) {
+			lines.add("int a" + i + " = " + i + ";");
+		}
+		IncrementalLexer lexer = new IncrementalLexer(String.join("\n", lines));
+		lexer.update(10, 1, List.of("int b = 2;"));
+		assertEquals(1, lexer.getRelexedLines());
+
+		// Un comentario abierto cambia todas las líneas hasta que se cierra
+		lexer.update(10, 1, List.of("/* abre"));
+		assertEquals(90, lexer.getRelexedLines());
+		lexer.update(20, 1, List.of("cierra */"));
+		assertEquals(80, lexer.getRelexedLines());
+		lexer.update(10, 1, List.of("int b = 2;"));
+		assertEquals(11, lexer.getRelexedLines());
+
+		lines.set(10, "int b = 2;");
+		lines.set(20, "cierra */");
+		assertTokens(new TheLexer(String.join("\n", lines)).getTokenBuffer(), lexer.getTokenBuffer(), "document");
+	}
+
+	@Test
+	public void testInvalidRange() {
+		System.out.println("testing edits out of the document ===========================================================");
+		IncrementalLexer lexer = new IncrementalLexer("int a;\nint b;");
+		assertThrows(IndexOutOfBoundsException.class, () -> lexer.update(1, 2, List.of()));
+		assertThrows(IndexOutOfBoundsException.class, () -> lexer.update(-1, 0, List.of()));
+	}
+
+	private static void assertTokens(TokenBuffer expected, TokenBuffer actual, String name) {
+		assertEquals(expected.size(), actual.size(), name);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getKind(i), actual.getKind(i), name + " token " + i);
+			assertEquals(expected.getValue(i), actual.getValue(i), name + " token " + i);
+			assertEquals(expected.getLineNumber(i), actual.getLineNumber(i), name + " token " + i);
+			assertEquals(expected.getStart(i), actual.getStart(i), name + " token " + i);
+		}
+	}
+
+}
@@ -0,0 +1,106 @@
+package javiergs.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+public class TestSyntaxTree {
+
+	@Test
+	public void testMethodShape() {
+		System.out.println("testing tree of a method =====================================================================");
+		SyntaxTree tree = parse("class A { void m() { x = a + b * 2; } }");
+		assertEquals(String.join("\n",
+				"PROGRAM",
+				"  class",
+				"  IDENTIFIER: A",
+				"  {",
+				"  METHODS",
+				"    TYPE",
+				"      void",
+				"    IDENTIFIER: m",
+				"    (",
+				"    PARAMS",
+				"    )",
+				"    {",
+				"    BODY",
+				"      ASSIGNMENT",
+				"        IDENTIFIER: x",
+				"        =",
+				"        EXPRESSION",
+				"          +",
+				"            IDENTIFIER: a",
+				"            *",
+				"              IDENTIFIER: b",
+				"              LITERAL: 2",
+				"        ;",
+				"    }",
+				"  }"), describe(tree));
+	}
+
+	@Test
+	public void testMethodsAreSiblings() {
+		System.out.println("testing sibling methods ======================================================================");
+		SyntaxTree tree = parse("class A { void m() { } int n(int a, int b) { return a; } void o() { } }");
+		int program = tree.getFirstChild(SyntaxTree.ROOT);
+		int methods = 0;
+		for (int node = tree.getFirstChild(program); node != SyntaxTree.NONE; node = tree.getNextSibling(node)) {
+			if ("METHODS".equals(tree.getText(node))) {
+				methods++;
+				assertEquals(program, tree.getParent(node));
+			}
+		}
+		assertEquals(3, methods);
+	}
+
+	@Test
+	public void testDepthDoesNotGrowWithMethods() {
+		System.out.println("testing depth of many methods ================================================================");
+		String method = "void m() { x = a + b * 2; }\n";
+		assertEquals(depth(parse("class A {" + method + "}")), depth(parse("class A {" + method.repeat(100) + "}")));
+	}
+
+	@Test
+	public void testSpansAreNested() {
+		System.out.println("testing spans of the nodes ===================================================================");
+		SyntaxTree tree = parse("class A { int x = 1; void m(int a) { if (a > x) { println(a); } else { a = -a; } } }");
+		for (int node = 1; node < tree.size(); node++) {
+			int parent = tree.getParent(node);
+			assertTrue(tree.getFirstToken(node) >= tree.getFirstToken(parent), "start of node " + node);
+			assertTrue(tree.getEndToken(node) <= tree.getEndToken(parent), "end of node " + node);
+		}
+	}
+
+	private static SyntaxTree parse(String program) {
+		TheParser parser = new TheParser(new TheLexer(program).getTokenBuffer());
+		parser.run();
+		return parser.getSyntaxTree();
+	}
+
+	private static String describe(SyntaxTree tree) {
+		StringBuilder text = new StringBuilder();
+		describe(tree, tree.getFirstChild(SyntaxTree.ROOT), 0, text);
+		return text.toString().stripTrailing();
+	}
+
+	private static void describe(SyntaxTree tree, int node, int depth, StringBuilder text) {
+		for (; node != SyntaxTree.NONE; node = tree.getNextSibling(node)) {
+			text.append("  ".repeat(depth)).append(tree.getLabel(node)).append('\n');
+			describe(tree, tree.getFirstChild(node), depth + 1, text);
+		}
+	}
+
+	private static int depth(SyntaxTree tree) {
+		int deepest = 0;
+		for (int node = 1; node < tree.size(); node++) {
+			int depth = 0;
+			for (int ancestor = node; ancestor != SyntaxTree.ROOT; ancestor = tree.getParent(ancestor)) {
+				depth++;
+			}
+			deepest = Math.max(deepest, depth);
+		}
+		return deepest;
+	}
+
+}
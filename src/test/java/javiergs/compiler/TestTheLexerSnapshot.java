@@ -0,0 +1,114 @@
+package javiergs.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestTheLexerSnapshot {
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		System.out.println("testing DFA snapshot =========================================================================");
+		Automata snapshot = TheLexer.readSnapshot(new ByteArrayInputStream(snapshot()));
+		assertNotNull(snapshot);
+		assertSameAutomata(new TokenSpec(TheLexer.TOKEN_SPEC).compile(), snapshot);
+	}
+
+	@Test
+	public void testAutomataRoundTrip() throws IOException {
+		System.out.println("testing binary form of the DFA ===============================================================");
+		Automata dfa = new TokenSpec(TheLexer.TOKEN_SPEC).compile();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		dfa.write(new DataOutputStream(bytes));
+		Automata read = Automata.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+		assertSameAutomata(dfa, read);
+		ByteArrayOutputStream again = new ByteArrayOutputStream();
+		read.write(new DataOutputStream(again));
+		assertArrayEquals(bytes.toByteArray(), again.toByteArray());
+	}
+
+	@Test
+	public void testDamagedSnapshot() throws IOException {
+		System.out.println("testing damaged DFA snapshot =================================================================");
+		byte[] bytes = snapshot();
+		for (int i : new int[]{0, 10, bytes.length / 2, bytes.length - 1}) {
+			byte[] damaged = bytes.clone();
+			damaged[i] ^= 1;
+			assertNull(TheLexer.readSnapshot(new ByteArrayInputStream(damaged)), "byte " + i);
+		}
+		assertNull(TheLexer.readSnapshot(new ByteArrayInputStream(Arrays.copyOf(bytes, bytes.length - 9))));
+		assertNull(TheLexer.readSnapshot(new ByteArrayInputStream(new byte[0])));
+	}
+
+	@Test
+	public void testStaleSnapshot() throws IOException {
+		System.out.println("testing stale DFA snapshot ===================================================================");
+		assertNotNull(TheLexer.readSnapshot(new ByteArrayInputStream(rewrite(snapshot(), TheLexer.TOKEN_SPEC, 0, 0))));
+		// Otra especificación, otra huella de las clases, o datos de más, con su checksum
+		assertNull(TheLexer.readSnapshot(new ByteArrayInputStream(
+				rewrite(snapshot(), TheLexer.TOKEN_SPEC + "# otra\n", 0, 0))));
+		assertNull(TheLexer.readSnapshot(new ByteArrayInputStream(rewrite(snapshot(), TheLexer.TOKEN_SPEC, 1, 0))));
+		assertNull(TheLexer.readSnapshot(new ByteArrayInputStream(rewrite(snapshot(), TheLexer.TOKEN_SPEC, 0, 1))));
+	}
+
+	private byte[] snapshot() throws IOException {
+		Path file = directory.resolve(TheLexer.DFA_SNAPSHOT);
+		TheLexer.writeSnapshot(file);
+		return Files.readAllBytes(file);
+	}
+
+	/**
+	 * Writes a snapshot again with another token specification, a changed fingerprint or
+	 * bytes after the DFA, and a valid checksum.
+	 */
+	private static byte[] rewrite(byte[] snapshot, String spec, long fingerprintChange, int extraBytes)
+			throws IOException {
+		DataInputStream in = new DataInputStream(new ByteArrayInputStream(snapshot, 0, snapshot.length - 4));
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(in.readInt());
+		in.readUTF();
+		out.writeUTF(spec);
+		out.writeLong(in.readLong() ^ fingerprintChange);
+		out.write(in.readAllBytes());
+		out.write(new byte[extraBytes]);
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes.toByteArray());
+		out.write(ByteBuffer.allocate(4).putInt((int) checksum.getValue()).array());
+		return bytes.toByteArray();
+	}
+
+	private static void assertSameAutomata(Automata expected, Automata actual) {
+		assertEquals(expected.getStateCount(), actual.getStateCount());
+		assertEquals(expected.getClassCount(), actual.getClassCount());
+		for (int state = 0; state < expected.getStateCount(); state++) {
+			assertEquals(expected.getAcceptStateName(state), actual.getAcceptStateName(state), "state " + state);
+			for (int symbol = 0; symbol < Automata.SYMBOL_COUNT; symbol++) {
+				assertEquals(expected.nextSymbol(state, symbol), actual.nextSymbol(state, symbol),
+						"state " + state + " symbol " + symbol);
+			}
+		}
+		for (String name : new String[]{TheLexer.START_STATE, TheLexer.ZERO_STATE}) {
+			assertEquals(expected.getStateId(name), actual.getStateId(name), name);
+		}
+	}
+
+}
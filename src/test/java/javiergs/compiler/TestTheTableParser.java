@@ -0,0 +1,104 @@
+package javiergs.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Vector;
+
+import org.junit.jupiter.api.Test;
+
+public class TestTheTableParser {
+
+	private static final String[] RESOURCES = {
+			"src/main/resources/input.txt", "src/main/resources/inputAssignment.txt",
+			"src/main/resources/inputClass.txt", "src/main/resources/inputMethods.txt",
+			"src/main/resources/inputStatements.txt", "src/test/resources/ConteoPares.txt",
+			"src/test/resources/Suma.txt", "src/test/resources/Temperatura.txt"};
+
+	@Test
+	public void testResourcesAgreeWithTheParser() throws IOException {
+		System.out.println("testing resources with both parsers ==========================================================");
+		for (String name : RESOURCES) {
+			String program = Files.readString(Path.of(name));
+			assertEquals(parserErrors(program).isEmpty(), tableParserErrors(program).isEmpty(), name);
+		}
+	}
+
+	@Test
+	public void testStatementsAgreeWithTheParser() {
+		System.out.println("testing statements with both parsers =========================================================");
+		String[] statements = {
+				"x = 1;", "x = y = 3;", "(a) = 3;", "a + 1 = 3;", "a + 1;", "-a;", "f(1);", "f(1) + 2;",
+				"x = inputln();", "inputln();", "int x = inputln();", "x = true;",
+				"for (i = 0; i < 3; i = i + 1) x = i;", "for (int i = 0; i < 3; f(i)) { }",
+				"if (a) x = 1; else if (b) x = 2; else f();", "if (a) println(a);",
+				"switch (a) { case 1: x = 1; break; default: x = 2; }", "while (a) { break; }"};
+		for (String statement : statements) {
+			String program = "class A { void m() { " + statement + " } }";
+			assertEquals(parserErrors(program).isEmpty(), tableParserErrors(program).isEmpty(), statement);
+		}
+	}
+
+	@Test
+	public void testAssignmentNeedsVariable() {
+		System.out.println("testing left side of assignments =============================================================");
+		assertTrue(tableParserErrors("class A { void m() { x = 3; } }").isEmpty());
+		assertFalse(tableParserErrors("class A { void m() { x = y = 3; } }").isEmpty());
+		assertFalse(tableParserErrors("class A { void m() { (a) = 3; } }").isEmpty());
+		assertFalse(tableParserErrors("class A { void m() { a + 1 = 3; } }").isEmpty());
+	}
+
+	@Test
+	public void testRecoveryReportsEachError() {
+		System.out.println("testing recovery from errors =================================================================");
+		Vector<String> errors = tableParserErrors(
+				"class A {\n void m() { x = ; }\n void n() { y = 1 }\n void o() { z = 2; }\n}");
+		assertEquals(2, errors.size(), errors.toString());
+		assertTrue(errors.get(0).startsWith("Syntax Error at line 2"), errors.get(0));
+		assertTrue(errors.get(1).startsWith("Syntax Error at line 3"), errors.get(1));
+	}
+
+	@Test
+	public void testRecoveryKeepsTree() {
+		System.out.println("testing tree after errors ====================================================================");
+		TheTableParser parser = new TheTableParser(new TheLexer(
+				"class A { void m() { x = ; } void n() { if (a) { y = 1 } } void o() { z = 2; } }").getTokenBuffer());
+		parser.run();
+		SyntaxTree tree = parser.getSyntaxTree();
+		int methods = 0;
+		for (int node = 1; node < tree.size(); node++) {
+			int parent = tree.getParent(node);
+			assertTrue(tree.getFirstToken(node) >= tree.getFirstToken(parent), "start of node " + node);
+			assertTrue(tree.getEndToken(node) <= tree.getEndToken(parent), "end of node " + node);
+			if ("MEMBER".equals(tree.getText(node))) {
+				methods++;
+			}
+		}
+		assertEquals(3, methods);
+	}
+
+	@Test
+	public void testDeepNesting() {
+		System.out.println("testing deep nesting =========================================================================");
+		int depth = 10000;
+		String program = "class A { void m() { x = " + "(".repeat(depth) + "1" + ")".repeat(depth) + "; } }";
+		assertTrue(tableParserErrors(program).isEmpty());
+	}
+
+	private static Vector<String> parserErrors(String program) {
+		TheParser parser = new TheParser(new TheLexer(program).getTokenBuffer());
+		parser.run();
+		return parser.getSyntaxErrors();
+	}
+
+	private static Vector<String> tableParserErrors(String program) {
+		TheTableParser parser = new TheTableParser(new TheLexer(program).getTokenBuffer());
+		parser.run();
+		return parser.getSyntaxErrors();
+	}
+
+}
@@ -0,0 +1,133 @@
+package javiergs.compiler;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+public class TestTokenCache {
+
+	private static final String[] RESOURCES = {
+			"src/main/resources/inputStatements.txt", "src/main/resources/inputAssignment.txt",
+			"src/test/resources/ConteoPares.txt", "src/test/resources/Suma.txt", "src/test/resources/Temperatura.txt"};
+
+	// Posición de la huella del lexer en la cabecera: después de la marca y la versión
+	private static final int FINGERPRINT_OFFSET = 8;
+
+	@TempDir
+	Path directory;
+
+	@Test
+	public void testRoundTrip() throws IOException {
+		System.out.println("testing token files ==========================================================================");
+		TokenCache cache = new TokenCache(directory);
+		for (String name : RESOURCES) {
+			TokenBuffer expected = new TheLexer(Files.readString(Path.of(name))).getTokenBuffer();
+			assertTokens(expected, new TheLexer(new File(name)).runCached(directory), name);
+			byte[] hash = TokenCache.hash(source(name));
+			assertTrue(Files.exists(cache.pathOf(hash)), name);
+			TokenBuffer read = cache.read(hash, source(name), Integer.MAX_VALUE);
+			assertNotNull(read, name);
+			assertTokens(expected, read, name);
+			assertTokens(expected, new TheLexer(new File(name)).runCached(directory), name);
+		}
+	}
+
+	@Test
+	public void testDamagedFile() throws IOException {
+		System.out.println("testing damaged token files ==================================================================");
+		String name = RESOURCES[0];
+		Path tokenFile = write(name);
+		byte[] bytes = Files.readAllBytes(tokenFile);
+		bytes[bytes.length / 2] ^= 1;
+		Files.write(tokenFile, bytes);
+		assertNull(read(name));
+
+		// El archivo dañado se ignora y se escribe de nuevo
+		TokenBuffer expected = new TheLexer(Files.readString(Path.of(name))).getTokenBuffer();
+		assertTokens(expected, new TheLexer(new File(name)).runCached(directory), name);
+		assertNotNull(read(name));
+
+		Files.write(tokenFile, Arrays.copyOf(bytes, bytes.length - 5));
+		assertNull(read(name));
+	}
+
+	@Test
+	public void testOtherLexerVersion() throws IOException {
+		System.out.println("testing token files of another lexer =========================================================");
+		String name = RESOURCES[0];
+		Path tokenFile = write(name);
+		byte[] bytes = Files.readAllBytes(tokenFile);
+		Files.write(tokenFile, withChecksum(bytes));
+		assertNotNull(read(name));
+		bytes[FINGERPRINT_OFFSET] ^= 1;
+		Files.write(tokenFile, withChecksum(bytes));
+		assertNull(read(name));
+	}
+
+	@Test
+	public void testOtherSource() throws IOException {
+		System.out.println("testing token files of another source ========================================================");
+		Path tokenFile = write(RESOURCES[0]);
+		Path other = new TokenCache(directory).pathOf(TokenCache.hash(source(RESOURCES[1])));
+		Files.copy(tokenFile, other);
+		assertNull(read(RESOURCES[1]));
+	}
+
+	@Test
+	public void testChangedSource() throws IOException {
+		System.out.println("testing token files of a changed source ======================================================");
+		Path file = directory.resolve("Changed.txt");
+		Files.writeString(file, "class A { int a = 1; }\n");
+		new TheLexer(file.toFile()).runCached(directory);
+		Files.writeString(file, "class A { int a = 1; int b = 2; }\n");
+		TokenBuffer tokens = new TheLexer(file.toFile()).runCached(directory);
+		assertTokens(new TheLexer(Files.readString(file)).getTokenBuffer(), tokens, file.toString());
+		try (var files = Files.list(directory)) {
+			assertEquals(2, files.filter(path -> path.toString().endsWith(TokenCache.EXTENSION)).count());
+		}
+	}
+
+	private Path write(String name) throws IOException {
+		new TheLexer(new File(name)).runCached(directory);
+		Path tokenFile = new TokenCache(directory).pathOf(TokenCache.hash(source(name)));
+		assertNotNull(read(name));
+		return tokenFile;
+	}
+
+	private TokenBuffer read(String name) throws IOException {
+		return new TokenCache(directory).read(TokenCache.hash(source(name)), source(name), Integer.MAX_VALUE);
+	}
+
+	private static MappedSource source(String name) throws IOException {
+		return new MappedSource(ByteBuffer.wrap(Files.readAllBytes(Path.of(name))));
+	}
+
+	private static byte[] withChecksum(byte[] bytes) {
+		CRC32 checksum = new CRC32();
+		checksum.update(bytes, 0, bytes.length - 4);
+		ByteBuffer.wrap(bytes).putInt(bytes.length - 4, (int) checksum.getValue());
+		return bytes;
+	}
+
+	private static void assertTokens(TokenBuffer expected, TokenBuffer actual, String name) {
+		assertEquals(expected.size(), actual.size(), name);
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.getKind(i), actual.getKind(i), name + " token " + i);
+			assertEquals(expected.getValue(i), actual.getValue(i), name + " token " + i);
+			assertEquals(expected.getLineNumber(i), actual.getLineNumber(i), name + " token " + i);
+		}
+	}
+
+}
@@ -0,0 +1,91 @@
+package javiergs.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Comparator;
+import java.util.stream.Stream;
+
+/**
+ * Compares lexing a file with {@link TheLexer#runMapped()} against reading its tokens back
+ * from the token file that {@link TheLexer#runCached(Path)} wrote on a first run. Both
+ * include mapping the file; the cached run also hashes it. The time is given for the token
+ * buffer alone, and for the buffer with the value of every token read, as the parser does.
+ *
+ * Usage: TokenCacheBenchmark [corpus size in MB, default 8]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class TokenCacheBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws IOException {
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		File corpus = createCorpus(megabytes);
+		Path cache = Files.createTempDirectory("tokens");
+		new TheLexer(corpus).runCached(cache);
+
+		System.out.printf("corpus: %.1f MB, token file: %.1f MB%n", corpus.length() / 1e6,
+				Files.size(Files.list(cache).findFirst().orElseThrow()) / 1e6);
+		for (int round = 0; round < 3; round++) {
+			report("lex", corpus, null);
+			report("cached", corpus, cache);
+		}
+		corpus.delete();
+		try (Stream<Path> files = Files.walk(cache)) {
+			files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+
+	private static void report(String name, File corpus, Path cache) throws IOException {
+		for (int i = 0; i < WARMUP; i++) {
+			run(corpus, cache, true);
+		}
+		long best = Long.MAX_VALUE;
+		long bestWithValues = Long.MAX_VALUE;
+		int tokens = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			tokens = run(corpus, cache, false);
+			best = Math.min(best, System.nanoTime() - start);
+			start = System.nanoTime();
+			run(corpus, cache, true);
+			bestWithValues = Math.min(bestWithValues, System.nanoTime() - start);
+		}
+		System.out.printf("%-7s %8.1f ms  %8.1f ms with values  %,d tokens%n", name, best / 1e6,
+				bestWithValues / 1e6, tokens);
+	}
+
+	private static int run(File corpus, Path cache, boolean values) throws IOException {
+		TheLexer lexer = new TheLexer(corpus);
+		TokenBuffer tokens = cache == null ? lexer.runMapped() : lexer.runCached(cache);
+		if (values) {
+			for (int i = 0; i < tokens.size(); i++) {
+				tokens.getValue(i);
+			}
+		}
+		return tokens.size();
+	}
+
+	private static File createCorpus(int megabytes) throws IOException {
+		StringBuilder sample = new StringBuilder();
+		for (String name : new String[]{"src/main/resources/inputMethods.txt", "src/main/resources/inputStatements.txt",
+				"src/test/resources/Suma.txt", "src/test/resources/Temperatura.txt"}) {
+			sample.append(new String(Files.readAllBytes(Paths.get(name)), StandardCharsets.UTF_8)).append('\n');
+		}
+		StringBuilder text = new StringBuilder();
+		while (text.length() < megabytes * 1_000_000) {
+			text.append(sample);
+		}
+		Path file = Files.createTempFile("corpus", ".txt");
+		Files.write(file, text.toString().getBytes(StandardCharsets.UTF_8));
+		return file.toFile();
+	}
+
+}
@@ -0,0 +1,65 @@
+package javiergs.compiler;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+
+/**
+ * Measures the cost of Unicode support in TheLexer. Lexes the sample programs repeated,
+ * as they are (pure ASCII), and with a declaration of a localized string after every
+ * statement. ASCII input never leaves the character class table, so its throughput must
+ * not change with Unicode support; only the localized corpus takes the code point path.
+ *
+ * Usage: UnicodeBenchmark [corpus size in MB, default 8]
+ *
+ * @author javiergs
+ * @version 1.0
+ */
+public class UnicodeBenchmark {
+
+	private static final int WARMUP = 5;
+	private static final int ITERATIONS = 10;
+
+	public static void main(String[] args) throws IOException {
+		int megabytes = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		String ascii = createCorpus(megabytes);
+		String localized = ascii.replace(";\n", ";\n\tstring título = \"café – ñandú, 数据\";\n");
+
+		System.out.printf("corpus: %.1f M chars ascii, %.1f M chars localized%n", ascii.length() / 1e6,
+				localized.length() / 1e6);
+		for (int round = 0; round < 3; round++) {
+			report("ascii", ascii);
+			report("localized", localized);
+		}
+	}
+
+	private static void report(String name, String corpus) {
+		for (int i = 0; i < WARMUP; i++) {
+			new TheLexer(corpus);
+		}
+		long best = Long.MAX_VALUE;
+		int tokens = 0;
+		for (int i = 0; i < ITERATIONS; i++) {
+			long start = System.nanoTime();
+			tokens = new TheLexer(corpus).getTokenBuffer().size();
+			best = Math.min(best, System.nanoTime() - start);
+		}
+		System.out.printf("%-10s %8.1f M chars/s  %5.2f ns/char  %,d tokens%n", name,
+				corpus.length() / 1e6 / (best / 1e9), (double) best / corpus.length(), tokens);
+	}
+
+	private static String createCorpus(int megabytes) throws IOException {
+		StringBuilder sample = new StringBuilder();
+		for (String name : new String[]{"src/main/resources/inputMethods.txt", "src/main/resources/inputStatements.txt",
+				"src/test/resources/Suma.txt", "src/test/resources/Temperatura.txt"}) {
+			sample.append(new String(Files.readAllBytes(Paths.get(name)), StandardCharsets.UTF_8)).append('\n');
+		}
+		StringBuilder text = new StringBuilder();
+		while (text.length() < megabytes * 1_000_000) {
+			text.append(sample);
+		}
+		return text.toString();
+	}
+
+}